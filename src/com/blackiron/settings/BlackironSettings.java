@@ -20,23 +20,179 @@ package com.blackiron.settings;
 import com.android.internal.logging.nano.MetricsProto;
 
 import android.app.Activity;
+import android.app.AlertDialog;
+import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ActivityInfo;
 import android.content.res.Configuration;
+import android.graphics.Typeface;
 import android.os.Bundle;
+import android.provider.Settings;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.Surface;
+import android.widget.ProgressBar;
+import android.widget.ScrollView;
+import android.widget.TextView;
+import android.widget.Toast;
 import androidx.preference.Preference;
 import com.android.settings.R;
+import com.blackiron.settings.fragments.Buttons;
+import com.blackiron.settings.fragments.LockScreen;
+import com.blackiron.settings.fragments.Miscellaneous;
+import com.blackiron.settings.fragments.Navigation;
+import com.blackiron.settings.fragments.Notifications;
+import com.blackiron.settings.fragments.QuickSettings;
+import com.blackiron.settings.fragments.Sound;
+import com.blackiron.settings.fragments.StatusBar;
+import com.blackiron.settings.fragments.UserInterface;
+import com.blackiron.settings.fragments.udfps.UdfpsAnimation;
+import com.blackiron.settings.fragments.udfps.UdfpsIconPicker;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsStats;
 import com.blackiron.settings.preferences.Utils;
 
 import com.android.settings.SettingsPreferenceFragment;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
 public class BlackironSettings extends SettingsPreferenceFragment {
 
+    private static final String KEY_SETTINGS_IO_STATS = "settings_io_stats";
+
+    private static final int MENU_RESET = Menu.FIRST;
+
+    private AlertDialog mResetProgress;
+    private ProgressBar mResetProgressBar;
+
     @Override
     public void onCreate(Bundle icicle) {
         super.onCreate(icicle);
         addPreferencesFromResource(R.xml.blackiron_settings);
+        // Warm the cache for the category screens while the dashboard is shown
+        SettingsPrefetcher.prefetchAsync(getContext(),
+                R.xml.blackiron_settings_button,
+                R.xml.blackiron_settings_lockscreen,
+                R.xml.blackiron_settings_misc,
+                R.xml.blackiron_settings_navigation,
+                R.xml.blackiron_settings_notifications,
+                R.xml.blackiron_settings_quicksettings,
+                R.xml.blackiron_settings_sound,
+                R.xml.blackiron_settings_statusbar,
+                R.xml.blackiron_settings_udfps,
+                R.xml.blackiron_settings_ui);
+
+        if (Settings.Global.getInt(getContentResolver(),
+                Settings.Global.DEVELOPMENT_SETTINGS_ENABLED, 0) == 0) {
+            getPreferenceScreen().removePreference(findPreference(KEY_SETTINGS_IO_STATS));
+        }
+        setHasOptionsMenu(true);
+    }
+
+    @Override
+    public void onDestroy() {
+        if (mResetProgress != null) {
+            mResetProgress.dismiss();
+            mResetProgress = null;
+            mResetProgressBar = null;
+        }
+        super.onDestroy();
+    }
+
+    @Override
+    public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
+        menu.add(0, MENU_RESET, 0, R.string.reset)
+                .setIcon(R.drawable.ic_settings_backup_restore)
+                .setAlphabeticShortcut('r')
+                .setShowAsActionFlags(MenuItem.SHOW_AS_ACTION_IF_ROOM);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case MENU_RESET:
+                new AlertDialog.Builder(getContext())
+                        .setTitle(R.string.reset_settings_title)
+                        .setMessage(R.string.reset_settings_message)
+                        .setPositiveButton(android.R.string.ok, (dialog, which) -> resetAll())
+                        .setNegativeButton(android.R.string.cancel, null)
+                        .show();
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void resetAll() {
+        final Context appContext = getContext().getApplicationContext();
+        mResetProgressBar = new ProgressBar(getContext(), null,
+                android.R.attr.progressBarStyleHorizontal);
+        int padding = getResources().getDimensionPixelSize(R.dimen.settings_io_stats_padding);
+        mResetProgressBar.setPadding(padding, padding, padding, padding);
+        mResetProgress = new AlertDialog.Builder(getContext())
+                .setMessage(R.string.reset_settings_progress)
+                .setView(mResetProgressBar)
+                .setCancelable(false)
+                .show();
+        resetAll(appContext, new SettingsResetter.Callback() {
+            @Override
+            public void onResetProgress(int done, int total) {
+                if (mResetProgressBar != null) {
+                    mResetProgressBar.setMax(total);
+                    mResetProgressBar.setProgress(done);
+                }
+            }
+
+            @Override
+            public void onResetComplete(SettingsResetter.Result result) {
+                if (mResetProgress != null) {
+                    mResetProgress.dismiss();
+                    mResetProgress = null;
+                    mResetProgressBar = null;
+                }
+                Toast.makeText(appContext, appContext.getResources().getQuantityString(
+                        R.plurals.reset_settings_done, result.written, result.written,
+                        result.elapsedMs), Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    @Override
+    public boolean onPreferenceTreeClick(Preference preference) {
+        if (KEY_SETTINGS_IO_STATS.equals(preference.getKey())) {
+            showSettingsStats();
+            return true;
+        }
+        return super.onPreferenceTreeClick(preference);
+    }
+
+    private void showSettingsStats() {
+        StringWriter out = new StringWriter();
+        SettingsStats.dump("", new PrintWriter(out));
+        TextView text = new TextView(getContext());
+        text.setTypeface(Typeface.MONOSPACE);
+        text.setTextIsSelectable(true);
+        text.setText(out.toString());
+        int padding = getResources().getDimensionPixelSize(R.dimen.settings_io_stats_padding);
+        text.setPadding(padding, padding, padding, padding);
+        ScrollView scroll = new ScrollView(getContext());
+        scroll.addView(text);
+        new AlertDialog.Builder(getContext())
+                .setTitle(R.string.settings_io_stats_title)
+                .setView(scroll)
+                .setPositiveButton(android.R.string.ok, null)
+                .setNeutralButton(R.string.reset, (dialog, which) -> SettingsStats.reset())
+                .show();
+    }
+
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        SettingsStats.dump(prefix, writer);
     }
 
     @Override
@@ -44,6 +200,26 @@ public class BlackironSettings extends SettingsPreferenceFragment {
         return MetricsProto.MetricsEvent.BLKI_SETTINGS;
     }
 
+    /**
+     * Restores every BlackIron setting to its default in a single background
+     * pass, only writing the keys that differ from their default.
+     */
+    public static void resetAll(Context context, SettingsResetter.Callback callback) {
+        ResetSpec spec = new ResetSpec();
+        Buttons.addResetEntries(context, spec);
+        LockScreen.addResetEntries(context, spec);
+        Miscellaneous.addResetEntries(context, spec);
+        Navigation.addResetEntries(context, spec);
+        Notifications.addResetEntries(context, spec);
+        QuickSettings.addResetEntries(context, spec);
+        Sound.addResetEntries(context, spec);
+        StatusBar.addResetEntries(context, spec);
+        UdfpsAnimation.addResetEntries(context, spec);
+        UdfpsIconPicker.addResetEntries(context, spec);
+        UserInterface.addResetEntries(context, spec);
+        SettingsResetter.reset(context, spec, callback);
+    }
+
     public static void lockCurrentOrientation(Activity activity) {
         int currentRotation = activity.getWindowManager().getDefaultDisplay().getRotation();
         int orientation = activity.getResources().getConfiguration().orientation;
@@ -40,9 +40,14 @@ import com.android.settingslib.search.SearchIndexable;
 
 import com.blackiron.settings.fragments.buttons.ButtonBacklightBrightness;
 import com.blackiron.settings.fragments.buttons.PowerMenuActions;
+import com.blackiron.settings.preferences.InstrumentedSettings;
 import com.blackiron.settings.preferences.LineageSystemSettingSeekBarPreference;
 import com.blackiron.settings.utils.DeviceUtils;
 import com.blackiron.settings.utils.TelephonyUtils;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import static org.lineageos.internal.util.DeviceKeysConstants.*;
 
@@ -134,6 +139,7 @@ public class Buttons extends SettingsPreferenceFragment implements
 
         mHardware = LineageHardwareManager.getInstance(getActivity());
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.blackiron_settings_button);
         addPreferencesFromResource(R.xml.blackiron_settings_button);
 
         final Resources res = getResources();
@@ -220,8 +226,8 @@ public class Buttons extends SettingsPreferenceFragment implements
             extrasCategory.removePreference(mAnbi);
             mAnbi = null;
         } else if (isKeyDisablerSupported(getActivity())) {
-            mAnbi.setEnabled(!(Settings.System.getIntForUser(resolver,
-                    Settings.System.HARDWARE_KEYS_DISABLE, 0,
+            mAnbi.setEnabled(!(InstrumentedSettings.getIntForUser(resolver,
+                    SettingsNamespace.SYSTEM, Settings.System.HARDWARE_KEYS_DISABLE, 0,
                     UserHandle.USER_CURRENT) == 1));
         }
 
@@ -340,12 +346,13 @@ public class Buttons extends SettingsPreferenceFragment implements
                 volumeCategory.removePreference(findPreference(KEY_VOLUME_ANSWER_CALL));
             }
 
-            int cursorControlAction = Settings.System.getInt(resolver,
-                    Settings.System.VOLUME_KEY_CURSOR_CONTROL, 0);
+            int cursorControlAction = InstrumentedSettings.getInt(resolver,
+                    SettingsNamespace.SYSTEM, Settings.System.VOLUME_KEY_CURSOR_CONTROL, 0);
             mVolumeKeyCursorControl = initList(KEY_VOLUME_KEY_CURSOR_CONTROL,
                     cursorControlAction);
 
-            int swapVolumeKeys = LineageSettings.System.getInt(getContentResolver(),
+            int swapVolumeKeys = InstrumentedSettings.getInt(getContentResolver(),
+                    SettingsNamespace.LINEAGE_SYSTEM,
                     LineageSettings.System.SWAP_VOLUME_KEYS_ON_ROTATION, 0);
             mSwapVolumeButtons = prefScreen.findPreference(KEY_SWAP_VOLUME_BUTTONS);
             if (mSwapVolumeButtons != null) {
@@ -364,8 +371,8 @@ public class Buttons extends SettingsPreferenceFragment implements
             extrasCategory.removePreference(backlight);
             backlight = null;
         } else if (isKeyDisablerSupported(getActivity())) {
-            backlight.setEnabled(!(Settings.System.getIntForUser(resolver,
-                    Settings.System.HARDWARE_KEYS_DISABLE, 0,
+            backlight.setEnabled(!(InstrumentedSettings.getIntForUser(resolver,
+                    SettingsNamespace.SYSTEM, Settings.System.HARDWARE_KEYS_DISABLE, 0,
                     UserHandle.USER_CURRENT) == 1));
         }
 
@@ -397,8 +404,8 @@ public class Buttons extends SettingsPreferenceFragment implements
 
         // Power button ends calls.
         if (mPowerEndCall != null) {
-            final int incallPowerBehavior = Settings.Secure.getInt(getContentResolver(),
-                    Settings.Secure.INCALL_POWER_BUTTON_BEHAVIOR,
+            final int incallPowerBehavior = InstrumentedSettings.getInt(getContentResolver(),
+                    SettingsNamespace.SECURE, Settings.Secure.INCALL_POWER_BUTTON_BEHAVIOR,
                     Settings.Secure.INCALL_POWER_BUTTON_BEHAVIOR_DEFAULT);
             final boolean powerButtonEndsCall =
                     (incallPowerBehavior == Settings.Secure.INCALL_POWER_BUTTON_BEHAVIOR_HANGUP);
@@ -407,7 +414,8 @@ public class Buttons extends SettingsPreferenceFragment implements
 
         // Home button answers calls.
         if (mHomeAnswerCall != null) {
-            final int incallHomeBehavior = LineageSettings.Secure.getInt(getContentResolver(),
+            final int incallHomeBehavior = InstrumentedSettings.getInt(getContentResolver(),
+                    SettingsNamespace.LINEAGE_SECURE,
                     LineageSettings.Secure.RING_HOME_BUTTON_BEHAVIOR,
                     LineageSettings.Secure.RING_HOME_BUTTON_BEHAVIOR_DEFAULT);
             final boolean homeButtonAnswersCall =
@@ -433,14 +441,16 @@ public class Buttons extends SettingsPreferenceFragment implements
         String value = (String) newValue;
         int index = pref.findIndexOfValue(value);
         pref.setSummary(pref.getEntries()[index]);
-        LineageSettings.System.putInt(getContentResolver(), setting, Integer.valueOf(value));
+        InstrumentedSettings.putInt(getContentResolver(),
+                SettingsNamespace.LINEAGE_SYSTEM, setting, Integer.valueOf(value));
     }
 
     private void handleSystemListChange(ListPreference pref, Object newValue, String setting) {
         String value = (String) newValue;
         int index = pref.findIndexOfValue(value);
         pref.setSummary(pref.getEntries()[index]);
-        Settings.System.putInt(getContentResolver(), setting, Integer.valueOf(value));
+        InstrumentedSettings.putInt(getContentResolver(),
+                SettingsNamespace.SYSTEM, setting, Integer.valueOf(value));
     }
 
     @Override
@@ -526,7 +536,8 @@ public class Buttons extends SettingsPreferenceFragment implements
                 /* Disable the re-orient functionality */
                 value = 0;
             }
-            LineageSettings.System.putInt(getActivity().getContentResolver(),
+            InstrumentedSettings.putInt(getActivity().getContentResolver(),
+                    SettingsNamespace.LINEAGE_SYSTEM,
                     LineageSettings.System.SWAP_VOLUME_KEYS_ON_ROTATION, value);
         } else if (preference == mPowerEndCall) {
             handleTogglePowerButtonEndsCallPreferenceClick();
@@ -540,35 +551,36 @@ public class Buttons extends SettingsPreferenceFragment implements
     }
 
     private void handleTogglePowerButtonEndsCallPreferenceClick() {
-        Settings.Secure.putInt(getContentResolver(),
+        InstrumentedSettings.putInt(getContentResolver(), SettingsNamespace.SECURE,
                 Settings.Secure.INCALL_POWER_BUTTON_BEHAVIOR, (mPowerEndCall.isChecked()
                         ? Settings.Secure.INCALL_POWER_BUTTON_BEHAVIOR_HANGUP
                         : Settings.Secure.INCALL_POWER_BUTTON_BEHAVIOR_SCREEN_OFF));
     }
 
     private void handleToggleHomeButtonAnswersCallPreferenceClick() {
-        LineageSettings.Secure.putInt(getContentResolver(),
+        InstrumentedSettings.putInt(getContentResolver(), SettingsNamespace.LINEAGE_SECURE,
                 LineageSettings.Secure.RING_HOME_BUTTON_BEHAVIOR, (mHomeAnswerCall.isChecked()
                         ? LineageSettings.Secure.RING_HOME_BUTTON_BEHAVIOR_ANSWER
                         : LineageSettings.Secure.RING_HOME_BUTTON_BEHAVIOR_DO_NOTHING));
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        LineageSettings.System.putIntForUser(resolver,
-                LineageSettings.System.CLICK_PARTIAL_SCREENSHOT, 0, UserHandle.USER_CURRENT);
-        LineageSettings.System.putIntForUser(resolver,
-                LineageSettings.System.TORCH_LONG_PRESS_POWER_GESTURE, 0, UserHandle.USER_CURRENT);
-        LineageSettings.System.putIntForUser(resolver,
-                LineageSettings.System.TORCH_LONG_PRESS_POWER_TIMEOUT, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.HARDWARE_KEYS_DISABLE, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.SWAP_CAPACITIVE_KEYS, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.ANBI_ENABLED, 0, UserHandle.USER_CURRENT);
-        ButtonBacklightBrightness.reset(mContext);
-        PowerMenuActions.reset(mContext);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                LineageSettings.System.CLICK_PARTIAL_SCREENSHOT, 0);
+        spec.putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                LineageSettings.System.TORCH_LONG_PRESS_POWER_GESTURE, 0);
+        spec.putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                LineageSettings.System.TORCH_LONG_PRESS_POWER_TIMEOUT, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.HARDWARE_KEYS_DISABLE, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.SWAP_CAPACITIVE_KEYS, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.ANBI_ENABLED, 0);
+        ButtonBacklightBrightness.addResetEntries(mContext, spec);
+        PowerMenuActions.addResetEntries(mContext, spec);
+        return spec;
     }
 
     @Override
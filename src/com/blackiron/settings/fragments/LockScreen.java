@@ -41,6 +41,10 @@ import com.android.settings.SettingsPreferenceFragment;
 import com.android.internal.util.blackiron.udfps.UdfpsUtils;
 import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settingslib.search.SearchIndexable;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import java.util.List;
 
@@ -68,6 +72,7 @@ public class LockScreen extends SettingsPreferenceFragment
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.blackiron_settings_lockscreen);
         addPreferencesFromResource(R.xml.blackiron_settings_lockscreen);
 
         PreferenceScreen prefScreen = getPreferenceScreen();
@@ -100,19 +105,17 @@ public class LockScreen extends SettingsPreferenceFragment
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        Settings.System.putIntForUser(resolver,
-                Settings.System.LOCKSCREEN_BATTERY_INFO, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.DOUBLE_TAP_SLEEP_LOCKSCREEN, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.ENABLE_RIPPLE_EFFECT, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.LOCKSCREEN_ENABLE_POWER_MENU, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.LOCKSCREEN_WEATHER_ENABLED, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.LOCKSCREEN_WEATHER_LOCATION, 0, UserHandle.USER_CURRENT);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.LOCKSCREEN_BATTERY_INFO, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.DOUBLE_TAP_SLEEP_LOCKSCREEN, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.ENABLE_RIPPLE_EFFECT, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.LOCKSCREEN_ENABLE_POWER_MENU, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.LOCKSCREEN_WEATHER_ENABLED, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.LOCKSCREEN_WEATHER_LOCATION, 0);
+        return spec;
     }
 
     private void updateWeatherSettings() {
@@ -33,6 +33,10 @@ import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settingslib.search.SearchIndexable;
 
 import com.blackiron.settings.fragments.misc.SensorBlock;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import java.util.List;
 
@@ -55,6 +59,7 @@ public class Miscellaneous extends SettingsPreferenceFragment implements
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.blackiron_settings_misc);
         addPreferencesFromResource(R.xml.blackiron_settings_misc);
 
         final PreferenceScreen prefScreen = getPreferenceScreen();
@@ -73,17 +78,21 @@ public class Miscellaneous extends SettingsPreferenceFragment implements
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        Settings.System.putIntForUser(resolver,
-                Settings.System.POCKET_JUDGE, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.THREE_FINGER_GESTURE, 0, UserHandle.USER_CURRENT);
-        LineageSettings.System.putIntForUser(resolver,
-                LineageSettings.System.AUTO_BRIGHTNESS_ONE_SHOT, 0, UserHandle.USER_CURRENT);
-        SystemProperties.set(SYS_GAMES_SPOOF, "false");
-        SystemProperties.set(SYS_PHOTOS_SPOOF, "true");
-        SystemProperties.set(SYS_NETFLIX_SPOOF, "false");
-        SensorBlock.reset(mContext);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.POCKET_JUDGE, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.THREE_FINGER_GESTURE, 0);
+        spec.putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                LineageSettings.System.AUTO_BRIGHTNESS_ONE_SHOT, 0);
+        SensorBlock.addResetEntries(mContext, spec);
+        spec.runAfter(() -> {
+            SystemProperties.set(SYS_GAMES_SPOOF, "false");
+            SystemProperties.set(SYS_PHOTOS_SPOOF, "true");
+            SystemProperties.set(SYS_NETFLIX_SPOOF, "false");
+        });
+        return spec;
     }
 
     @Override
@@ -38,6 +38,11 @@ import com.android.settingslib.search.SearchIndexable;
 
 import com.android.internal.logging.nano.MetricsProto;
 import com.android.internal.util.blackiron.Utils;
+import com.blackiron.settings.preferences.InstrumentedSettings;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import lineageos.providers.LineageSettings;
 
@@ -72,6 +77,7 @@ public class Navigation extends SettingsPreferenceFragment implements
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.blackiron_settings_navigation);
         addPreferencesFromResource(R.xml.blackiron_settings_navigation);
 
         final Resources res = getResources();
@@ -81,8 +87,8 @@ public class Navigation extends SettingsPreferenceFragment implements
 
         mNavbarVisibility = (SwitchPreferenceCompat) findPreference(NAVBAR_VISIBILITY);
 
-        boolean showing = LineageSettings.System.getIntForUser(resolver,
-                LineageSettings.System.FORCE_SHOW_NAVBAR,
+        boolean showing = InstrumentedSettings.getIntForUser(resolver,
+                SettingsNamespace.LINEAGE_SYSTEM, LineageSettings.System.FORCE_SHOW_NAVBAR,
                 Utils.hasNavbarByDefault(getActivity()) ? 1 : 0, UserHandle.USER_CURRENT) != 0;
         mNavbarVisibility.setChecked(showing);
         mNavbarVisibility.setOnPreferenceChangeListener(this);
@@ -148,14 +154,17 @@ public class Navigation extends SettingsPreferenceFragment implements
         String value = (String) newValue;
         int index = pref.findIndexOfValue(value);
         pref.setSummary(pref.getEntries()[index]);
-        LineageSettings.System.putIntForUser(getContentResolver(), setting, Integer.valueOf(value), UserHandle.USER_CURRENT);
+        InstrumentedSettings.putIntForUser(getContentResolver(),
+                SettingsNamespace.LINEAGE_SYSTEM, setting, Integer.valueOf(value),
+                UserHandle.USER_CURRENT);
     }
 
     private void handleSystemListChange(ListPreference pref, Object newValue, String setting) {
         String value = (String) newValue;
         int index = pref.findIndexOfValue(value);
         pref.setSummary(pref.getEntries()[index]);
-        Settings.System.putIntForUser(getContentResolver(), setting, Integer.valueOf(value), UserHandle.USER_CURRENT);
+        InstrumentedSettings.putIntForUser(getContentResolver(),
+                SettingsNamespace.SYSTEM, setting, Integer.valueOf(value), UserHandle.USER_CURRENT);
     }
 
     @Override
@@ -168,7 +177,8 @@ public class Navigation extends SettingsPreferenceFragment implements
             }
             mIsNavSwitchingMode = true;
             boolean showing = ((Boolean)newValue);
-            LineageSettings.System.putIntForUser(resolver, LineageSettings.System.FORCE_SHOW_NAVBAR,
+            InstrumentedSettings.putIntForUser(resolver,
+                    SettingsNamespace.LINEAGE_SYSTEM, LineageSettings.System.FORCE_SHOW_NAVBAR,
                     showing ? 1 : 0, UserHandle.USER_CURRENT);
             mNavbarVisibility.setChecked(showing);
             mHandler.postDelayed(new Runnable() {
@@ -204,27 +214,23 @@ public class Navigation extends SettingsPreferenceFragment implements
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        LineageSettings.System.putIntForUser(resolver, LineageSettings.System.FORCE_SHOW_NAVBAR,
-             Utils.hasNavbarByDefault(mContext) ? 1 : 0, UserHandle.USER_CURRENT);
-        LineageSettings.System.putIntForUser(resolver,
-             LineageSettings.System.NAVIGATION_BAR_MENU_ARROW_KEYS, 0, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.NAVBAR_INVERSE_LAYOUT, 0, UserHandle.USER_CURRENT);
-        Settings.Secure.putStringForUser(resolver,
-                Settings.Secure.NAVBAR_LAYOUT_VIEWS, "default", UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.BACK_GESTURE_ARROW, 1, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.BACK_GESTURE_HAPTIC, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.PIXEL_NAV_ANIMATION, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.BACK_GESTURE_HEIGHT, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.GESTURE_NAVBAR_LENGTH_MODE, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.GESTURE_NAVBAR_RADIUS, 3, UserHandle.USER_CURRENT);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                LineageSettings.System.FORCE_SHOW_NAVBAR, Utils.hasNavbarByDefault(mContext) ? 1 : 0);
+        spec.putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                LineageSettings.System.NAVIGATION_BAR_MENU_ARROW_KEYS, 0);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.NAVBAR_INVERSE_LAYOUT, 0);
+        spec.putString(SettingsNamespace.SECURE, Settings.Secure.NAVBAR_LAYOUT_VIEWS, "default");
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.BACK_GESTURE_ARROW, 1);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.BACK_GESTURE_HAPTIC, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.PIXEL_NAV_ANIMATION, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.BACK_GESTURE_HEIGHT, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.GESTURE_NAVBAR_LENGTH_MODE, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.GESTURE_NAVBAR_RADIUS, 3);
+        return spec;
     }
 
     @Override
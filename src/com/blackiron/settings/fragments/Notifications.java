@@ -41,6 +41,10 @@ import com.android.internal.util.blackiron.Utils;
 
 import com.blackiron.settings.fragments.notifications.IslandSettings;
 import com.blackiron.settings.preferences.CustomSeekBarPreference;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import java.util.List;
 
@@ -73,6 +77,7 @@ public class Notifications extends SettingsPreferenceFragment implements
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.blackiron_settings_notifications);
         addPreferencesFromResource(R.xml.blackiron_settings_notifications);
 
         final PreferenceScreen prefScreen = getPreferenceScreen();
@@ -154,26 +159,22 @@ public class Notifications extends SettingsPreferenceFragment implements
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        Settings.Global.putInt(resolver,
-                Settings.Global.HEADS_UP_NOTIFICATIONS_ENABLED, 1);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.LESS_BORING_HEADS_UP, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.NOTIFICATION_SOUND_VIB_SCREEN_ON, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.FLASHLIGHT_ON_CALL, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.FLASHLIGHT_ON_CALL_IGNORE_DND, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.FLASHLIGHT_ON_CALL_RATE, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.ALERT_SLIDER_NOTIFICATIONS, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.NOTIFICATION_GUTS_KILL_APP_BUTTON, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.HEADS_UP_TIMEOUT, getDefaultDecay(mContext), UserHandle.USER_CURRENT);
-        IslandSettings.reset(mContext);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.GLOBAL, Settings.Global.HEADS_UP_NOTIFICATIONS_ENABLED, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.LESS_BORING_HEADS_UP, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.NOTIFICATION_SOUND_VIB_SCREEN_ON, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.FLASHLIGHT_ON_CALL, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.FLASHLIGHT_ON_CALL_IGNORE_DND, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.FLASHLIGHT_ON_CALL_RATE, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.ALERT_SLIDER_NOTIFICATIONS, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.NOTIFICATION_GUTS_KILL_APP_BUTTON, 0);
+        spec.putInt(SettingsNamespace.SYSTEM,
+                Settings.System.HEADS_UP_TIMEOUT, getDefaultDecay(mContext));
+        IslandSettings.addResetEntries(mContext, spec);
+        return spec;
     }
 
     @Override
@@ -39,6 +39,11 @@ import com.android.settingslib.search.SearchIndexable;
 
 import com.blackiron.settings.fragments.quicksettings.QsHeaderImageSettings;
 import com.blackiron.settings.preferences.CustomSeekBarPreference;
+import com.blackiron.settings.preferences.InstrumentedSettings;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import lineageos.providers.LineageSettings;
 
@@ -77,6 +82,7 @@ public class QuickSettings extends SettingsPreferenceFragment implements
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.blackiron_settings_quicksettings);
         addPreferencesFromResource(R.xml.blackiron_settings_quicksettings);
 
         mThemeUtils = new ThemeUtils(getActivity());
@@ -87,7 +93,8 @@ public class QuickSettings extends SettingsPreferenceFragment implements
 
         mShowBrightnessSlider = findPreference(KEY_SHOW_BRIGHTNESS_SLIDER);
         mShowBrightnessSlider.setOnPreferenceChangeListener(this);
-        boolean showSlider = LineageSettings.Secure.getIntForUser(resolver,
+        boolean showSlider = InstrumentedSettings.getIntForUser(resolver,
+                SettingsNamespace.LINEAGE_SECURE,
                 LineageSettings.Secure.QS_SHOW_BRIGHTNESS_SLIDER, 1, UserHandle.USER_CURRENT) > 0;
 
         mBrightnessSliderPosition = findPreference(KEY_BRIGHTNESS_SLIDER_POSITION);
@@ -110,7 +117,8 @@ public class QuickSettings extends SettingsPreferenceFragment implements
 
         mTileAnimationStyle.setOnPreferenceChangeListener(this);
 
-        int tileAnimationStyle = Settings.System.getIntForUser(resolver,
+        int tileAnimationStyle = InstrumentedSettings.getIntForUser(resolver,
+                SettingsNamespace.SYSTEM,
                 Settings.System.QS_TILE_ANIMATION_STYLE, 0, UserHandle.USER_CURRENT);
         updateAnimTileStyle(tileAnimationStyle);
 
@@ -141,14 +149,14 @@ public class QuickSettings extends SettingsPreferenceFragment implements
             return true;
         } else if (preference == mQsUI) {
             int value = Integer.parseInt((String) newValue);
-            Settings.System.putIntForUser(resolver,
+            InstrumentedSettings.putIntForUser(resolver, SettingsNamespace.SYSTEM,
                     Settings.System.QS_TILE_UI_STYLE, value, UserHandle.USER_CURRENT);
             updateQsStyle(getActivity());
             checkQSOverlays(getActivity());
             return true;
         } else if (preference == mQsPanelStyle) {
             int value = Integer.parseInt((String) newValue);
-            Settings.System.putIntForUser(resolver,
+            InstrumentedSettings.putIntForUser(resolver, SettingsNamespace.SYSTEM,
                     Settings.System.QS_PANEL_STYLE, value, UserHandle.USER_CURRENT);
             updateQsPanelStyle(getActivity());
             checkQSOverlays(getActivity());
@@ -158,58 +166,42 @@ public class QuickSettings extends SettingsPreferenceFragment implements
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QS_BATTERY_STYLE, -1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QS_SHOW_BATTERY_PERCENT, 2, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.SECURE_LOCKSCREEN_QS_DISABLED, 0, UserHandle.USER_CURRENT);
-//        Settings.System.putIntForUser(resolver,
-  //              Settings.System.NOTIFICATION_MATERIAL_DISMISS, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QS_TRANSPARENCY, 100, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QS_FOOTER_TRANSPARENCY, 100, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QS_TILE_ANIMATION_STYLE, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QS_TILE_ANIMATION_DURATION, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QS_TILE_ANIMATION_INTERPOLATOR, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QS_TILE_UI_STYLE, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QS_PANEL_STYLE, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QS_LAYOUT_COLUMNS_LANDSCAPE, 4, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QQS_LAYOUT_ROWS, 2, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QQS_LAYOUT_ROWS_LANDSCAPE, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QS_LAYOUT_COLUMNS, 2, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QS_TILE_VERTICAL_LAYOUT, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QS_TILE_LABEL_HIDE, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QS_TILE_LABEL_SIZE, 14, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QS_BRIGHTNESS_SLIDER_HAPTIC, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QS_DUAL_TONE, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.QS_SHOW_DATA_USAGE, 0, UserHandle.USER_CURRENT);
-        LineageSettings.Secure.putIntForUser(resolver,
-                LineageSettings.Secure.QS_SHOW_BRIGHTNESS_SLIDER, 1, UserHandle.USER_CURRENT);
-        LineageSettings.Secure.putIntForUser(resolver,
-                LineageSettings.Secure.QS_BRIGHTNESS_SLIDER_POSITION, 0, UserHandle.USER_CURRENT);
-        LineageSettings.Secure.putIntForUser(resolver,
-                LineageSettings.Secure.QS_SHOW_AUTO_BRIGHTNESS, 1, UserHandle.USER_CURRENT);
-        updateQsStyle(mContext);
-        updateQsPanelStyle(mContext);
-        QsHeaderImageSettings.reset(mContext);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QS_BATTERY_STYLE, -1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QS_SHOW_BATTERY_PERCENT, 2);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.SECURE_LOCKSCREEN_QS_DISABLED, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QS_TRANSPARENCY, 100);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QS_FOOTER_TRANSPARENCY, 100);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QS_TILE_ANIMATION_STYLE, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QS_TILE_ANIMATION_DURATION, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QS_TILE_ANIMATION_INTERPOLATOR, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QS_TILE_UI_STYLE, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QS_PANEL_STYLE, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QS_LAYOUT_COLUMNS_LANDSCAPE, 4);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QQS_LAYOUT_ROWS, 2);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QQS_LAYOUT_ROWS_LANDSCAPE, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QS_LAYOUT_COLUMNS, 2);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QS_TILE_VERTICAL_LAYOUT, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QS_TILE_LABEL_HIDE, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QS_TILE_LABEL_SIZE, 14);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QS_BRIGHTNESS_SLIDER_HAPTIC, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QS_DUAL_TONE, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.QS_SHOW_DATA_USAGE, 0);
+        spec.putInt(SettingsNamespace.LINEAGE_SECURE,
+                LineageSettings.Secure.QS_SHOW_BRIGHTNESS_SLIDER, 1);
+        spec.putInt(SettingsNamespace.LINEAGE_SECURE,
+                LineageSettings.Secure.QS_BRIGHTNESS_SLIDER_POSITION, 0);
+        spec.putInt(SettingsNamespace.LINEAGE_SECURE,
+                LineageSettings.Secure.QS_SHOW_AUTO_BRIGHTNESS, 1);
+        QsHeaderImageSettings.addResetEntries(mContext, spec);
+        spec.runAfter(() -> {
+            updateQsStyle(mContext);
+            updateQsPanelStyle(mContext);
+        });
+        return spec;
     }
 
     private void updateAnimTileStyle(int tileAnimationStyle) {
@@ -220,7 +212,7 @@ public class QuickSettings extends SettingsPreferenceFragment implements
     private static void updateQsStyle(Context context) {
         ContentResolver resolver = context.getContentResolver();
 
-        boolean isA11Style = Settings.System.getIntForUser(resolver,
+        boolean isA11Style = InstrumentedSettings.getIntForUser(resolver, SettingsNamespace.SYSTEM,
                 Settings.System.QS_TILE_UI_STYLE , 0, UserHandle.USER_CURRENT) != 0;
 
 	    String qsUIStyleCategory = "android.theme.customization.qs_ui";
@@ -242,7 +234,7 @@ public class QuickSettings extends SettingsPreferenceFragment implements
     private static void updateQsPanelStyle(Context context) {
         ContentResolver resolver = context.getContentResolver();
 
-        int qsPanelStyle = Settings.System.getIntForUser(resolver,
+        int qsPanelStyle = InstrumentedSettings.getIntForUser(resolver, SettingsNamespace.SYSTEM,
                 Settings.System.QS_PANEL_STYLE, 0, UserHandle.USER_CURRENT);
 
         String qsPanelStyleCategory = "android.theme.customization.qs_panel";
@@ -293,9 +285,9 @@ public class QuickSettings extends SettingsPreferenceFragment implements
 
     private void checkQSOverlays(Context context) {
         ContentResolver resolver = context.getContentResolver();
-        int isA11Style = Settings.System.getIntForUser(resolver,
+        int isA11Style = InstrumentedSettings.getIntForUser(resolver, SettingsNamespace.SYSTEM,
                 Settings.System.QS_TILE_UI_STYLE , 0, UserHandle.USER_CURRENT);
-        int qsPanelStyle = Settings.System.getIntForUser(resolver,
+        int qsPanelStyle = InstrumentedSettings.getIntForUser(resolver, SettingsNamespace.SYSTEM,
                 Settings.System.QS_PANEL_STYLE , 0, UserHandle.USER_CURRENT);
 
         if (isA11Style > 0) {
@@ -303,7 +295,7 @@ public class QuickSettings extends SettingsPreferenceFragment implements
             mQsPanelStyle.setEnabled(false);
             if (qsPanelStyle > 0) {
                 qsPanelStyle = 0;
-                Settings.System.putIntForUser(resolver,
+                InstrumentedSettings.putIntForUser(resolver, SettingsNamespace.SYSTEM,
                         Settings.System.QS_PANEL_STYLE, 0, UserHandle.USER_CURRENT);
                 updateQsPanelStyle(context);
             }
@@ -312,7 +304,7 @@ public class QuickSettings extends SettingsPreferenceFragment implements
             mQsUI.setEnabled(false);
             if (isA11Style > 0) {
                 isA11Style = 0;
-                Settings.System.putIntForUser(resolver,
+                InstrumentedSettings.putIntForUser(resolver, SettingsNamespace.SYSTEM,
                         Settings.System.QS_TILE_UI_STYLE, 0, UserHandle.USER_CURRENT);
                 updateQsStyle(context);
             }
@@ -42,6 +42,10 @@ import com.android.settingslib.search.SearchIndexable;
 import com.blackiron.settings.fragments.sound.AdaptivePlayback;
 import com.blackiron.settings.fragments.sound.PulseSettings;
 import com.blackiron.settings.utils.TelephonyUtils;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import java.util.List;
 import java.util.ArrayList;
@@ -65,6 +69,7 @@ public class Sound extends SettingsPreferenceFragment {
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.blackiron_settings_sound);
         addPreferencesFromResource(R.xml.blackiron_settings_sound);
 
         final PreferenceScreen prefScreen = getPreferenceScreen();
@@ -86,22 +91,20 @@ public class Sound extends SettingsPreferenceFragment {
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        LineageSettings.Secure.putIntForUser(resolver,
-                LineageSettings.Secure.VOLUME_PANEL_ON_LEFT, isAudioPanelOnLeftSide(mContext) ? 1 : 0,
-                UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.VOLUME_DIALOG_DISMISS_TIMEOUT, 3000, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.VIBRATE_ON_CONNECT, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.VIBRATE_ON_CALLWAITING, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.VIBRATE_ON_DISCONNECT, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.SCREENSHOT_SHUTTER_SOUND, 1, UserHandle.USER_CURRENT);
-        PulseSettings.reset(mContext);
-        AdaptivePlayback.reset(mContext);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putBoolean(SettingsNamespace.LINEAGE_SECURE,
+                LineageSettings.Secure.VOLUME_PANEL_ON_LEFT, isAudioPanelOnLeftSide(mContext));
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.VOLUME_DIALOG_DISMISS_TIMEOUT, 3000);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.VIBRATE_ON_CONNECT, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.VIBRATE_ON_CALLWAITING, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.VIBRATE_ON_DISCONNECT, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.SCREENSHOT_SHUTTER_SOUND, 1);
+        PulseSettings.addResetEntries(mContext, spec);
+        AdaptivePlayback.addResetEntries(mContext, spec);
+        return spec;
     }
 
     private static boolean isAudioPanelOnLeftSide(Context context) {
@@ -35,6 +35,7 @@ import androidx.preference.SwitchPreferenceCompat;
 import com.android.internal.logging.nano.MetricsProto;
 import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
+import com.blackiron.settings.preferences.InstrumentedSettings;
 import com.blackiron.settings.preferences.SystemSettingListPreference;
 import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settingslib.search.SearchIndexable;
@@ -44,6 +45,10 @@ import com.blackiron.settings.fragments.statusbar.Clock;
 import com.blackiron.settings.fragments.statusbar.NetworkTrafficSettings;
 import com.blackiron.settings.preferences.SystemSettingSeekBarPreference;
 import com.blackiron.settings.utils.DeviceUtils;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import lineageos.preference.LineageSystemSettingListPreference;
 import lineageos.providers.LineageSettings;
@@ -81,6 +86,7 @@ public class StatusBar extends SettingsPreferenceFragment implements
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.blackiron_settings_statusbar);
         addPreferencesFromResource(R.xml.blackiron_settings_statusbar);
 
         ContentResolver resolver = getActivity().getContentResolver();
@@ -105,9 +111,11 @@ public class StatusBar extends SettingsPreferenceFragment implements
             mStatusBarClock.setEntryValues(R.array.status_bar_clock_position_values_notch);
         }
 
-        int batterystyle = Settings.System.getIntForUser(getContentResolver(),
+        int batterystyle = InstrumentedSettings.getIntForUser(getContentResolver(),
+                SettingsNamespace.SYSTEM,
                 Settings.System.STATUS_BAR_BATTERY_STYLE, BATTERY_STYLE_PORTRAIT, UserHandle.USER_CURRENT);
-        int batterypercent = Settings.System.getIntForUser(getContentResolver(),
+        int batterypercent = InstrumentedSettings.getIntForUser(getContentResolver(),
+                SettingsNamespace.SYSTEM,
                 Settings.System.STATUS_BAR_SHOW_BATTERY_PERCENT, 0, UserHandle.USER_CURRENT);
 
         mBatteryStyle = (SystemSettingListPreference) findPreference(KEY_STATUS_BAR_BATTERY_STYLE);
@@ -138,7 +146,8 @@ public class StatusBar extends SettingsPreferenceFragment implements
     public boolean onPreferenceChange(Preference preference, Object newValue) {
         if (preference == mBatteryStyle) {
             int value = Integer.parseInt((String) newValue);
-            int batterypercent = Settings.System.getIntForUser(getContentResolver(),
+            int batterypercent = InstrumentedSettings.getIntForUser(getContentResolver(),
+                    SettingsNamespace.SYSTEM,
                     Settings.System.STATUS_BAR_SHOW_BATTERY_PERCENT, 0, UserHandle.USER_CURRENT);
             mBatteryPercent.setEnabled(
                     value != BATTERY_STYLE_TEXT && value != BATTERY_STYLE_HIDDEN);
@@ -147,7 +156,8 @@ public class StatusBar extends SettingsPreferenceFragment implements
             return true;
         } else if (preference == mBatteryPercent) {
             int value = Integer.parseInt((String) newValue);
-            int batterystyle = Settings.System.getIntForUser(getContentResolver(),
+            int batterystyle = InstrumentedSettings.getIntForUser(getContentResolver(),
+                    SettingsNamespace.SYSTEM,
                     Settings.System.STATUS_BAR_BATTERY_STYLE, BATTERY_STYLE_PORTRAIT, UserHandle.USER_CURRENT);
             mBatteryTextCharging.setEnabled(batterystyle == BATTERY_STYLE_HIDDEN ||
                     (batterystyle != BATTERY_STYLE_TEXT && value != 2));
@@ -161,44 +171,34 @@ public class StatusBar extends SettingsPreferenceFragment implements
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-
-        LineageSettings.System.putIntForUser(resolver,
-                LineageSettings.System.DOUBLE_TAP_SLEEP_GESTURE, 1, UserHandle.USER_CURRENT);
-        LineageSettings.System.putIntForUser(resolver,
-                LineageSettings.System.STATUS_BAR_QUICK_QS_PULLDOWN, 0, UserHandle.USER_CURRENT);
-        LineageSettings.System.putIntForUser(resolver,
-                LineageSettings.System.STATUS_BAR_CLOCK, 2, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.ENABLE_CAMERA_PRIVACY_INDICATOR, 1, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.ENABLE_LOCATION_PRIVACY_INDICATOR, 1, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.ENABLE_PROJECTION_PRIVACY_INDICATOR, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.BLUETOOTH_SHOW_BATTERY, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUS_BAR_BATTERY_STYLE, BATTERY_STYLE_PORTRAIT, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUS_BAR_SHOW_BATTERY_PERCENT, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUS_BAR_BATTERY_TEXT_CHARGING, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUSBAR_COLORED_ICONS, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUSBAR_NOTIF_COUNT, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUS_BAR_BRIGHTNESS_CONTROL, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.DATA_DISABLED_ICON, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.ROAMING_INDICATOR_ICON, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.WIFI_STANDARD_ICON, 0, UserHandle.USER_CURRENT);
-
-        BatteryBar.reset(mContext);
-        Clock.reset(mContext);
-        NetworkTrafficSettings.reset(mContext);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                LineageSettings.System.DOUBLE_TAP_SLEEP_GESTURE, 1);
+        spec.putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                LineageSettings.System.STATUS_BAR_QUICK_QS_PULLDOWN, 0);
+        spec.putInt(SettingsNamespace.LINEAGE_SYSTEM, LineageSettings.System.STATUS_BAR_CLOCK, 2);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.ENABLE_CAMERA_PRIVACY_INDICATOR, 1);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.ENABLE_LOCATION_PRIVACY_INDICATOR, 1);
+        spec.putInt(SettingsNamespace.SECURE,
+                Settings.Secure.ENABLE_PROJECTION_PRIVACY_INDICATOR, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.BLUETOOTH_SHOW_BATTERY, 1);
+        spec.putInt(SettingsNamespace.SYSTEM,
+                Settings.System.STATUS_BAR_BATTERY_STYLE, BATTERY_STYLE_PORTRAIT);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUS_BAR_SHOW_BATTERY_PERCENT, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUS_BAR_BATTERY_TEXT_CHARGING, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUSBAR_COLORED_ICONS, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUSBAR_NOTIF_COUNT, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUS_BAR_BRIGHTNESS_CONTROL, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.DATA_DISABLED_ICON, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.ROAMING_INDICATOR_ICON, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.WIFI_STANDARD_ICON, 0);
+        BatteryBar.addResetEntries(mContext, spec);
+        Clock.addResetEntries(mContext, spec);
+        NetworkTrafficSettings.addResetEntries(mContext, spec);
+        return spec;
     }
 
     private void updateQuickPulldownSummary(int value) {
@@ -41,6 +41,7 @@ import com.android.internal.util.blackiron.Utils;
 import com.blackiron.settings.fragments.udfps.UdfpsIconPicker;
 
 import com.android.settings.R;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settingslib.search.SearchIndexable;
@@ -58,6 +59,7 @@ public class Udfps extends SettingsPreferenceFragment implements
     @Override
     public void onCreate(Bundle icicle) {
         super.onCreate(icicle);
+        SettingsPrefetcher.prefetch(getContext(), R.xml.blackiron_settings_udfps);
         addPreferencesFromResource(R.xml.blackiron_settings_udfps);
 
         final PreferenceScreen prefSet = getPreferenceScreen();
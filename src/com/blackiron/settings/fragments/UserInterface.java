@@ -39,6 +39,10 @@ import com.android.settingslib.search.SearchIndexable;
 import com.blackiron.settings.fragments.ui.DozeSettings;
 import com.blackiron.settings.fragments.ui.SmartPixels;
 import com.blackiron.settings.fragments.ui.MonetSettings;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import java.util.List;
 
@@ -57,6 +61,7 @@ public class UserInterface extends SettingsPreferenceFragment {
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.blackiron_settings_ui);
         addPreferencesFromResource(R.xml.blackiron_settings_ui);
 
         Context mContext = getActivity().getApplicationContext();
@@ -78,15 +83,16 @@ public class UserInterface extends SettingsPreferenceFragment {
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        Settings.System.putIntForUser(resolver,
-                Settings.System.CHARGING_ANIMATION, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.ENABLE_ROTATION_BUTTON, 1, UserHandle.USER_CURRENT);
-
-        DozeSettings.reset(mContext);
-        MonetSettings.reset(mContext);
-        SmartPixels.reset(mContext);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.CHARGING_ANIMATION, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.ENABLE_ROTATION_BUTTON, 1);
+        DozeSettings.addResetEntries(mContext, spec);
+        MonetSettings.addResetEntries(mContext, spec);
+        SmartPixels.addResetEntries(mContext, spec);
+        return spec;
     }
 
     @Override
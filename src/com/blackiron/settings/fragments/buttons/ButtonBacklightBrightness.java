@@ -40,6 +40,10 @@ import com.android.settings.R;
 
 import com.blackiron.settings.preferences.CustomDialogPref;
 import com.blackiron.settings.utils.DeviceUtils;
+import com.blackiron.settings.preferences.InstrumentedSettings;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
 
 import lineageos.providers.LineageSettings;
 
@@ -270,12 +274,12 @@ public class ButtonBacklightBrightness extends CustomDialogPref<AlertDialog> imp
     }
 
     private int getTimeout() {
-        return LineageSettings.Secure.getInt(mResolver,
+        return InstrumentedSettings.getInt(mResolver, SettingsNamespace.LINEAGE_SECURE,
                 LineageSettings.Secure.BUTTON_BACKLIGHT_TIMEOUT, DEFAULT_BUTTON_TIMEOUT * 1000) / 1000;
     }
 
     private void applyTimeout(int timeout) {
-        LineageSettings.Secure.putInt(mResolver,
+        InstrumentedSettings.putInt(mResolver, SettingsNamespace.LINEAGE_SECURE,
                 LineageSettings.Secure.BUTTON_BACKLIGHT_TIMEOUT, timeout * 1000);
     }
 
@@ -408,11 +412,13 @@ public class ButtonBacklightBrightness extends CustomDialogPref<AlertDialog> imp
             } else if (mSeekBar != null && !persisted) {
                 return mSeekBar.getProgress() / 100.0f;
             }
-            return LineageSettings.Secure.getFloat(mResolver, mSetting, mDefaultBrightness);
+            return InstrumentedSettings.getFloat(mResolver,
+                    SettingsNamespace.LINEAGE_SECURE, mSetting, mDefaultBrightness);
         }
 
         public void applyBrightness() {
-            LineageSettings.Secure.putFloat(mResolver, mSetting, getBrightness(false));
+            InstrumentedSettings.putFloat(mResolver,
+                    SettingsNamespace.LINEAGE_SECURE, mSetting, getBrightness(false));
         }
 
         /* Behaviors when it's a seekbar */
@@ -461,12 +467,16 @@ public class ButtonBacklightBrightness extends CustomDialogPref<AlertDialog> imp
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
         float defaultBrightness = mContext.getResources().getFloat(
                 org.lineageos.platform.internal.R.dimen.config_buttonBrightnessSettingDefaultFloat);
 
-        LineageSettings.Secure.putFloatForUser(resolver,
-                LineageSettings.Secure.BUTTON_BRIGHTNESS, defaultBrightness, UserHandle.USER_CURRENT);
+        spec.putFloat(SettingsNamespace.LINEAGE_SECURE,
+                LineageSettings.Secure.BUTTON_BRIGHTNESS, defaultBrightness);
+        return spec;
     }
 
     private class ButtonBrightnessControl extends BrightnessControl {
@@ -496,11 +506,13 @@ public class ButtonBacklightBrightness extends CustomDialogPref<AlertDialog> imp
         }
 
         public boolean isOnlyWhenPressedEnabled() {
-            return LineageSettings.System.getInt(mResolver, mOnlyWhenPressedSetting, 0) == 1;
+            return InstrumentedSettings.getInt(mResolver,
+                    SettingsNamespace.LINEAGE_SYSTEM, mOnlyWhenPressedSetting, 0) == 1;
         }
 
         public void setOnlyWhenPressedEnabled(boolean enabled) {
-            LineageSettings.System.putInt(mResolver, mOnlyWhenPressedSetting, enabled ? 1 : 0);
+            InstrumentedSettings.putInt(mResolver,
+                    SettingsNamespace.LINEAGE_SYSTEM, mOnlyWhenPressedSetting, enabled ? 1 : 0);
         }
     }
 }
@@ -43,6 +43,10 @@ import com.android.settingslib.applications.ServiceListing;
 import com.android.settings.R;
 
 import com.blackiron.settings.utils.TelephonyUtils;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import lineageos.app.LineageGlobalActions;
 import lineageos.providers.LineageSettings;
@@ -74,6 +78,7 @@ public class PowerMenuActions extends SettingsPreferenceFragment {
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.power_menu);
         addPreferencesFromResource(R.xml.power_menu);
         mContext = getActivity().getApplicationContext();
         mLockPatternUtils = new LockPatternUtils(mContext);
@@ -221,11 +226,14 @@ public class PowerMenuActions extends SettingsPreferenceFragment {
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        LineageSettings.Secure.putIntForUser(resolver,
-                LineageSettings.Secure.ADVANCED_REBOOT, 1, UserHandle.USER_CURRENT);
-        LineageSettings.Secure.putIntForUser(resolver,
-                LineageSettings.Secure.ADVANCED_REBOOT_SECURED, 1, UserHandle.USER_CURRENT);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.LINEAGE_SECURE, LineageSettings.Secure.ADVANCED_REBOOT, 1);
+        spec.putInt(SettingsNamespace.LINEAGE_SECURE,
+                LineageSettings.Secure.ADVANCED_REBOOT_SECURED, 1);
+        return spec;
     }
 
     @Override
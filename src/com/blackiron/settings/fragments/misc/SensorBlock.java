@@ -48,8 +48,14 @@ import com.android.internal.logging.nano.MetricsProto;
 import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
 
+import com.blackiron.settings.preferences.AppIconLoader;
+import com.blackiron.settings.preferences.InstrumentedSettings;
+import com.blackiron.settings.preferences.PackageCatalog;
 import com.blackiron.settings.preferences.PackageListAdapter;
-import com.blackiron.settings.preferences.PackageListAdapter.PackageItem;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -76,6 +82,7 @@ public class SensorBlock extends SettingsPreferenceFragment
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         // Get launch-able applications
+        SettingsPrefetcher.prefetch(getContext(), R.xml.sensor_block_settings);
         addPreferencesFromResource(R.xml.sensor_block_settings);
 
         findPreference(SENSOR_BLOCK_FOOTER).setTitle(R.string.add_sensor_block_package_summary);
@@ -101,6 +108,13 @@ public class SensorBlock extends SettingsPreferenceFragment
     public void onResume() {
         super.onResume();
         refreshCustomApplicationPrefs();
+        mPackageAdapter.setListening(true);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        mPackageAdapter.setListening(false);
     }
 
     @Override
@@ -123,12 +137,11 @@ public class SensorBlock extends SettingsPreferenceFragment
     public Dialog onCreateDialog(int id) {
         AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
         final Dialog dialog;
-        final ListView list = new ListView(getActivity());
-        list.setAdapter(mPackageAdapter);
-        list.setDivider(null);
+        final View chooser = mPackageAdapter.inflateChooser(getActivity());
+        final ListView list = chooser.findViewById(R.id.app_chooser_list);
 
         builder.setTitle(R.string.choose_app);
-        builder.setView(list);
+        builder.setView(chooser);
         dialog = builder.create();
 
         switch (id) {
@@ -137,7 +150,8 @@ public class SensorBlock extends SettingsPreferenceFragment
                     @Override
                     public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
                         // Add empty application definition, the user will be able to edit it later
-                        PackageItem info = (PackageItem) parent.getItemAtPosition(position);
+                        PackageCatalog.App info =
+                                (PackageCatalog.App) parent.getItemAtPosition(position);
                         addCustomApplicationPref(info.packageName, mBlockedPackages);
                         dialog.cancel();
                     }
@@ -147,11 +161,13 @@ public class SensorBlock extends SettingsPreferenceFragment
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        Settings.System.putIntForUser(resolver,
-                Settings.System.SENSOR_BLOCK, 0, UserHandle.USER_CURRENT);
-        Settings.System.putString(resolver,
-                Settings.System.SENSOR_BLOCKED_APP, null);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.SENSOR_BLOCK, 0);
+        spec.putString(SettingsNamespace.SYSTEM, Settings.System.SENSOR_BLOCKED_APP, null);
+        return spec;
     }
 
     /**
@@ -256,7 +272,7 @@ public class SensorBlock extends SettingsPreferenceFragment
 
         pref.setKey(pkg.name);
         pref.setTitle(info.applicationInfo.loadLabel(mPackageManager));
-        pref.setIcon(info.applicationInfo.loadIcon(mPackageManager));
+        AppIconLoader.getInstance(getActivity()).bind(pref, pkg.name);
         pref.setPersistent(false);
         pref.setOnPreferenceClickListener(this);
         return pref;
@@ -315,7 +331,7 @@ public class SensorBlock extends SettingsPreferenceFragment
                 mBlockedPackageList = value;
             }
         }
-        Settings.System.putString(getContentResolver(),
-                setting, value);
+        InstrumentedSettings.putString(getContentResolver(),
+                SettingsNamespace.SYSTEM, setting, value);
     }
 }
@@ -26,6 +26,10 @@ import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settingslib.search.SearchIndexable;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import java.util.List;
 
@@ -37,15 +41,18 @@ public class IslandSettings extends SettingsPreferenceFragment {
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        SettingsPrefetcher.prefetch(getContext(), R.xml.island_settings);
         addPreferencesFromResource(R.xml.island_settings);
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        Settings.System.putIntForUser(resolver,
-                Settings.System.ISLAND_NOTIFICATION, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.ISLAND_NOTIFICATION_NOW_PLAYING, 1, UserHandle.USER_CURRENT);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.ISLAND_NOTIFICATION, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.ISLAND_NOTIFICATION_NOW_PLAYING, 1);
+        return spec;
     }
 
     @Override
@@ -36,6 +36,10 @@ import com.android.settings.SettingsPreferenceFragment;
 import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settingslib.search.SearchIndexable;
 import com.android.internal.logging.nano.MetricsProto;
+import com.blackiron.settings.preferences.InstrumentedSettings;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsTransaction;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import org.lineageos.internal.notification.LightsCapabilities;
 
@@ -102,6 +106,7 @@ public class BatteryLightSettings extends SettingsPreferenceFragment implements
         final boolean segmentedBatteryLed = LightsCapabilities.supports(context,
                 LightsCapabilities.LIGHTS_SEGMENTED_BATTERY_LED);
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.battery_light_settings);
         addPreferencesFromResource(R.xml.battery_light_settings);
         getActivity().getActionBar().setTitle(R.string.battery_light_title);
 
@@ -115,12 +120,13 @@ public class BatteryLightSettings extends SettingsPreferenceFragment implements
         mBatteryBrightnessPref = prefSet.findPreference(BRIGHTNESS_PREFERENCE);
         mBatteryBrightnessZenPref = prefSet.findPreference(BRIGHTNESS_ZEN_PREFERENCE);
 
-        boolean isLightEnabled = LineageSettings.System.getIntForUser(resolver,
-                LineageSettings.System.BATTERY_LIGHT_ENABLED,
+        boolean isLightEnabled = InstrumentedSettings.getIntForUser(resolver,
+                SettingsNamespace.LINEAGE_SYSTEM, LineageSettings.System.BATTERY_LIGHT_ENABLED,
                 isBatteryLightEnabled(context) ? 1 : 0, UserHandle.USER_CURRENT) != 0;
         mLightEnabledPref.setChecked(isLightEnabled);
 
-        boolean isLightFullChargeDisabled = LineageSettings.System.getIntForUser(resolver,
+        boolean isLightFullChargeDisabled = InstrumentedSettings.getIntForUser(resolver,
+                SettingsNamespace.LINEAGE_SYSTEM,
                 LineageSettings.System.BATTERY_LIGHT_FULL_CHARGE_DISABLED,
                 isBatteryLightFullChargeDisabled(context) ? 1 : 0, UserHandle.USER_CURRENT) != 0;
         mLightFullChargeDisabledPref.setChecked(isLightFullChargeDisabled);
@@ -139,8 +145,8 @@ public class BatteryLightSettings extends SettingsPreferenceFragment implements
         if (!pulsatingLed || segmentedBatteryLed) {
             generalPrefs.removePreference(mPulseEnabledPref);
         } else {
-            boolean isPulseEnabled = LineageSettings.System.getIntForUser(resolver,
-                    LineageSettings.System.BATTERY_LIGHT_PULSE,
+            boolean isPulseEnabled = InstrumentedSettings.getIntForUser(resolver,
+                    SettingsNamespace.LINEAGE_SYSTEM, LineageSettings.System.BATTERY_LIGHT_PULSE,
                     isBatteryLightPulseEnabled(context) ? 1 : 0, UserHandle.USER_CURRENT) != 0;
             mPulseEnabledPref.setChecked(isPulseEnabled);
         }
@@ -202,26 +208,30 @@ public class BatteryLightSettings extends SettingsPreferenceFragment implements
         Resources res = getResources();
 
         if (mLowColorPref != null) {
-            int lowColor = LineageSettings.System.getIntForUser(resolver,
+            int lowColor = InstrumentedSettings.getIntForUser(resolver,
+                    SettingsNamespace.LINEAGE_SYSTEM,
                     LineageSettings.System.BATTERY_LIGHT_LOW_COLOR, mDefaultLowColor, UserHandle.USER_CURRENT);
             mLowColorPref.setAllValues(lowColor, 0, 0, false);
         }
 
         if (mMediumColorPref != null) {
-            int mediumColor = LineageSettings.System.getIntForUser(resolver,
+            int mediumColor = InstrumentedSettings.getIntForUser(resolver,
+                    SettingsNamespace.LINEAGE_SYSTEM,
                     LineageSettings.System.BATTERY_LIGHT_MEDIUM_COLOR, mDefaultMediumColor, UserHandle.USER_CURRENT);
             mMediumColorPref.setAllValues(mediumColor, 0, 0, false);
         }
 
         if (mFullColorPref != null) {
-            int fullColor = LineageSettings.System.getIntForUser(resolver,
+            int fullColor = InstrumentedSettings.getIntForUser(resolver,
+                    SettingsNamespace.LINEAGE_SYSTEM,
                     LineageSettings.System.BATTERY_LIGHT_FULL_COLOR, mDefaultFullColor, UserHandle.USER_CURRENT);
             mFullColorPref.setAllValues(fullColor, 0, 0, false);
             updateBrightnessPrefColor(fullColor);
         }
 
         if (mReallyFullColorPref != null) {
-            int reallyfullColor = LineageSettings.System.getIntForUser(resolver,
+            int reallyfullColor = InstrumentedSettings.getIntForUser(resolver,
+                    SettingsNamespace.LINEAGE_SYSTEM,
                     LineageSettings.System.BATTERY_LIGHT_REALLY_FULL_COLOR, mDefaultReallyFullColor, UserHandle.USER_CURRENT);
             mReallyFullColorPref.setAllValues(reallyfullColor, 0, 0, false);
             updateBrightnessPrefColor(reallyfullColor);
@@ -244,23 +254,25 @@ public class BatteryLightSettings extends SettingsPreferenceFragment implements
      * @param key of the specific setting to update
      */
     protected void updateValues(String key, Integer color) {
-        ContentResolver resolver = getActivity().getContentResolver();
-
+        final String setting;
         if (key.equals(LOW_COLOR_PREF)) {
-            LineageSettings.System.putIntForUser(resolver,
-                    LineageSettings.System.BATTERY_LIGHT_LOW_COLOR, color, UserHandle.USER_CURRENT);
+            setting = LineageSettings.System.BATTERY_LIGHT_LOW_COLOR;
         } else if (key.equals(MEDIUM_COLOR_PREF)) {
-            LineageSettings.System.putIntForUser(resolver,
-                    LineageSettings.System.BATTERY_LIGHT_MEDIUM_COLOR, color, UserHandle.USER_CURRENT);
+            setting = LineageSettings.System.BATTERY_LIGHT_MEDIUM_COLOR;
         } else if (key.equals(FULL_COLOR_PREF)) {
-            LineageSettings.System.putIntForUser(resolver,
-                    LineageSettings.System.BATTERY_LIGHT_FULL_COLOR, color, UserHandle.USER_CURRENT);
+            setting = LineageSettings.System.BATTERY_LIGHT_FULL_COLOR;
             updateBrightnessPrefColor(color);
         } else if (key.equals(REALLY_FULL_COLOR_PREF)) {
-            LineageSettings.System.putIntForUser(resolver,
-                    LineageSettings.System.BATTERY_LIGHT_REALLY_FULL_COLOR, color, UserHandle.USER_CURRENT);
+            setting = LineageSettings.System.BATTERY_LIGHT_REALLY_FULL_COLOR;
             updateBrightnessPrefColor(color);
+        } else {
+            return;
         }
+        // Goes through the same path as resetColors() so the commit marker
+        // covers every battery light color write
+        SettingsTransaction.begin(getActivity())
+                .putInt(SettingsNamespace.LINEAGE_SYSTEM, setting, color)
+                .commit();
     }
 
     @Override
@@ -285,18 +297,22 @@ public class BatteryLightSettings extends SettingsPreferenceFragment implements
     }
 
     protected void resetColors() {
-        ContentResolver resolver = getActivity().getContentResolver();
-
         // Reset to the framework default colors
-        LineageSettings.System.putIntForUser(resolver, LineageSettings.System.BATTERY_LIGHT_LOW_COLOR,
-                mDefaultLowColor, UserHandle.USER_CURRENT);
-        LineageSettings.System.putIntForUser(resolver, LineageSettings.System.BATTERY_LIGHT_MEDIUM_COLOR,
-                mDefaultMediumColor, UserHandle.USER_CURRENT);
-        LineageSettings.System.putIntForUser(resolver, LineageSettings.System.BATTERY_LIGHT_FULL_COLOR,
-                mDefaultFullColor, UserHandle.USER_CURRENT);
-        LineageSettings.System.putIntForUser(resolver, LineageSettings.System.BATTERY_LIGHT_REALLY_FULL_COLOR,
-                mDefaultReallyFullColor, UserHandle.USER_CURRENT);
-        refreshColors();
+        SettingsTransaction.begin(getActivity())
+                .putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                        LineageSettings.System.BATTERY_LIGHT_LOW_COLOR, mDefaultLowColor)
+                .putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                        LineageSettings.System.BATTERY_LIGHT_MEDIUM_COLOR, mDefaultMediumColor)
+                .putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                        LineageSettings.System.BATTERY_LIGHT_FULL_COLOR, mDefaultFullColor)
+                .putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                        LineageSettings.System.BATTERY_LIGHT_REALLY_FULL_COLOR,
+                        mDefaultReallyFullColor)
+                .commit(() -> {
+                    if (isAdded()) {
+                        refreshColors();
+                    }
+                });
     }
 
     private static boolean isBatteryLightEnabled(Context context) {
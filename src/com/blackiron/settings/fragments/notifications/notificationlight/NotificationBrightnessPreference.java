@@ -22,6 +22,9 @@ import android.util.AttributeSet;
 
 import lineageos.providers.LineageSettings;
 
+import com.blackiron.settings.preferences.InstrumentedSettings;
+import com.blackiron.settings.preferences.SettingsNamespace;
+
 public class NotificationBrightnessPreference extends BrightnessPreference {
     private static String TAG = "NotificationBrightnessPreference";
 
@@ -41,7 +44,8 @@ public class NotificationBrightnessPreference extends BrightnessPreference {
 
     @Override
     protected void setBrightnessSetting(int brightness) {
-        LineageSettings.System.putIntForUser(mContext.getContentResolver(),
+        InstrumentedSettings.putIntForUser(mContext.getContentResolver(),
+                SettingsNamespace.LINEAGE_SYSTEM,
                 LineageSettings.System.NOTIFICATION_LIGHT_BRIGHTNESS_LEVEL,
                 brightness, UserHandle.USER_CURRENT);
     }
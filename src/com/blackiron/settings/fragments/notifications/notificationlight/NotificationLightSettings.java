@@ -20,12 +20,13 @@ package com.blackiron.settings.fragments.notifications.notificationlight;
 import android.app.Dialog;
 import android.content.ContentResolver;
 import android.content.Context;
-import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.res.Resources;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.UserHandle;
 import android.provider.Settings;
 import android.telephony.TelephonyManager;
@@ -44,8 +45,14 @@ import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settingslib.search.SearchIndexable;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.internal.logging.nano.MetricsProto;
+import com.blackiron.settings.preferences.AppIconLoader;
+import com.blackiron.settings.preferences.InstrumentedSettings;
+import com.blackiron.settings.preferences.PackageCatalog;
 import com.blackiron.settings.preferences.PackageListAdapter;
-import com.blackiron.settings.preferences.PackageListAdapter.PackageItem;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsStores;
+import com.blackiron.settings.preferences.SettingsTransaction;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import org.lineageos.internal.notification.LightsCapabilities;
 
@@ -54,6 +61,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import lineageos.preference.LineageSystemSettingSwitchPreference;
 import lineageos.preference.SystemSettingMainSwitchPreference;
@@ -89,11 +98,15 @@ public class NotificationLightSettings extends SettingsPreferenceFragment implem
     private static final String MISSED_CALL_PREF = "missed_call";
     private static final String VOICEMAIL_PREF = "voicemail";
     private static final String ADD_APPS = "custom_apps_add";
+    private static final String APPS_HINT = "custom_apps_hint";
 
     public static final int ACTION_TEST = 0;
     public static final int ACTION_DELETE = 1;
     private static final int DIALOG_APPS = 0;
 
+    // Loads the labels of newly added apps, one refresh at a time
+    private static final ExecutorService sLabelExecutor = Executors.newSingleThreadExecutor();
+
     private int mDefaultColor;
     private int mDefaultLedOn;
     private int mDefaultLedOff;
@@ -108,18 +121,30 @@ public class NotificationLightSettings extends SettingsPreferenceFragment implem
     private ApplicationLightPreference mVoicemailPref;
     private PackageListAdapter mPackageAdapter;
     private String mPackageList;
-    private Map<String, Package> mPackages;
+    private PackageLightList mPackages;
+    // Bumped on every refresh, label loads of older refreshes are dropped
+    private int mRefreshGeneration;
+    // Whether rows of newly added apps are waiting for their labels
+    private boolean mPendingAdds;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
     // Supports rgb color control
     private boolean mMultiColorLed;
     // Supports adjustable pulse
     private boolean mLedCanPulse;
 
+    private final Runnable mRefreshDefaultIfAdded = () -> {
+        if (isAdded()) {
+            refreshDefault();
+        }
+    };
+
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
 
         final Context context = getContext();
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.notification_light_settings);
         addPreferencesFromResource(R.xml.notification_light_settings);
         getActivity().getActionBar().setTitle(R.string.notification_light_title);
 
@@ -194,7 +219,7 @@ public class NotificationLightSettings extends SettingsPreferenceFragment implem
             mPackageManager = getActivity().getPackageManager();
             mPackageAdapter = new PackageListAdapter(getActivity());
 
-            mPackages = new HashMap<>();
+            mPackages = PackageLightList.parse(null);
 
             Preference addPreference = prefSet.findPreference(ADD_APPS);
             addPreference.setOnPreferenceClickListener(preference -> {
@@ -220,37 +245,55 @@ public class NotificationLightSettings extends SettingsPreferenceFragment implem
         refreshDefault();
         refreshCustomApplicationPrefs();
         getActivity().invalidateOptionsMenu();
+        if (mPackageAdapter != null) {
+            mPackageAdapter.setShowColors(mMultiColorLed && isAutoColorEnabled());
+            mPackageAdapter.setListening(true);
+        }
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        if (mPackageAdapter != null) {
+            mPackageAdapter.setListening(false);
+        }
     }
 
     private void refreshDefault() {
         ContentResolver resolver = getActivity().getContentResolver();
-        int color = LineageSettings.System.getIntForUser(resolver,
+        int color = InstrumentedSettings.getIntForUser(resolver, SettingsNamespace.LINEAGE_SYSTEM,
                 LineageSettings.System.NOTIFICATION_LIGHT_PULSE_DEFAULT_COLOR, mDefaultColor, UserHandle.USER_CURRENT);
-        int timeOn = LineageSettings.System.getIntForUser(resolver,
+        int timeOn = InstrumentedSettings.getIntForUser(resolver, SettingsNamespace.LINEAGE_SYSTEM,
                 LineageSettings.System.NOTIFICATION_LIGHT_PULSE_DEFAULT_LED_ON, mDefaultLedOn, UserHandle.USER_CURRENT);
-        int timeOff = LineageSettings.System.getIntForUser(resolver,
+        int timeOff = InstrumentedSettings.getIntForUser(resolver, SettingsNamespace.LINEAGE_SYSTEM,
                 LineageSettings.System.NOTIFICATION_LIGHT_PULSE_DEFAULT_LED_OFF, mDefaultLedOff, UserHandle.USER_CURRENT);
 
         mDefaultPref.setAllValues(color, timeOn, timeOff);
 
         // Get Missed call and Voicemail values
         if (mCallPref != null) {
-            int callColor = LineageSettings.System.getIntForUser(resolver,
+            int callColor = InstrumentedSettings.getIntForUser(resolver,
+                    SettingsNamespace.LINEAGE_SYSTEM,
                     LineageSettings.System.NOTIFICATION_LIGHT_PULSE_CALL_COLOR, mDefaultColor, UserHandle.USER_CURRENT);
-            int callTimeOn = LineageSettings.System.getIntForUser(resolver,
+            int callTimeOn = InstrumentedSettings.getIntForUser(resolver,
+                    SettingsNamespace.LINEAGE_SYSTEM,
                     LineageSettings.System.NOTIFICATION_LIGHT_PULSE_CALL_LED_ON, mDefaultLedOn, UserHandle.USER_CURRENT);
-            int callTimeOff = LineageSettings.System.getIntForUser(resolver,
+            int callTimeOff = InstrumentedSettings.getIntForUser(resolver,
+                    SettingsNamespace.LINEAGE_SYSTEM,
                     LineageSettings.System.NOTIFICATION_LIGHT_PULSE_CALL_LED_OFF, mDefaultLedOff, UserHandle.USER_CURRENT);
 
             mCallPref.setAllValues(callColor, callTimeOn, callTimeOff);
         }
 
         if (mVoicemailPref != null) {
-            int vmailColor = LineageSettings.System.getIntForUser(resolver,
+            int vmailColor = InstrumentedSettings.getIntForUser(resolver,
+                    SettingsNamespace.LINEAGE_SYSTEM,
                     LineageSettings.System.NOTIFICATION_LIGHT_PULSE_VMAIL_COLOR, mDefaultColor, UserHandle.USER_CURRENT);
-            int vmailTimeOn = LineageSettings.System.getIntForUser(resolver,
+            int vmailTimeOn = InstrumentedSettings.getIntForUser(resolver,
+                    SettingsNamespace.LINEAGE_SYSTEM,
                     LineageSettings.System.NOTIFICATION_LIGHT_PULSE_VMAIL_LED_ON, mDefaultLedOn, UserHandle.USER_CURRENT);
-            int vmailTimeOff = LineageSettings.System.getIntForUser(resolver,
+            int vmailTimeOff = InstrumentedSettings.getIntForUser(resolver,
+                    SettingsNamespace.LINEAGE_SYSTEM,
                     LineageSettings.System.NOTIFICATION_LIGHT_PULSE_VMAIL_LED_OFF, mDefaultLedOff, UserHandle.USER_CURRENT);
 
             mVoicemailPref.setAllValues(vmailColor, vmailTimeOn, vmailTimeOff);
@@ -294,69 +337,130 @@ public class NotificationLightSettings extends SettingsPreferenceFragment implem
     private void refreshCustomApplicationPrefs() {
         Context context = getActivity();
 
-        if (!parsePackageList()) {
+        if (!parsePackageList() || mApplicationPrefList == null) {
             maybeDisplayApplicationHint(context);
             return;
         }
 
-        // Add the Application Preferences
-        if (mApplicationPrefList != null) {
-            for (int i = 0; i < mApplicationPrefList.getPreferenceCount();) {
-                Preference pref = mApplicationPrefList.getPreference(i);
-                if (ADD_APPS.equals(pref.getKey())) {
-                    i++;
-                    continue;
-                }
-
+        // Drop the rows of removed apps and update the ones whose values changed
+        for (int i = mApplicationPrefList.getPreferenceCount() - 1; i >= 0; i--) {
+            Preference pref = mApplicationPrefList.getPreference(i);
+            if (!(pref instanceof ApplicationLightPreference)) {
+                continue;
+            }
+            ApplicationLightPreference lightPref = (ApplicationLightPreference) pref;
+            PackageLightList.Entry pkg = mPackages.get(pref.getKey());
+            if (pkg == null) {
                 mApplicationPrefList.removePreference(pref);
+            } else if (lightPref.getColor() != pkg.color || lightPref.getOnValue() != pkg.timeOn
+                    || lightPref.getOffValue() != pkg.timeOff) {
+                lightPref.setAllValues(pkg.color, pkg.timeOn, pkg.timeOff);
             }
+        }
 
-            for (Package pkg : mPackages.values()) {
+        // Only apps without a row yet need their labels loaded
+        final ArrayList<String> added = new ArrayList<>();
+        for (PackageLightList.Entry pkg : mPackages.getEntries()) {
+            if (mApplicationPrefList.findPreference(pkg.name) == null) {
+                added.add(pkg.name);
+            }
+        }
+        final int generation = ++mRefreshGeneration;
+        mPendingAdds = !added.isEmpty();
+        maybeDisplayApplicationHint(context);
+        if (!mPendingAdds) {
+            return;
+        }
+
+        final PackageManager pm = mPackageManager;
+        sLabelExecutor.execute(() -> {
+            final HashMap<String, CharSequence> labels = new HashMap<>(added.size() * 2);
+            for (String packageName : added) {
                 try {
-                    PackageInfo info = mPackageManager.getPackageInfo(pkg.name,
-                            PackageManager.GET_META_DATA);
-                    ApplicationLightPreference pref =
-                            new ApplicationLightPreference(context, null,
-                                    pkg.color, pkg.timeon, pkg.timeoff);
-
-                    pref.setKey(pkg.name);
-                    pref.setTitle(info.applicationInfo.loadLabel(mPackageManager));
-                    pref.setIcon(info.applicationInfo.loadIcon(mPackageManager));
-                    pref.setPersistent(false);
-                    pref.setOnPreferenceChangeListener(this);
-                    pref.setOnLongClickListener(this);
-                    mApplicationPrefList.addPreference(pref);
+                    labels.put(packageName,
+                            pm.getApplicationInfo(packageName, 0).loadLabel(pm));
                 } catch (NameNotFoundException e) {
-                    // Do nothing
+                    // Not installed (anymore), it gets no row
                 }
             }
+            mHandler.post(() -> {
+                // A newer refresh loads whatever is still missing itself
+                if (generation != mRefreshGeneration || !isAdded()) {
+                    return;
+                }
+                mPendingAdds = false;
+                addApplicationPrefs(labels);
+            });
+        });
+    }
 
-            maybeDisplayApplicationHint(context);
-            mPackageAdapter.setExcludedPackages(new HashSet<String>(mPackages.keySet()));
+    private void addApplicationPrefs(Map<String, CharSequence> labels) {
+        final Context context = getActivity();
+        // Walk the stored list rather than the labels so rows keep its order
+        for (PackageLightList.Entry pkg : mPackages.getEntries()) {
+            CharSequence label = labels.get(pkg.name);
+            if (label == null || mApplicationPrefList.findPreference(pkg.name) != null) {
+                continue;
+            }
+            ApplicationLightPreference pref =
+                    new ApplicationLightPreference(context, null,
+                            pkg.color, pkg.timeOn, pkg.timeOff);
+
+            pref.setKey(pkg.name);
+            pref.setTitle(label);
+            AppIconLoader.getInstance(context).bind(pref, pkg.name);
+            pref.setPersistent(false);
+            pref.setOnPreferenceChangeListener(this);
+            pref.setOnLongClickListener(this);
+            mApplicationPrefList.addPreference(pref);
         }
+        maybeDisplayApplicationHint(context);
     }
 
     private void maybeDisplayApplicationHint(Context context) {
-        /* Display a pref explaining how to add apps */
-        if (mApplicationPrefList != null && mApplicationPrefList.getPreferenceCount() == 1) {
+        if (mApplicationPrefList == null) {
+            return;
+        }
+        boolean hasApps = mPendingAdds;
+        for (int i = 0; !hasApps && i < mApplicationPrefList.getPreferenceCount(); i++) {
+            hasApps = mApplicationPrefList.getPreference(i) instanceof ApplicationLightPreference;
+        }
+        Preference hint = mApplicationPrefList.findPreference(APPS_HINT);
+        if (hasApps) {
+            if (hint != null) {
+                mApplicationPrefList.removePreference(hint);
+            }
+        } else if (hint == null) {
+            /* Display a pref explaining how to add apps */
             String summary = getResources().getString(
                     R.string.notification_light_add_apps_empty_summary);
             String useCustom = getResources().getString(
                     R.string.notification_light_use_custom);
             Preference pref = new Preference(context);
+            pref.setKey(APPS_HINT);
             pref.setSummary(String.format(summary, useCustom));
             pref.setEnabled(false);
             mApplicationPrefList.addPreference(pref);
         }
     }
 
-    private int getInitialColorForPackage(String packageName) {
-        boolean autoColor = LineageSettings.System.getIntForUser(getActivity().getContentResolver(),
+    private boolean isAutoColorEnabled() {
+        return InstrumentedSettings.getIntForUser(getActivity().getContentResolver(),
+                SettingsNamespace.LINEAGE_SYSTEM,
                 NOTIFICATION_LIGHT_COLOR_AUTO, mMultiColorLed ? 1 : 0, UserHandle.USER_CURRENT) == 1;
+    }
+
+    private int getInitialColorForPackage(PackageCatalog.App app) {
         int color = mDefaultColor;
-        if (autoColor) {
+        if (!isAutoColorEnabled()) {
+            return color;
+        }
+        if (app.color != 0) {
+            // Worked out in the background when the catalog loaded the icon
+            color = app.color;
+        } else {
             try {
-                Drawable icon = mPackageManager.getApplicationIcon(packageName);
+                Drawable icon = mPackageManager.getApplicationIcon(app.packageName);
                 color = ColorUtils.generateAlertColorFromDrawable(icon);
             } catch (NameNotFoundException e) {
                 // shouldn't happen, but just return default
@@ -365,64 +469,55 @@ public class NotificationLightSettings extends SettingsPreferenceFragment implem
         return color;
     }
 
-    private void addCustomApplicationPref(String packageName) {
-        Package pkg = mPackages.get(packageName);
-        if (pkg == null) {
-            int color = getInitialColorForPackage(packageName);
-            pkg = new Package(packageName, color, mDefaultLedOn, mDefaultLedOff);
-            mPackages.put(packageName, pkg);
+    private void addCustomApplicationPref(PackageCatalog.App app) {
+        final String packageName = app.packageName;
+        if (!mPackages.contains(packageName)) {
+            int color = getInitialColorForPackage(app);
+            mPackages.put(packageName, color, mDefaultLedOn, mDefaultLedOff);
             savePackageList(false);
             refreshCustomApplicationPrefs();
         }
     }
 
     private void removeCustomApplicationPref(String packageName) {
-        if (mPackages.remove(packageName) != null) {
+        if (mPackages.remove(packageName)) {
             savePackageList(false);
             refreshCustomApplicationPrefs();
         }
     }
 
     private boolean parsePackageList() {
-        final String baseString = LineageSettings.System.getString(
-                getActivity().getContentResolver(),
-                LineageSettings.System.NOTIFICATION_LIGHT_PULSE_CUSTOM_VALUES);
+        final String baseString = SettingsStores.get(getActivity(),
+                SettingsNamespace.LINEAGE_SYSTEM).getString(
+                LineageSettings.System.NOTIFICATION_LIGHT_PULSE_CUSTOM_VALUES, null);
 
         if (TextUtils.equals(mPackageList, baseString)) {
             return false;
         }
 
         mPackageList = baseString;
-        mPackages.clear();
+        mPackages = PackageLightList.parse(baseString);
 
-        if (baseString != null) {
-            final String[] array = TextUtils.split(baseString, "\\|");
-            for (String item : array) {
-                if (TextUtils.isEmpty(item)) {
-                    continue;
-                }
-                Package pkg = Package.fromString(item);
-                if (pkg != null) {
-                    mPackages.put(pkg.name, pkg);
-                }
-            }
-        }
-
-        mPackageAdapter.setExcludedPackages(new HashSet<>(mPackages.keySet()));
+        mPackageAdapter.setExcludedPackages(getPackageNames());
 
         return true;
     }
 
-    private void savePackageList(boolean preferencesUpdated) {
-        List<String> settings = new ArrayList<>();
-        for (Package app : mPackages.values()) {
-            settings.add(app.toString());
+    private HashSet<String> getPackageNames() {
+        final HashSet<String> names = new HashSet<>(mPackages.size() * 2);
+        for (PackageLightList.Entry pkg : mPackages.getEntries()) {
+            names.add(pkg.name);
         }
-        final String value = TextUtils.join("|", settings);
+        return names;
+    }
+
+    private void savePackageList(boolean preferencesUpdated) {
+        final String value = mPackages.encode();
         if (preferencesUpdated) {
             mPackageList = value;
         }
-        LineageSettings.System.putString(getActivity().getContentResolver(),
+        // Queued, so dragging a color picker coalesces into one write
+        SettingsStores.get(getActivity(), SettingsNamespace.LINEAGE_SYSTEM).putString(
                 LineageSettings.System.NOTIFICATION_LIGHT_PULSE_CUSTOM_VALUES, value);
     }
 
@@ -433,59 +528,55 @@ public class NotificationLightSettings extends SettingsPreferenceFragment implem
      */
     protected void updateValues(String packageName, Integer color, Integer timeon,
                                 Integer timeoff) {
-        ContentResolver resolver = getActivity().getContentResolver();
-
         if (packageName.equals(DEFAULT_PREF)) {
-            LineageSettings.System.putIntForUser(resolver,
-                    LineageSettings.System.NOTIFICATION_LIGHT_PULSE_DEFAULT_COLOR, color, UserHandle.USER_CURRENT);
-            LineageSettings.System.putIntForUser(resolver,
-                    LineageSettings.System.NOTIFICATION_LIGHT_PULSE_DEFAULT_LED_ON, timeon, UserHandle.USER_CURRENT);
-            LineageSettings.System.putIntForUser(resolver,
-                    LineageSettings.System.NOTIFICATION_LIGHT_PULSE_DEFAULT_LED_OFF, timeoff, UserHandle.USER_CURRENT);
-            refreshDefault();
+            SettingsTransaction.begin(getActivity())
+                    .putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                            LineageSettings.System.NOTIFICATION_LIGHT_PULSE_DEFAULT_COLOR, color)
+                    .putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                            LineageSettings.System.NOTIFICATION_LIGHT_PULSE_DEFAULT_LED_ON, timeon)
+                    .putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                            LineageSettings.System.NOTIFICATION_LIGHT_PULSE_DEFAULT_LED_OFF, timeoff)
+                    .commit(mRefreshDefaultIfAdded);
             return;
         } else if (packageName.equals(MISSED_CALL_PREF)) {
-            LineageSettings.System.putIntForUser(resolver,
-                    LineageSettings.System.NOTIFICATION_LIGHT_PULSE_CALL_COLOR, color, UserHandle.USER_CURRENT);
-            LineageSettings.System.putIntForUser(resolver,
-                    LineageSettings.System.NOTIFICATION_LIGHT_PULSE_CALL_LED_ON, timeon, UserHandle.USER_CURRENT);
-            LineageSettings.System.putIntForUser(resolver,
-                    LineageSettings.System.NOTIFICATION_LIGHT_PULSE_CALL_LED_OFF, timeoff, UserHandle.USER_CURRENT);
-            refreshDefault();
+            SettingsTransaction.begin(getActivity())
+                    .putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                            LineageSettings.System.NOTIFICATION_LIGHT_PULSE_CALL_COLOR, color)
+                    .putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                            LineageSettings.System.NOTIFICATION_LIGHT_PULSE_CALL_LED_ON, timeon)
+                    .putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                            LineageSettings.System.NOTIFICATION_LIGHT_PULSE_CALL_LED_OFF, timeoff)
+                    .commit(mRefreshDefaultIfAdded);
             return;
         } else if (packageName.equals(VOICEMAIL_PREF)) {
-            LineageSettings.System.putIntForUser(resolver,
-                    LineageSettings.System.NOTIFICATION_LIGHT_PULSE_VMAIL_COLOR, color, UserHandle.USER_CURRENT);
-            LineageSettings.System.putIntForUser(resolver,
-                    LineageSettings.System.NOTIFICATION_LIGHT_PULSE_VMAIL_LED_ON, timeon, UserHandle.USER_CURRENT);
-            LineageSettings.System.putIntForUser(resolver,
-                    LineageSettings.System.NOTIFICATION_LIGHT_PULSE_VMAIL_LED_OFF, timeoff, UserHandle.USER_CURRENT);
-            refreshDefault();
+            SettingsTransaction.begin(getActivity())
+                    .putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                            LineageSettings.System.NOTIFICATION_LIGHT_PULSE_VMAIL_COLOR, color)
+                    .putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                            LineageSettings.System.NOTIFICATION_LIGHT_PULSE_VMAIL_LED_ON, timeon)
+                    .putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                            LineageSettings.System.NOTIFICATION_LIGHT_PULSE_VMAIL_LED_OFF, timeoff)
+                    .commit(mRefreshDefaultIfAdded);
             return;
         }
 
         // Find the custom package and sets its new values
-        Package app = mPackages.get(packageName);
-        if (app != null) {
-            app.color = color;
-            app.timeon = timeon;
-            app.timeoff = timeoff;
+        if (mPackages.contains(packageName)
+                && mPackages.put(packageName, color, timeon, timeoff)) {
             savePackageList(true);
         }
     }
 
     protected void resetColors() {
-        ContentResolver resolver = getActivity().getContentResolver();
-
         // Reset to the framework default colors
-        LineageSettings.System.putIntForUser(resolver,
-                LineageSettings.System.NOTIFICATION_LIGHT_PULSE_DEFAULT_COLOR, mDefaultColor, UserHandle.USER_CURRENT);
-        LineageSettings.System.putIntForUser(resolver,
-                LineageSettings.System.NOTIFICATION_LIGHT_PULSE_CALL_COLOR, mDefaultColor, UserHandle.USER_CURRENT);
-        LineageSettings.System.putIntForUser(resolver,
-                LineageSettings.System.NOTIFICATION_LIGHT_PULSE_VMAIL_COLOR, mDefaultColor, UserHandle.USER_CURRENT);
-
-        refreshDefault();
+        SettingsTransaction.begin(getActivity())
+                .putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                        LineageSettings.System.NOTIFICATION_LIGHT_PULSE_DEFAULT_COLOR, mDefaultColor)
+                .putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                        LineageSettings.System.NOTIFICATION_LIGHT_PULSE_CALL_COLOR, mDefaultColor)
+                .putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                        LineageSettings.System.NOTIFICATION_LIGHT_PULSE_VMAIL_COLOR, mDefaultColor)
+                .commit(mRefreshDefaultIfAdded);
     }
 
     public boolean onItemLongClick(final String key) {
@@ -510,6 +601,9 @@ public class NotificationLightSettings extends SettingsPreferenceFragment implem
         if (preference == mEnabledPref || preference == mCustomEnabledPref ||
                 preference == mScreenOnLightsPref ||
                 preference == mAutoGenerateColors) {
+            if (preference == mAutoGenerateColors && mPackageAdapter != null) {
+                mPackageAdapter.setShowColors((Boolean) objValue);
+            }
             getActivity().invalidateOptionsMenu();
         } else {
             ApplicationLightPreference lightPref = (ApplicationLightPreference) preference;
@@ -529,22 +623,18 @@ public class NotificationLightSettings extends SettingsPreferenceFragment implem
         final Dialog dialog;
         switch (id) {
             case DIALOG_APPS:
-                Resources res = getResources();
-                int paddingTop = res.getDimensionPixelOffset(R.dimen.package_list_padding_top);
-
-                final ListView list = new ListView(getActivity());
-                list.setAdapter(mPackageAdapter);
-                list.setDivider(null);
-                list.setPadding(0, paddingTop, 0, 0);
+                final View chooser = mPackageAdapter.inflateChooser(getActivity());
+                final ListView list = chooser.findViewById(R.id.app_chooser_list);
 
                 builder.setTitle(R.string.choose_app);
-                builder.setView(list);
+                builder.setView(chooser);
                 dialog = builder.create();
 
                 list.setOnItemClickListener((parent, view, position, id1) -> {
                     // Add empty application definition, the user will be able to edit it later
-                    PackageItem info = (PackageItem) parent.getItemAtPosition(position);
-                    addCustomApplicationPref(info.packageName);
+                    PackageCatalog.App info =
+                            (PackageCatalog.App) parent.getItemAtPosition(position);
+                    addCustomApplicationPref(info);
                     dialog.cancel();
                 });
                 break;
@@ -554,59 +644,6 @@ public class NotificationLightSettings extends SettingsPreferenceFragment implem
         return dialog;
     }
 
-    /**
-     * Application class
-     */
-    private static class Package {
-        public String name;
-        public Integer color;
-        public Integer timeon;
-        public Integer timeoff;
-
-        /**
-         * Stores all the application values in one call
-         */
-        public Package(String name, Integer color, Integer timeon, Integer timeoff) {
-            this.name = name;
-            this.color = color;
-            this.timeon = timeon;
-            this.timeoff = timeoff;
-        }
-
-        public String toString() {
-            StringBuilder builder = new StringBuilder();
-            builder.append(name);
-            builder.append("=");
-            builder.append(color);
-            builder.append(";");
-            builder.append(timeon);
-            builder.append(";");
-            builder.append(timeoff);
-            return builder.toString();
-        }
-
-        public static Package fromString(String value) {
-            if (TextUtils.isEmpty(value)) {
-                return null;
-            }
-            String[] app = value.split("=", -1);
-            if (app.length != 2)
-                return null;
-
-            String[] values = app[1].split(";", -1);
-            if (values.length != 3)
-                return null;
-
-            try {
-                return new Package(app[0], Integer.parseInt(values[0]), Integer
-                        .parseInt(values[1]), Integer.parseInt(values[2]));
-            } catch (NumberFormatException e) {
-                return null;
-            }
-        }
-
-    }
-
     @Override
     public int getDialogMetricsCategory(int dialogId) {
         return MetricsProto.MetricsEvent.BLKI_SETTINGS;
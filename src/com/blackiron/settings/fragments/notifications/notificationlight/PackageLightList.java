@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2016-2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackiron.settings.fragments.notifications.notificationlight;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+
+/**
+ * Per app light values as stored in NOTIFICATION_LIGHT_PULSE_CUSTOM_VALUES,
+ * {@code name=color;on;off|name=color;on;off|...}. The framework reads the
+ * same string, so the format stays as it is; what this saves is the work
+ * around it. Parsing is a single scan without regex or split arrays, the
+ * last parsed value is kept so parsing it again costs nothing, and every
+ * entry keeps its encoded form so an edit only re-encodes that entry.
+ *
+ * Segments that don't parse, e.g. ones written by a newer version with more
+ * fields, are kept and written back unchanged. Not thread safe.
+ */
+final class PackageLightList {
+    private static final char ENTRY_SEPARATOR = '|';
+    private static final char NAME_SEPARATOR = '=';
+    private static final char VALUE_SEPARATOR = ';';
+
+    private static final long INVALID = Long.MIN_VALUE;
+
+    // Last value parsed or encoded, and its entries
+    private static String sCachedValue;
+    private static Entry[] sCachedEntries;
+    private static String[] sCachedUnknown;
+
+    private final LinkedHashMap<String, Entry> mEntries;
+    private final ArrayList<String> mUnknown;
+    // Encoded form of the current entries, null once they changed
+    private String mValue;
+
+    static final class Entry {
+        final String name;
+        final int color;
+        final int timeOn;
+        final int timeOff;
+        final String mEncoded;
+
+        private Entry(String name, int color, int timeOn, int timeOff, String encoded) {
+            this.name = name;
+            this.color = color;
+            this.timeOn = timeOn;
+            this.timeOff = timeOff;
+            mEncoded = encoded;
+        }
+
+        Entry(String name, int color, int timeOn, int timeOff) {
+            this(name, color, timeOn, timeOff, name + NAME_SEPARATOR + color
+                    + VALUE_SEPARATOR + timeOn + VALUE_SEPARATOR + timeOff);
+        }
+    }
+
+    private PackageLightList(String value, Entry[] entries, String[] unknown) {
+        mEntries = new LinkedHashMap<>(Math.max(16, entries.length * 2));
+        for (Entry entry : entries) {
+            mEntries.put(entry.name, entry);
+        }
+        mUnknown = new ArrayList<>(unknown.length);
+        for (String segment : unknown) {
+            mUnknown.add(segment);
+        }
+        mValue = value;
+    }
+
+    static PackageLightList parse(String value) {
+        if (value == null) {
+            value = "";
+        }
+        synchronized (PackageLightList.class) {
+            if (value.equals(sCachedValue)) {
+                return new PackageLightList(value, sCachedEntries, sCachedUnknown);
+            }
+        }
+        final ArrayList<Entry> entries = new ArrayList<>();
+        final ArrayList<String> unknown = new ArrayList<>();
+        final int length = value.length();
+        int start = 0;
+        while (start < length) {
+            int end = value.indexOf(ENTRY_SEPARATOR, start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                Entry entry = parseEntry(value, start, end);
+                if (entry != null) {
+                    entries.add(entry);
+                } else {
+                    unknown.add(value.substring(start, end));
+                }
+            }
+            start = end + 1;
+        }
+        final PackageLightList list = new PackageLightList(value,
+                entries.toArray(new Entry[entries.size()]),
+                unknown.toArray(new String[unknown.size()]));
+        list.remember(value);
+        return list;
+    }
+
+    private static Entry parseEntry(String value, int start, int end) {
+        final int nameEnd = value.indexOf(NAME_SEPARATOR, start);
+        if (nameEnd <= start || nameEnd >= end) {
+            return null;
+        }
+        final int colorEnd = indexOf(value, VALUE_SEPARATOR, nameEnd + 1, end);
+        final int onEnd = indexOf(value, VALUE_SEPARATOR, colorEnd + 1, end);
+        if (colorEnd < 0 || onEnd < 0 || indexOf(value, VALUE_SEPARATOR, onEnd + 1, end) >= 0) {
+            return null;
+        }
+        final long color = parseInt(value, nameEnd + 1, colorEnd);
+        final long timeOn = parseInt(value, colorEnd + 1, onEnd);
+        final long timeOff = parseInt(value, onEnd + 1, end);
+        if (color == INVALID || timeOn == INVALID || timeOff == INVALID) {
+            return null;
+        }
+        return new Entry(value.substring(start, nameEnd), (int) color, (int) timeOn,
+                (int) timeOff, value.substring(start, end));
+    }
+
+    private static int indexOf(String value, char c, int start, int end) {
+        if (start >= end) {
+            return -1;
+        }
+        final int index = value.indexOf(c, start);
+        return index < end ? index : -1;
+    }
+
+    /**
+     * Parses a decimal int in {@code [start, end)}, or returns INVALID. Accepts
+     * the same ASCII input as Integer.parseInt, sign included.
+     */
+    private static long parseInt(String value, int start, int end) {
+        boolean negative = false;
+        if (start < end && (value.charAt(start) == '-' || value.charAt(start) == '+')) {
+            negative = value.charAt(start) == '-';
+            start++;
+        }
+        if (start >= end) {
+            return INVALID;
+        }
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            result = result * 10 + digit;
+            if (result > (long) Integer.MAX_VALUE + 1) {
+                return INVALID;
+            }
+        }
+        result = negative ? -result : result;
+        return result > Integer.MAX_VALUE ? INVALID : result;
+    }
+
+    Collection<Entry> getEntries() {
+        return mEntries.values();
+    }
+
+    Entry get(String name) {
+        return mEntries.get(name);
+    }
+
+    boolean contains(String name) {
+        return mEntries.containsKey(name);
+    }
+
+    int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Sets the values of one app, keeping its position if it is already in
+     * the list.
+     *
+     * @return whether anything changed
+     */
+    boolean put(String name, int color, int timeOn, int timeOff) {
+        final Entry old = mEntries.get(name);
+        if (old != null && old.color == color && old.timeOn == timeOn
+                && old.timeOff == timeOff) {
+            return false;
+        }
+        mEntries.put(name, new Entry(name, color, timeOn, timeOff));
+        mValue = null;
+        return true;
+    }
+
+    boolean remove(String name) {
+        if (mEntries.remove(name) == null) {
+            return false;
+        }
+        mValue = null;
+        return true;
+    }
+
+    /**
+     * Returns the list in the stored format. Unchanged entries are copied from
+     * their cached encoding.
+     */
+    String encode() {
+        if (mValue != null) {
+            return mValue;
+        }
+        int capacity = 0;
+        for (Entry entry : mEntries.values()) {
+            capacity += entry.mEncoded.length() + 1;
+        }
+        for (String segment : mUnknown) {
+            capacity += segment.length() + 1;
+        }
+        final StringBuilder builder = new StringBuilder(capacity);
+        for (Entry entry : mEntries.values()) {
+            if (builder.length() > 0) {
+                builder.append(ENTRY_SEPARATOR);
+            }
+            builder.append(entry.mEncoded);
+        }
+        for (String segment : mUnknown) {
+            if (builder.length() > 0) {
+                builder.append(ENTRY_SEPARATOR);
+            }
+            builder.append(segment);
+        }
+        mValue = builder.toString();
+        remember(mValue);
+        return mValue;
+    }
+
+    private void remember(String value) {
+        final Entry[] entries = mEntries.values().toArray(new Entry[mEntries.size()]);
+        final String[] unknown = mUnknown.toArray(new String[mUnknown.size()]);
+        synchronized (PackageLightList.class) {
+            sCachedValue = value;
+            sCachedEntries = entries;
+            sCachedUnknown = unknown;
+        }
+    }
+}
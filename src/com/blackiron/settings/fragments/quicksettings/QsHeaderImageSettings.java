@@ -37,10 +37,15 @@ import com.android.settings.R;
 import com.android.settings.search.BaseSearchIndexProvider;
 import com.android.settings.SettingsPreferenceFragment;
 import com.android.settingslib.search.SearchIndexable;
+import com.blackiron.settings.preferences.InstrumentedSettings;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
+import com.blackiron.settings.utils.SortKeys;
 
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -66,6 +71,7 @@ public class QsHeaderImageSettings extends SettingsPreferenceFragment implements
     public void onCreate(Bundle icicle) {
         super.onCreate(icicle);
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.qs_header_image_settings);
         addPreferencesFromResource(R.xml.qs_header_image_settings);
 
         ContentResolver resolver = getActivity().getContentResolver();
@@ -85,7 +91,7 @@ public class QsHeaderImageSettings extends SettingsPreferenceFragment implements
 
         mDaylightHeaderProvider = "daylight";
         mFileHeaderProvider = "file";
-        String providerName = Settings.System.getString(resolver,
+        String providerName = InstrumentedSettings.getString(resolver, SettingsNamespace.SYSTEM,
                 Settings.System.STATUS_BAR_CUSTOM_HEADER_PROVIDER);
         if (providerName == null) {
             providerName = mDaylightHeaderProvider;
@@ -104,7 +110,8 @@ public class QsHeaderImageSettings extends SettingsPreferenceFragment implements
     }
 
     private void updateHeaderProviderSummary() {
-        String settingHeaderPackage = Settings.System.getString(getActivity().getContentResolver(),
+        String settingHeaderPackage = InstrumentedSettings.getString(
+                getActivity().getContentResolver(), SettingsNamespace.SYSTEM,
                 Settings.System.STATUS_BAR_DAYLIGHT_HEADER_PACK);
         int valueIndex = mDaylightHeaderPack.findIndexOfValue(settingHeaderPackage);
         if (valueIndex >= 0) {
@@ -119,7 +126,7 @@ public class QsHeaderImageSettings extends SettingsPreferenceFragment implements
         switch (preference.getKey()) {
             case DAYLIGHT_HEADER_PACK:
                 String dhvalue = (String) newValue;
-                Settings.System.putString(resolver,
+                InstrumentedSettings.putString(resolver, SettingsNamespace.SYSTEM,
                         Settings.System.STATUS_BAR_DAYLIGHT_HEADER_PACK, dhvalue);
                 int dhvalueIndex = mDaylightHeaderPack.findIndexOfValue(dhvalue);
                 mDaylightHeaderPack.setSummary(mDaylightHeaderPack.getEntries()[dhvalueIndex]);
@@ -127,7 +134,7 @@ public class QsHeaderImageSettings extends SettingsPreferenceFragment implements
 
             case CUSTOM_HEADER_PROVIDER:
                 String value = (String) newValue;
-                Settings.System.putString(resolver,
+                InstrumentedSettings.putString(resolver, SettingsNamespace.SYSTEM,
                         Settings.System.STATUS_BAR_CUSTOM_HEADER_PROVIDER, value);
                 int valueIndex = mHeaderProvider.findIndexOfValue(value);
                 mHeaderProvider.setSummary(mHeaderProvider.getEntries()[valueIndex]);
@@ -191,7 +198,7 @@ public class QsHeaderImageSettings extends SettingsPreferenceFragment implements
         }
         List<String> labelList = new ArrayList<String>();
         labelList.addAll(headerMap.keySet());
-        Collections.sort(labelList);
+        SortKeys.sort(labelList);
         for (String label : labelList) {
             entries.add(label);
             values.add(headerMap.get(label));
@@ -199,13 +206,14 @@ public class QsHeaderImageSettings extends SettingsPreferenceFragment implements
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUS_BAR_CUSTOM_HEADER, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUS_BAR_CUSTOM_HEADER_SHADOW, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUS_BAR_CUSTOM_HEADER_HEIGHT, 142, UserHandle.USER_CURRENT);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUS_BAR_CUSTOM_HEADER, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUS_BAR_CUSTOM_HEADER_SHADOW, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUS_BAR_CUSTOM_HEADER_HEIGHT, 142);
+        return spec;
     }
 
     @Override
@@ -220,7 +228,9 @@ public class QsHeaderImageSettings extends SettingsPreferenceFragment implements
                 return;
             }
             final Uri imageUri = result.getData();
-            Settings.System.putString(getContentResolver(), Settings.System.STATUS_BAR_FILE_HEADER_IMAGE, imageUri.toString());
+            InstrumentedSettings.putString(getContentResolver(),
+                    SettingsNamespace.SYSTEM, Settings.System.STATUS_BAR_FILE_HEADER_IMAGE,
+                    imageUri.toString());
         }
     }
 
@@ -32,6 +32,11 @@ import com.android.settings.SettingsPreferenceFragment;
 import com.android.settingslib.widget.MainSwitchPreference;
 
 import com.blackiron.settings.preferences.colorpicker.ColorPickerPreference;
+import com.blackiron.settings.preferences.InstrumentedSettings;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 public class AdaptivePlayback extends SettingsPreferenceFragment implements
         Preference.OnPreferenceChangeListener, OnCheckedChangeListener {
@@ -46,6 +51,7 @@ public class AdaptivePlayback extends SettingsPreferenceFragment implements
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.adaptive_playback_settings);
         addPreferencesFromResource(R.xml.adaptive_playback_settings);
 
         mEnable = (MainSwitchPreference) findPreference(PREF_KEY_ENABLE);
@@ -64,20 +70,24 @@ public class AdaptivePlayback extends SettingsPreferenceFragment implements
     public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
         mEnable.setChecked(isChecked);
         if (isChecked) {
-            Settings.System.putIntForUser(getContext().getContentResolver(),
-                Settings.System.ADAPTIVE_PLAYBACK_ENABLED, 1, UserHandle.USER_CURRENT);
+            InstrumentedSettings.putIntForUser(getContext().getContentResolver(),
+                SettingsNamespace.SYSTEM, Settings.System.ADAPTIVE_PLAYBACK_ENABLED, 1,
+                UserHandle.USER_CURRENT);
         } else {
-            Settings.System.putIntForUser(getContext().getContentResolver(),
-                Settings.System.ADAPTIVE_PLAYBACK_ENABLED, 0, UserHandle.USER_CURRENT);
+            InstrumentedSettings.putIntForUser(getContext().getContentResolver(),
+                SettingsNamespace.SYSTEM, Settings.System.ADAPTIVE_PLAYBACK_ENABLED, 0,
+                UserHandle.USER_CURRENT);
         }
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        Settings.System.putIntForUser(resolver,
-                Settings.System.ADAPTIVE_PLAYBACK_ENABLED, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.ADAPTIVE_PLAYBACK_TIMEOUT, 30, UserHandle.USER_CURRENT);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.ADAPTIVE_PLAYBACK_ENABLED, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.ADAPTIVE_PLAYBACK_TIMEOUT, 30);
+        return spec;
     }
 
     @Override
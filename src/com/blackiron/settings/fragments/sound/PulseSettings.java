@@ -32,6 +32,11 @@ import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
 
 import com.blackiron.settings.preferences.colorpicker.ColorPickerPreference;
+import com.blackiron.settings.preferences.InstrumentedSettings;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 public class PulseSettings extends SettingsPreferenceFragment implements
         Preference.OnPreferenceChangeListener {
@@ -74,24 +79,27 @@ public class PulseSettings extends SettingsPreferenceFragment implements
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.pulse_settings);
         addPreferencesFromResource(R.xml.pulse_settings);
 
         ContentResolver resolver = getContext().getContentResolver();
 
         mNavbarPulse = (SwitchPreferenceCompat) findPreference(NAVBAR_PULSE_ENABLED_KEY);
-        boolean navbarPulse = Settings.Secure.getIntForUser(resolver,
+        boolean navbarPulse = InstrumentedSettings.getIntForUser(resolver, SettingsNamespace.SECURE,
                 Settings.Secure.NAVBAR_PULSE_ENABLED, 0, UserHandle.USER_CURRENT) != 0;
         mNavbarPulse.setChecked(navbarPulse);
         mNavbarPulse.setOnPreferenceChangeListener(this);
 
         mLockscreenPulse = (SwitchPreferenceCompat) findPreference(LOCKSCREEN_PULSE_ENABLED_KEY);
-        boolean lockscreenPulse = Settings.Secure.getIntForUser(resolver,
+        boolean lockscreenPulse = InstrumentedSettings.getIntForUser(resolver,
+                SettingsNamespace.SECURE,
                 Settings.Secure.LOCKSCREEN_PULSE_ENABLED, 0, UserHandle.USER_CURRENT) != 0;
         mLockscreenPulse.setChecked(lockscreenPulse);
         mLockscreenPulse.setOnPreferenceChangeListener(this);
 
         mAmbientPulse = (SwitchPreferenceCompat) findPreference(AMBIENT_PULSE_ENABLED_KEY);
-        boolean ambientPulse = Settings.Secure.getIntForUser(resolver,
+        boolean ambientPulse = InstrumentedSettings.getIntForUser(resolver,
+                SettingsNamespace.SECURE,
                 Settings.Secure.AMBIENT_PULSE_ENABLED, 0, UserHandle.USER_CURRENT) != 0;
         mAmbientPulse.setChecked(ambientPulse);
         mAmbientPulse.setOnPreferenceChangeListener(this); 
@@ -122,19 +130,19 @@ public class PulseSettings extends SettingsPreferenceFragment implements
         ContentResolver resolver = getContext().getContentResolver();
         if (preference == mNavbarPulse) {
             boolean val = (Boolean) newValue;
-            Settings.Secure.putIntForUser(resolver,
+            InstrumentedSettings.putIntForUser(resolver, SettingsNamespace.SECURE,
                 Settings.Secure.NAVBAR_PULSE_ENABLED, val ? 1 : 0, UserHandle.USER_CURRENT);
             updateAllPrefs();
             return true;
         } else if (preference == mLockscreenPulse) {
             boolean val = (Boolean) newValue;
-            Settings.Secure.putIntForUser(resolver,
+            InstrumentedSettings.putIntForUser(resolver, SettingsNamespace.SECURE,
                 Settings.Secure.LOCKSCREEN_PULSE_ENABLED, val ? 1 : 0, UserHandle.USER_CURRENT);
             updateAllPrefs();
             return true;
         } else if (preference == mAmbientPulse) {
             boolean val = (Boolean) newValue;
-            Settings.Secure.putIntForUser(resolver,
+            InstrumentedSettings.putIntForUser(resolver, SettingsNamespace.SECURE,
                 Settings.Secure.AMBIENT_PULSE_ENABLED, val ? 1 : 0, UserHandle.USER_CURRENT);
             updateAllPrefs();
             return true;
@@ -151,18 +159,20 @@ public class PulseSettings extends SettingsPreferenceFragment implements
     private void updateAllPrefs() {
         ContentResolver resolver = getContext().getContentResolver();
 
-        boolean navbarPulse = Settings.Secure.getIntForUser(resolver,
+        boolean navbarPulse = InstrumentedSettings.getIntForUser(resolver, SettingsNamespace.SECURE,
                 Settings.Secure.NAVBAR_PULSE_ENABLED, 0, UserHandle.USER_CURRENT) != 0;
-        boolean lockscreenPulse = Settings.Secure.getIntForUser(resolver,
+        boolean lockscreenPulse = InstrumentedSettings.getIntForUser(resolver,
+                SettingsNamespace.SECURE,
                 Settings.Secure.LOCKSCREEN_PULSE_ENABLED, 0, UserHandle.USER_CURRENT) != 0;
-        boolean ambientPulse = Settings.Secure.getIntForUser(resolver,
+        boolean ambientPulse = InstrumentedSettings.getIntForUser(resolver,
+                SettingsNamespace.SECURE,
                 Settings.Secure.AMBIENT_PULSE_ENABLED, 0, UserHandle.USER_CURRENT) != 0;
 
         mPulseSmoothing.setEnabled(navbarPulse || lockscreenPulse || ambientPulse);
 
         mColorModePref.setEnabled(navbarPulse || lockscreenPulse || ambientPulse);
         if (navbarPulse || lockscreenPulse || ambientPulse) {
-            int colorMode = Settings.Secure.getIntForUser(resolver,
+            int colorMode = InstrumentedSettings.getIntForUser(resolver, SettingsNamespace.SECURE,
                 Settings.Secure.PULSE_COLOR_MODE, COLOR_TYPE_LAVALAMP, UserHandle.USER_CURRENT);
             updateColorPrefs(colorMode);
         } else {
@@ -172,7 +182,7 @@ public class PulseSettings extends SettingsPreferenceFragment implements
 
         mRenderMode.setEnabled(navbarPulse || lockscreenPulse || ambientPulse);
         if (navbarPulse || lockscreenPulse || ambientPulse) {
-            int renderMode = Settings.Secure.getIntForUser(resolver,
+            int renderMode = InstrumentedSettings.getIntForUser(resolver, SettingsNamespace.SECURE,
                 Settings.Secure.PULSE_RENDER_STYLE, RENDER_STYLE_SOLID_LINES, UserHandle.USER_CURRENT);
             updateRenderCategories(renderMode);
         } else {
@@ -210,41 +220,30 @@ public class PulseSettings extends SettingsPreferenceFragment implements
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.AMBIENT_PULSE_ENABLED, 0, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.NAVBAR_PULSE_ENABLED, 0, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.LOCKSCREEN_PULSE_ENABLED, 0, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.PULSE_RENDER_STYLE, RENDER_STYLE_SOLID_LINES, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.PULSE_SMOOTHING_ENABLED, 0, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.PULSE_COLOR_MODE, COLOR_TYPE_LAVALAMP, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.PULSE_COLOR_USER, 0x92FFFFFF, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.PULSE_LAVALAMP_SPEED, 10000, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.PULSE_CUSTOM_DIMEN, 14, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.PULSE_CUSTOM_DIV, 16, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.PULSE_FILLED_BLOCK_SIZE, 4, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.PULSE_EMPTY_BLOCK_SIZE, 1, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.PULSE_CUSTOM_FUDGE_FACTOR, 4, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.PULSE_SOLID_UNITS_OPACITY, 200, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.PULSE_SOLID_UNITS_COUNT, 32, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.PULSE_SOLID_FUDGE_FACTOR, 4, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.PULSE_SOLID_UNITS_ROUNDED, 0, UserHandle.USER_CURRENT);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.AMBIENT_PULSE_ENABLED, 0);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.NAVBAR_PULSE_ENABLED, 0);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.LOCKSCREEN_PULSE_ENABLED, 0);
+        spec.putInt(SettingsNamespace.SECURE,
+                Settings.Secure.PULSE_RENDER_STYLE, RENDER_STYLE_SOLID_LINES);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.PULSE_SMOOTHING_ENABLED, 0);
+        spec.putInt(SettingsNamespace.SECURE,
+                Settings.Secure.PULSE_COLOR_MODE, COLOR_TYPE_LAVALAMP);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.PULSE_COLOR_USER, 0x92FFFFFF);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.PULSE_LAVALAMP_SPEED, 10000);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.PULSE_CUSTOM_DIMEN, 14);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.PULSE_CUSTOM_DIV, 16);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.PULSE_FILLED_BLOCK_SIZE, 4);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.PULSE_EMPTY_BLOCK_SIZE, 1);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.PULSE_CUSTOM_FUDGE_FACTOR, 4);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.PULSE_SOLID_UNITS_OPACITY, 200);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.PULSE_SOLID_UNITS_COUNT, 32);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.PULSE_SOLID_FUDGE_FACTOR, 4);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.PULSE_SOLID_UNITS_ROUNDED, 0);
+        return spec;
     }
 
     @Override
@@ -30,6 +30,9 @@ import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
 
 import com.blackiron.settings.preferences.CustomSeekBarPreference;
+import com.blackiron.settings.preferences.InstrumentedSettings;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 public class VolumeSteps extends SettingsPreferenceFragment implements
         OnPreferenceChangeListener {
@@ -40,6 +43,7 @@ public class VolumeSteps extends SettingsPreferenceFragment implements
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.volume_steps_settings);
         addPreferencesFromResource(R.xml.volume_steps_settings);
 
         ContentResolver resolver = getActivity().getContentResolver();
@@ -63,8 +67,9 @@ public class VolumeSteps extends SettingsPreferenceFragment implements
     public boolean onPreferenceChange(Preference preference, Object newValue) {
         if (!(preference instanceof CustomSeekBarPreference))
             return false;
-        Settings.System.putIntForUser(getActivity().getContentResolver(),
-                preference.getKey(), (Integer) newValue, UserHandle.USER_CURRENT);
+        InstrumentedSettings.putIntForUser(getActivity().getContentResolver(),
+                SettingsNamespace.SYSTEM, preference.getKey(), (Integer) newValue,
+                UserHandle.USER_CURRENT);
         return true;
     }
 
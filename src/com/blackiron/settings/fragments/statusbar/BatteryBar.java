@@ -35,6 +35,11 @@ import com.android.settings.SettingsPreferenceFragment;
 
 import com.blackiron.settings.preferences.colorpicker.ColorPickerPreference;
 import com.blackiron.settings.preferences.CustomSeekBarPreference;
+import com.blackiron.settings.preferences.InstrumentedSettings;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 public class BatteryBar extends SettingsPreferenceFragment
             implements Preference.OnPreferenceChangeListener  {
@@ -50,6 +55,7 @@ public class BatteryBar extends SettingsPreferenceFragment
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.battery_bar);
         addPreferencesFromResource(R.xml.battery_bar);
 
         PreferenceScreen prefSet = getPreferenceScreen();
@@ -76,8 +82,9 @@ public class BatteryBar extends SettingsPreferenceFragment
             }
             mIsBarSwitchingMode = true;
             boolean value = ((Boolean)newValue);
-            Settings.System.putIntForUser(resolver, Settings.System.STATUSBAR_BATTERY_BAR,
-                    value ? 1 : 0, UserHandle.USER_CURRENT);
+            InstrumentedSettings.putIntForUser(resolver, SettingsNamespace.SYSTEM,
+                    Settings.System.STATUSBAR_BATTERY_BAR, value ? 1 : 0,
+                    UserHandle.USER_CURRENT);
             mHandler.postDelayed(new Runnable() {
                 @Override
                 public void run() {
@@ -93,28 +100,26 @@ public class BatteryBar extends SettingsPreferenceFragment
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUSBAR_BATTERY_BAR, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUSBAR_BATTERY_BAR_COLOR, 0xff76c124, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUSBAR_BATTERY_BAR_THICKNESS, 2, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUSBAR_BATTERY_BAR_STYLE, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUSBAR_BATTERY_BAR_ANIMATE, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUSBAR_BATTERY_BAR_CHARGING_COLOR, 0xffffc90f, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUSBAR_BATTERY_BAR_BATTERY_LOW_COLOR, 0xfff90028, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUSBAR_BATTERY_BAR_ENABLE_CHARGING_COLOR, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUSBAR_BATTERY_BAR_BLEND_COLOR, 1, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUSBAR_BATTERY_BAR_BLEND_COLOR_REVERSE, 0, UserHandle.USER_CURRENT);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUSBAR_BATTERY_BAR, 0);
+        spec.putInt(SettingsNamespace.SYSTEM,
+                Settings.System.STATUSBAR_BATTERY_BAR_COLOR, 0xff76c124);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUSBAR_BATTERY_BAR_THICKNESS, 2);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUSBAR_BATTERY_BAR_STYLE, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUSBAR_BATTERY_BAR_ANIMATE, 1);
+        spec.putInt(SettingsNamespace.SYSTEM,
+                Settings.System.STATUSBAR_BATTERY_BAR_CHARGING_COLOR, 0xffffc90f);
+        spec.putInt(SettingsNamespace.SYSTEM,
+                Settings.System.STATUSBAR_BATTERY_BAR_BATTERY_LOW_COLOR, 0xfff90028);
+        spec.putInt(SettingsNamespace.SYSTEM,
+                Settings.System.STATUSBAR_BATTERY_BAR_ENABLE_CHARGING_COLOR, 1);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUSBAR_BATTERY_BAR_BLEND_COLOR, 1);
+        spec.putInt(SettingsNamespace.SYSTEM,
+                Settings.System.STATUSBAR_BATTERY_BAR_BLEND_COLOR_REVERSE, 0);
+        return spec;
     }
 
     @Override
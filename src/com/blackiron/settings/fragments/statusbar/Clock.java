@@ -37,7 +37,12 @@ import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
 
 import com.blackiron.settings.preferences.CustomSeekBarPreference;
+import com.blackiron.settings.preferences.InstrumentedSettings;
 import com.blackiron.settings.preferences.SystemSettingListPreference;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import java.util.Date;
 
@@ -69,6 +74,7 @@ public class Clock extends SettingsPreferenceFragment
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.status_bar_clock);
         addPreferencesFromResource(R.xml.status_bar_clock);
 
         ContentResolver resolver = getActivity().getContentResolver();
@@ -81,7 +87,7 @@ public class Clock extends SettingsPreferenceFragment
             mStatusBarAmPm.setSummary(R.string.status_bar_am_pm_info);
         }
 
-        int dateDisplay = Settings.System.getIntForUser(resolver,
+        int dateDisplay = InstrumentedSettings.getIntForUser(resolver, SettingsNamespace.SYSTEM,
                 Settings.System.STATUS_BAR_CLOCK_DATE_DISPLAY, 0, UserHandle.USER_CURRENT);
 
         mClockDateDisplay = (SystemSettingListPreference) findPreference(CLOCK_DATE_DISPLAY);
@@ -135,8 +141,8 @@ public class Clock extends SettingsPreferenceFragment
               alert.setMessage(R.string.status_bar_date_string_edittext_summary);
 
               final EditText input = new EditText(getActivity());
-              String oldText = Settings.System.getString(
-                  resolver,
+              String oldText = InstrumentedSettings.getString(
+                  resolver, SettingsNamespace.SYSTEM,
                   Settings.System.STATUS_BAR_CLOCK_DATE_FORMAT);
               if (oldText != null) {
                   input.setText(oldText);
@@ -149,7 +155,7 @@ public class Clock extends SettingsPreferenceFragment
                       if (value.equals("")) {
                           return;
                       }
-                      Settings.System.putString(resolver,
+                      InstrumentedSettings.putString(resolver, SettingsNamespace.SYSTEM,
                           Settings.System.STATUS_BAR_CLOCK_DATE_FORMAT, value);
 
                       return;
@@ -166,7 +172,7 @@ public class Clock extends SettingsPreferenceFragment
               dialog.show();
           } else {
               if ((String) newValue != null) {
-                  Settings.System.putString(resolver,
+                  InstrumentedSettings.putString(resolver, SettingsNamespace.SYSTEM,
                       Settings.System.STATUS_BAR_CLOCK_DATE_FORMAT, (String) newValue);
               }
           }
@@ -183,8 +189,9 @@ public class Clock extends SettingsPreferenceFragment
         Date now = new Date();
 
         int lastEntry = dateEntries.length - 1;
-        int dateFormat = Settings.System.getIntForUser(getActivity()
-                .getContentResolver(), Settings.System.STATUS_BAR_CLOCK_DATE_STYLE, 0, UserHandle.USER_CURRENT);
+        int dateFormat = InstrumentedSettings.getIntForUser(getActivity().getContentResolver(),
+                SettingsNamespace.SYSTEM, Settings.System.STATUS_BAR_CLOCK_DATE_STYLE, 0,
+                UserHandle.USER_CURRENT);
         for (int i = 0; i < dateEntries.length; i++) {
             if (i == lastEntry) {
                 parsedDateEntries[i] = dateEntries[i];
@@ -206,30 +213,25 @@ public class Clock extends SettingsPreferenceFragment
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUS_BAR_CLOCK_AUTO_HIDE, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUS_BAR_CLOCK_AUTO_HIDE_HDURATION, 60, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUS_BAR_CLOCK_AUTO_HIDE_SDURATION, 5, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUS_BAR_CLOCK_DATE_DISPLAY, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUS_BAR_CLOCK_DATE_POSITION, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUS_BAR_CLOCK_DATE_STYLE, 0, UserHandle.USER_CURRENT);
-        Settings.System.putString(resolver,
-                Settings.System.STATUS_BAR_CLOCK_DATE_FORMAT, "");
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUS_BAR_CLOCK_SECONDS, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.STATUSBAR_CLOCK_CHIP, 0, UserHandle.USER_CURRENT);
-        LineageSettings.System.putIntForUser(resolver,
-                LineageSettings.System.STATUS_BAR_AM_PM, 0, UserHandle.USER_CURRENT);
-        LineageSettings.System.putIntForUser(resolver,
-                LineageSettings.System.STATUS_BAR_CLOCK_AUTO_HIDE, 0, UserHandle.USER_CURRENT);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUS_BAR_CLOCK_AUTO_HIDE, 0);
+        spec.putInt(SettingsNamespace.SYSTEM,
+                Settings.System.STATUS_BAR_CLOCK_AUTO_HIDE_HDURATION, 60);
+        spec.putInt(SettingsNamespace.SYSTEM,
+                Settings.System.STATUS_BAR_CLOCK_AUTO_HIDE_SDURATION, 5);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUS_BAR_CLOCK_DATE_DISPLAY, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUS_BAR_CLOCK_DATE_POSITION, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUS_BAR_CLOCK_DATE_STYLE, 0);
+        spec.putString(SettingsNamespace.SYSTEM, Settings.System.STATUS_BAR_CLOCK_DATE_FORMAT, "");
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUS_BAR_CLOCK_SECONDS, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.STATUSBAR_CLOCK_CHIP, 0);
+        spec.putInt(SettingsNamespace.LINEAGE_SYSTEM, LineageSettings.System.STATUS_BAR_AM_PM, 0);
+        spec.putInt(SettingsNamespace.LINEAGE_SYSTEM,
+                LineageSettings.System.STATUS_BAR_CLOCK_AUTO_HIDE, 0);
+        return spec;
     }
 
     @Override
@@ -34,6 +34,10 @@ import com.android.settings.SettingsPreferenceFragment;
 import com.android.internal.logging.nano.MetricsProto;
 
 import com.blackiron.settings.preferences.CustomSeekBarPreference;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 public class NetworkTrafficSettings extends SettingsPreferenceFragment
         implements Preference.OnPreferenceChangeListener  {
@@ -51,6 +55,7 @@ public class NetworkTrafficSettings extends SettingsPreferenceFragment
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        SettingsPrefetcher.prefetch(getContext(), R.xml.network_traffic_settings);
         addPreferencesFromResource(R.xml.network_traffic_settings);
         final ContentResolver resolver = getActivity().getContentResolver();
 
@@ -96,23 +101,27 @@ public class NetworkTrafficSettings extends SettingsPreferenceFragment
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        LineageSettings.Secure.putIntForUser(resolver,
-                LineageSettings.Secure.NETWORK_TRAFFIC_LOCATION, 0, UserHandle.USER_CURRENT);
-        LineageSettings.Secure.putIntForUser(resolver,
-                LineageSettings.Secure.NETWORK_TRAFFIC_MODE, 0, UserHandle.USER_CURRENT);
-        LineageSettings.Secure.putIntForUser(resolver,
-                LineageSettings.Secure.NETWORK_TRAFFIC_AUTOHIDE, 1, UserHandle.USER_CURRENT);
-        LineageSettings.Secure.putIntForUser(resolver,
-                LineageSettings.Secure.NETWORK_TRAFFIC_AUTOHIDE_THRESHOLD, 0, UserHandle.USER_CURRENT);
-        LineageSettings.Secure.putIntForUser(resolver,
-                LineageSettings.Secure.NETWORK_TRAFFIC_UNITS, 1, UserHandle.USER_CURRENT);
-        LineageSettings.Secure.putIntForUser(resolver,
-                LineageSettings.Secure.NETWORK_TRAFFIC_SHOW_UNITS, 1, UserHandle.USER_CURRENT);
-        LineageSettings.Secure.putIntForUser(resolver,
-                LineageSettings.Secure.NETWORK_TRAFFIC_REFRESH_INTERVAL, 2, UserHandle.USER_CURRENT);
-        LineageSettings.Secure.putIntForUser(resolver,
-                LineageSettings.Secure.NETWORK_TRAFFIC_HIDEARROW, 0, UserHandle.USER_CURRENT);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.LINEAGE_SECURE,
+                LineageSettings.Secure.NETWORK_TRAFFIC_LOCATION, 0);
+        spec.putInt(SettingsNamespace.LINEAGE_SECURE,
+                LineageSettings.Secure.NETWORK_TRAFFIC_MODE, 0);
+        spec.putInt(SettingsNamespace.LINEAGE_SECURE,
+                LineageSettings.Secure.NETWORK_TRAFFIC_AUTOHIDE, 1);
+        spec.putInt(SettingsNamespace.LINEAGE_SECURE,
+                LineageSettings.Secure.NETWORK_TRAFFIC_AUTOHIDE_THRESHOLD, 0);
+        spec.putInt(SettingsNamespace.LINEAGE_SECURE,
+                LineageSettings.Secure.NETWORK_TRAFFIC_UNITS, 1);
+        spec.putInt(SettingsNamespace.LINEAGE_SECURE,
+                LineageSettings.Secure.NETWORK_TRAFFIC_SHOW_UNITS, 1);
+        spec.putInt(SettingsNamespace.LINEAGE_SECURE,
+                LineageSettings.Secure.NETWORK_TRAFFIC_REFRESH_INTERVAL, 2);
+        spec.putInt(SettingsNamespace.LINEAGE_SECURE,
+                LineageSettings.Secure.NETWORK_TRAFFIC_HIDEARROW, 0);
+        return spec;
     }
 
     @Override
@@ -47,6 +47,10 @@ import com.android.internal.logging.nano.MetricsProto.MetricsEvent;
 import com.android.settings.R;
 import com.android.settings.SettingsActivity;
 import com.android.settings.SettingsPreferenceFragment;
+import com.blackiron.settings.preferences.InstrumentedSettings;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
 
 import java.util.Arrays;
 
@@ -104,9 +108,12 @@ public class UdfpsAnimation extends SettingsPreferenceFragment {
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        Settings.System.putIntForUser(resolver,
-                Settings.System.UDFPS_ANIM_STYLE, 0, UserHandle.USER_CURRENT);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.UDFPS_ANIM_STYLE, 0);
+        return spec;
     }
 
     @Override
@@ -160,8 +167,9 @@ public class UdfpsAnimation extends SettingsPreferenceFragment {
                     animation = (AnimationDrawable) holder.image.getBackground();
                     animation.setOneShot(true);
                     animation.start();
-                    Settings.System.putInt(getActivity().getContentResolver(),
-                            Settings.System.UDFPS_ANIM_STYLE, position);
+                    InstrumentedSettings.putInt(getActivity().getContentResolver(),
+                            SettingsNamespace.SYSTEM, Settings.System.UDFPS_ANIM_STYLE,
+                            position);
                 }
             });
         }
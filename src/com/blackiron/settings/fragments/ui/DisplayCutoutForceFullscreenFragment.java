@@ -19,48 +19,95 @@ package com.blackiron.settings.fragments.ui;
 import android.app.ActivityManager;
 import android.annotation.Nullable;
 import android.content.Context;
-import android.content.Intent;
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
-import android.content.pm.ResolveInfo;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.Settings;
+import android.util.Log;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
 import android.widget.CompoundButton;
 import android.widget.ImageView;
 import android.widget.ListView;
+import android.widget.SearchView;
 import android.widget.SectionIndexer;
 import android.widget.Switch;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.preference.PreferenceFragment;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.recyclerview.widget.LinearLayoutManager;
 
-import com.android.settingslib.applications.ApplicationsState;
-
 import com.android.settings.R;
 
+import com.blackiron.settings.preferences.AppIconLoader;
+import com.blackiron.settings.preferences.PackageCatalog;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsStores;
+import com.blackiron.settings.preferences.SettingsTransaction;
+
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.android.internal.util.blackiron.cutout.CutoutFullscreenController;
 
 public class DisplayCutoutForceFullscreenFragment extends PreferenceFragment
-        implements ApplicationsState.Callbacks {
+        implements PackageCatalog.Listener {
+
+    private static final String TAG = "DisplayCutoutForceFullscreen";
+    private static final boolean DEBUG = false;
+
+    private static final int MENU_SEARCH = Menu.FIRST;
+    private static final int MENU_SELECT_ALL = Menu.FIRST + 1;
+    private static final int MENU_SELECT_NONE = Menu.FIRST + 2;
+    private static final int MENU_APPLY = Menu.FIRST + 3;
+
+    // Sorting and diffing the list, one rebuild at a time
+    private static final ExecutorService sRebuildExecutor = Executors.newSingleThreadExecutor();
 
     private ActivityManager mActivityManager;
     private AllPackagesAdapter mAllPackagesAdapter;
-    private ApplicationsState mApplicationsState;
-    private ApplicationsState.Session mSession;
-    private ActivityFilter mActivityFilter;
-    private PackageManager mPackageManager;
+    private PackageCatalog mCatalog;
+    // Launchable, non system apps by package name
+    private final HashMap<String, PackageCatalog.App> mApps = new HashMap<>();
+    private AppIconLoader mIconLoader;
     private RecyclerView mAppsRecyclerView;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // Forced fullscreen packages as of the last rebuild, kept in step with
+    // the switches so binding a row is a set lookup
+    private Set<String> mForced = new HashSet<>();
+    // Changes not written yet, by package name. They are applied as one write
+    // on apply or when leaving the screen, instead of one write per switch.
+    private final HashMap<String, Boolean> mStaged = new HashMap<>();
+    // Writes the controller would have done for the staged changes
+    private int mStagedWrites;
+    // Changes handed to the settings writer whose commit hasn't completed yet.
+    // Until then the controller still reports the old list, so rebuilds take
+    // these over it.
+    private final HashMap<String, Boolean> mApplied = new HashMap<>();
+    // Normalized filter query, empty to show every app
+    private String mQuery = "";
+    // Bumped on every rebuild and on stop, results of older rebuilds are dropped
+    private int mRebuildGeneration;
+    private boolean mRebuilding;
 
     private CutoutFullscreenController mCutoutForceFullscreenSettings;
 
@@ -69,15 +116,67 @@ public class DisplayCutoutForceFullscreenFragment extends PreferenceFragment
         super.onCreate(savedInstanceState);
 
         Context context = getContext();
-        mApplicationsState = ApplicationsState.getInstance(getActivity().getApplication());
-        mSession = mApplicationsState.newSession(this);
-        mSession.onResume();
-        mPackageManager = context.getPackageManager();
+        mIconLoader = AppIconLoader.getInstance(context);
         mActivityManager = (ActivityManager) context.getSystemService(
                 Context.ACTIVITY_SERVICE);
-        mActivityFilter = new ActivityFilter(mPackageManager);
-        mAllPackagesAdapter = new AllPackagesAdapter(context);
+        mAllPackagesAdapter = new AllPackagesAdapter();
         mCutoutForceFullscreenSettings = new CutoutFullscreenController(context);
+        setHasOptionsMenu(true);
+    }
+
+    @Override
+    public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
+        final SearchView searchView = new SearchView(getContext());
+        searchView.setQueryHint(getString(R.string.app_chooser_search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                return false;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                final String query = PackageCatalog.normalizeForSearch(newText);
+                if (!query.equals(mQuery)) {
+                    mQuery = query;
+                    rebuild();
+                }
+                return true;
+            }
+        });
+        menu.add(0, MENU_SEARCH, 0, R.string.app_chooser_search_hint)
+                .setIcon(R.drawable.ic_search)
+                .setActionView(searchView)
+                .setShowAsActionFlags(MenuItem.SHOW_AS_ACTION_IF_ROOM
+                        | MenuItem.SHOW_AS_ACTION_COLLAPSE_ACTION_VIEW);
+        menu.add(0, MENU_SELECT_ALL, 0, R.string.display_cutout_force_fullscreen_select_all)
+                .setShowAsActionFlags(MenuItem.SHOW_AS_ACTION_NEVER);
+        menu.add(0, MENU_SELECT_NONE, 0, R.string.display_cutout_force_fullscreen_select_none)
+                .setShowAsActionFlags(MenuItem.SHOW_AS_ACTION_NEVER);
+        menu.add(0, MENU_APPLY, 0, R.string.display_cutout_force_fullscreen_apply)
+                .setShowAsActionFlags(MenuItem.SHOW_AS_ACTION_IF_ROOM
+                        | MenuItem.SHOW_AS_ACTION_WITH_TEXT);
+    }
+
+    @Override
+    public void onPrepareOptionsMenu(Menu menu) {
+        menu.findItem(MENU_APPLY).setEnabled(!mStaged.isEmpty());
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case MENU_SELECT_ALL:
+                stageShown(true);
+                return true;
+            case MENU_SELECT_NONE:
+                stageShown(false);
+                return true;
+            case MENU_APPLY:
+                applyStaged(true);
+                return true;
+        }
+        return false;
     }
 
     @Override
@@ -107,102 +206,249 @@ public class DisplayCutoutForceFullscreenFragment extends PreferenceFragment
     }
 
     @Override
-    public void onResume() {
-        super.onResume();
+    public void onStart() {
+        super.onStart();
 
-        rebuild();
+        mCatalog = PackageCatalog.acquire(getContext());
+        mCatalog.addListener(this);
     }
 
     @Override
-    public void onDestroy() {
-        super.onDestroy();
+    public void onStop() {
+        super.onStop();
 
-        mSession.onPause();
-        mSession.onDestroy();
-    }
+        applyStaged(false);
 
-    @Override
-    public void onPackageListChanged() {
-        mActivityFilter.updateLauncherInfoList();
-        rebuild();
+        mCatalog.removeListener(this);
+        mCatalog.release();
+        mCatalog = null;
+        mRebuildGeneration++;
+        mRebuilding = false;
     }
 
     @Override
-    public void onRebuildComplete(ArrayList<ApplicationsState.AppEntry> entries) {
-        if (entries != null) {
-            handleAppEntries(entries);
-            mAllPackagesAdapter.notifyDataSetChanged();
+    public void onAppsUpdated(List<PackageCatalog.App> apps) {
+        for (PackageCatalog.App app : apps) {
+            if (app.isLauncherApp() && !app.isSystemApp()) {
+                mApps.put(app.packageName, app);
+            } else {
+                mApps.remove(app.packageName);
+            }
         }
+        rebuild();
     }
 
     @Override
-    public void onLoadEntriesCompleted() {
+    public void onAppsRemoved(List<String> packageNames) {
+        for (String packageName : packageNames) {
+            mApps.remove(packageName);
+        }
         rebuild();
     }
 
-    @Override
-    public void onAllSizesComputed() {}
-
-    @Override
-    public void onLauncherInfoChanged() {}
+    private void rebuild() {
+        final int generation = ++mRebuildGeneration;
+        final ArrayList<PackageCatalog.App> entries = new ArrayList<>(mApps.size());
+        for (PackageCatalog.App app : mApps.values()) {
+            if (mQuery.isEmpty() || app.matches(mQuery)) {
+                entries.add(app);
+            }
+        }
+        // The controller is updated by its observer on this thread, so take the
+        // snapshot here rather than reading it from the worker.
+        final HashSet<String> forced = new HashSet<>();
+        for (PackageCatalog.App app : mApps.values()) {
+            Boolean staged = mStaged.get(app.packageName);
+            if (staged == null) {
+                staged = mApplied.get(app.packageName);
+            }
+            if (staged != null ? staged
+                    : mCutoutForceFullscreenSettings.shouldForceCutoutFullscreen(app.packageName)) {
+                forced.add(app.packageName);
+            }
+        }
+        final List<PackageCatalog.App> oldEntries = mAllPackagesAdapter.mEntries;
+        final Set<String> oldForced = new HashSet<>(mForced);
+        mRebuilding = true;
+
+        sRebuildExecutor.execute(() -> {
+            Collections.sort(entries);
+            final ArrayList<String> sections = new ArrayList<String>();
+            final ArrayList<Integer> positions = new ArrayList<Integer>();
+            String lastSectionIndex = null;
+
+            for (int i = 0; i < entries.size(); i++) {
+                final String sectionIndex = entries.get(i).section;
+
+                if (lastSectionIndex == null ||
+                        !TextUtils.equals(sectionIndex, lastSectionIndex)) {
+                    sections.add(sectionIndex);
+                    positions.add(i);
+                    lastSectionIndex = sectionIndex;
+                }
+            }
 
-    @Override
-    public void onPackageIconChanged() {}
+            final DiffUtil.DiffResult diff = DiffUtil.calculateDiff(
+                    new EntriesDiff(oldEntries, oldForced, entries, forced));
 
-    @Override
-    public void onPackageSizeChanged(String packageName) {}
+            mHandler.post(() -> {
+                // A newer rebuild was started meanwhile, its diff is against the
+                // same list we would replace, so this one can just be dropped.
+                if (generation != mRebuildGeneration) {
+                    return;
+                }
+                mRebuilding = false;
+                mForced = forced;
+                mAllPackagesAdapter.setEntries(entries, sections, positions, diff);
+            });
+        });
+    }
 
-    @Override
-    public void onRunningStateChanged(boolean running) {}
+    private boolean stage(String packageName, boolean forced) {
+        if (mForced.contains(packageName) == forced) {
+            return false;
+        }
+        if (forced) {
+            mForced.add(packageName);
+        } else {
+            mForced.remove(packageName);
+        }
+        mStaged.put(packageName, forced);
+        mStagedWrites++;
+        return true;
+    }
 
-    private void handleAppEntries(List<ApplicationsState.AppEntry> entries) {
-        final ArrayList<String> sections = new ArrayList<String>();
-        final ArrayList<Integer> positions = new ArrayList<Integer>();
-        String lastSectionIndex = null;
-        int offset = 0;
+    private void onStagedChanged() {
+        if (mRebuilding) {
+            // The running rebuild took its snapshot before this change
+            rebuild();
+        }
+        getActivity().invalidateOptionsMenu();
+    }
 
+    /**
+     * Stages every app currently shown, i.e. matching the filter.
+     */
+    private void stageShown(boolean forced) {
+        final List<PackageCatalog.App> entries = mAllPackagesAdapter.mEntries;
         for (int i = 0; i < entries.size(); i++) {
-            final ApplicationInfo info = entries.get(i).info;
-            final String label = (String) info.loadLabel(mPackageManager);
-            final String sectionIndex;
-
-            if (!info.enabled) {
-                sectionIndex = "--"; // XXX
-            } else if (TextUtils.isEmpty(label)) {
-                sectionIndex = "";
-            } else {
-                sectionIndex = label.substring(0, 1).toUpperCase();
+            if (stage(entries.get(i).packageName, forced)) {
+                mAllPackagesAdapter.notifyItemChanged(i);
             }
+        }
+        onStagedChanged();
+    }
 
-            if (lastSectionIndex == null ||
-                    !TextUtils.equals(sectionIndex, lastSectionIndex)) {
-                sections.add(sectionIndex);
-                positions.add(offset);
-                lastSectionIndex = sectionIndex;
+    private void applyStaged(boolean report) {
+        if (mStaged.isEmpty()) {
+            return;
+        }
+        final Context context = getContext();
+        final String current = SettingsStores.get(context, SettingsNamespace.SYSTEM)
+                .getString(Settings.System.FORCE_FULLSCREEN_CUTOUT_APPS, null);
+        final LinkedHashSet<String> apps = new LinkedHashSet<>();
+        if (!TextUtils.isEmpty(current)) {
+            for (String packageName : current.split(",")) {
+                if (!packageName.isEmpty()) {
+                    apps.add(packageName);
+                }
+            }
+        }
+        final ArrayList<String> changed = new ArrayList<>(mStaged.size());
+        for (Map.Entry<String, Boolean> entry : mStaged.entrySet()) {
+            if (entry.getValue() ? apps.add(entry.getKey()) : apps.remove(entry.getKey())) {
+                changed.add(entry.getKey());
+            }
+        }
+        // Every staged toggle would have been a write of its own; toggles
+        // that cancelled out need none at all
+        final int avoided = changed.isEmpty() ? mStagedWrites : mStagedWrites - 1;
+        mStaged.clear();
+        mStagedWrites = 0;
+
+        if (!changed.isEmpty()) {
+            final HashMap<String, Boolean> applied = new HashMap<>(changed.size());
+            for (String packageName : changed) {
+                applied.put(packageName, apps.contains(packageName));
             }
+            mApplied.putAll(applied);
+            final ActivityManager activityManager = mActivityManager;
+            SettingsTransaction.begin(context)
+                    .putString(SettingsNamespace.SYSTEM,
+                            Settings.System.FORCE_FULLSCREEN_CUTOUT_APPS, String.join(",", apps))
+                    .commit(() -> {
+                        // Keep entries a later apply has replaced meanwhile
+                        for (Map.Entry<String, Boolean> entry : applied.entrySet()) {
+                            mApplied.remove(entry.getKey(), entry.getValue());
+                        }
+                        // Restart the apps only once the controller can see the new list
+                        for (String packageName : changed) {
+                            try {
+                                activityManager.forceStopPackage(packageName);
+                            } catch (Exception ignored) {
+                            }
+                        }
+                    });
+        }
+        if (DEBUG) {
+            Log.d(TAG, "Applied " + changed.size() + " changes, " + avoided + " writes avoided");
+        }
+        if (report) {
+            Toast.makeText(context, context.getResources().getQuantityString(
+                    R.plurals.display_cutout_force_fullscreen_applied, avoided, avoided),
+                    Toast.LENGTH_SHORT).show();
+            getActivity().invalidateOptionsMenu();
+        }
+    }
 
-            offset++;
+    private static class EntriesDiff extends DiffUtil.Callback {
+        private final List<PackageCatalog.App> mOld;
+        private final Set<String> mOldForced;
+        private final List<PackageCatalog.App> mNew;
+        private final Set<String> mNewForced;
+
+        EntriesDiff(List<PackageCatalog.App> oldEntries, Set<String> oldForced,
+                List<PackageCatalog.App> newEntries, Set<String> newForced) {
+            mOld = oldEntries;
+            mOldForced = oldForced;
+            mNew = newEntries;
+            mNewForced = newForced;
         }
 
-        mAllPackagesAdapter.setEntries(entries, sections, positions);
-    }
+        @Override
+        public int getOldListSize() {
+            return mOld.size();
+        }
 
-    private void rebuild() {
-        mSession.rebuild(mActivityFilter, ApplicationsState.ALPHA_COMPARATOR);
+        @Override
+        public int getNewListSize() {
+            return mNew.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return mOld.get(oldPosition).packageName.equals(mNew.get(newPosition).packageName);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            final PackageCatalog.App oldApp = mOld.get(oldPosition);
+            final PackageCatalog.App newApp = mNew.get(newPosition);
+            if (mOldForced.contains(oldApp.packageName)
+                    != mNewForced.contains(newApp.packageName)) {
+                return false;
+            }
+            return oldApp == newApp || (TextUtils.equals(oldApp.title, newApp.title)
+                    && oldApp.getIconSource() == newApp.getIconSource());
+        }
     }
 
     private class AllPackagesAdapter extends RecyclerView.Adapter<ViewHolder>
             implements SectionIndexer {
 
-        private List<ApplicationsState.AppEntry> mEntries = new ArrayList<>();
-        private String[] mSections;
-        private int[] mPositions;
-
-        public AllPackagesAdapter(Context context) {
-            if (mActivityFilter == null) {
-                mActivityFilter = new ActivityFilter(mPackageManager);
-            }
-        }
+        private List<PackageCatalog.App> mEntries = new ArrayList<>();
+        private String[] mSections = new String[0];
+        private int[] mPositions = new int[0];
 
         @Override
         public int getItemCount() {
@@ -211,7 +457,7 @@ public class DisplayCutoutForceFullscreenFragment extends PreferenceFragment
 
         @Override
         public long getItemId(int position) {
-            return mEntries.get(position).id;
+            return mEntries.get(position).packageName.hashCode();
         }
 
         @NonNull
@@ -223,43 +469,37 @@ public class DisplayCutoutForceFullscreenFragment extends PreferenceFragment
 
         @Override
         public void onBindViewHolder(ViewHolder holder, int position) {
-            ApplicationsState.AppEntry entry = mEntries.get(position);
+            PackageCatalog.App entry = mEntries.get(position);
 
             if (entry == null) {
                 return;
             }
 
-            holder.title.setText(entry.label);
+            holder.title.setText(entry.title);
             holder.title.setOnClickListener(v -> holder.state.performClick());
-            mApplicationsState.ensureIcon(entry);
-            holder.icon.setImageDrawable(entry.info.loadIcon(mPackageManager));
+            mIconLoader.bind(holder.icon, entry.packageName, entry.getIconSource());
             holder.state.setTag(entry);
-            holder.state.setChecked(mCutoutForceFullscreenSettings.shouldForceCutoutFullscreen(entry.info.packageName));
+            // Clear the listener first, setChecked on a recycled row must not toggle the app
+            holder.state.setOnCheckedChangeListener(null);
+            holder.state.setChecked(mForced.contains(entry.packageName));
             holder.state.setOnCheckedChangeListener((buttonView, isChecked) -> {
-                final ApplicationsState.AppEntry appEntry =
-                        (ApplicationsState.AppEntry) buttonView.getTag();
+                final PackageCatalog.App appEntry = (PackageCatalog.App) buttonView.getTag();
 
-                if (isChecked) {
-                    mCutoutForceFullscreenSettings.addApp(appEntry.info.packageName);
-                } else {
-                    mCutoutForceFullscreenSettings.removeApp(appEntry.info.packageName);
-                }
-                try{
-                    mActivityManager.forceStopPackage(appEntry.info.packageName);
-                } catch (Exception ignored) {
+                if (stage(appEntry.packageName, isChecked)) {
+                    onStagedChanged();
                 }
             });
         }
 
-        private void setEntries(List<ApplicationsState.AppEntry> entries,
-                List<String> sections, List<Integer> positions) {
+        private void setEntries(List<PackageCatalog.App> entries, List<String> sections,
+                List<Integer> positions, DiffUtil.DiffResult diff) {
             mEntries = entries;
             mSections = sections.toArray(new String[sections.size()]);
             mPositions = new int[positions.size()];
             for (int i = 0; i < positions.size(); i++) {
                 mPositions[i] = positions.get(i);
             }
-            notifyDataSetChanged();
+            diff.dispatchUpdatesTo(this);
         }
 
         @Override
@@ -312,43 +552,4 @@ public class DisplayCutoutForceFullscreenFragment extends PreferenceFragment
             view.setTag(this);
         }
     }
-
-    private class ActivityFilter implements ApplicationsState.AppFilter {
-
-        private final PackageManager mPackageManager;
-        private final List<String> mLauncherResolveInfoList = new ArrayList<String>();
-
-        private ActivityFilter(PackageManager packageManager) {
-            this.mPackageManager = packageManager;
-
-            updateLauncherInfoList();
-        }
-
-        public void updateLauncherInfoList() {
-            Intent i = new Intent(Intent.ACTION_MAIN);
-            i.addCategory(Intent.CATEGORY_LAUNCHER);
-            List<ResolveInfo> resolveInfoList = mPackageManager.queryIntentActivities(i, 0);
-
-            synchronized (mLauncherResolveInfoList) {
-                mLauncherResolveInfoList.clear();
-                for (ResolveInfo ri : resolveInfoList) {
-                    mLauncherResolveInfoList.add(ri.activityInfo.packageName);
-                }
-            }
-        }
-
-        @Override
-        public void init() {}
-
-        @Override
-        public boolean filterApp(ApplicationsState.AppEntry entry) {
-            boolean show = !mAllPackagesAdapter.mEntries.contains(entry.info.packageName);
-            if (show) {
-                synchronized (mLauncherResolveInfoList) {
-                    show = mLauncherResolveInfoList.contains(entry.info.packageName) && !entry.info.isSystemApp();
-                }
-            }
-            return show;
-        }
-    }
 }
@@ -45,7 +45,12 @@ import com.android.settingslib.search.SearchIndexable;
 
 import com.blackiron.settings.fragments.ui.doze.EdgeLightSettings;
 import com.blackiron.settings.fragments.ui.doze.Utils;
+import com.blackiron.settings.preferences.InstrumentedSettings;
 import com.blackiron.settings.preferences.SecureSettingSeekBarPreference;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import java.util.List;
 import java.util.ArrayList;
@@ -85,6 +90,7 @@ public class DozeSettings extends SettingsPreferenceFragment implements
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        SettingsPrefetcher.prefetch(getContext(), R.xml.doze_settings);
         addPreferencesFromResource(R.xml.doze_settings);
 
         Context context = getContext();
@@ -99,7 +105,7 @@ public class DozeSettings extends SettingsPreferenceFragment implements
 
         boolean dozeEnabledDefault = context.getResources().getBoolean(
                 com.android.internal.R.bool.config_doze_enabled_by_default);
-        boolean dozeEnabled = Settings.Secure.getIntForUser(resolver,
+        boolean dozeEnabled = InstrumentedSettings.getIntForUser(resolver, SettingsNamespace.SECURE,
                 Settings.Secure.DOZE_ENABLED,
                 dozeEnabledDefault ? 1 : 0, UserHandle.USER_CURRENT) != 0;
         mDozeEnabledPreference.setChecked(dozeEnabled);
@@ -126,8 +132,8 @@ public class DozeSettings extends SettingsPreferenceFragment implements
             } else {
                 boolean pickupGestureDefault = context.getResources().getBoolean(
                         com.android.internal.R.bool.config_dozePickupGestureEnabled);
-                boolean pickupGesture = Settings.Secure.getIntForUser(resolver,
-                        Settings.Secure.DOZE_PICK_UP_GESTURE,
+                boolean pickupGesture = InstrumentedSettings.getIntForUser(resolver,
+                        SettingsNamespace.SECURE, Settings.Secure.DOZE_PICK_UP_GESTURE,
                         pickupGestureDefault ? 1 : 0, UserHandle.USER_CURRENT) != 0;
                 mPickUpPreference.setChecked(pickupGesture);
                 mPickUpPreference.setOnPreferenceChangeListener(this);
@@ -150,8 +156,8 @@ public class DozeSettings extends SettingsPreferenceFragment implements
         } else {
             boolean dozeAlwaysOnDefault = context.getResources().getBoolean(
                     com.android.internal.R.bool.config_dozeAlwaysOnEnabled);
-            boolean dozeAlwaysOn = Settings.Secure.getIntForUser(resolver,
-                    Settings.Secure.DOZE_ALWAYS_ON,
+            boolean dozeAlwaysOn = InstrumentedSettings.getIntForUser(resolver,
+                    SettingsNamespace.SECURE, Settings.Secure.DOZE_ALWAYS_ON,
                     dozeAlwaysOnDefault ? 1 : 0, UserHandle.USER_CURRENT) != 0;
             mDozeAlwaysOnPreference.setChecked(dozeAlwaysOn);
             mDozeAlwaysOnPreference.setOnPreferenceChangeListener(this);
@@ -165,37 +171,43 @@ public class DozeSettings extends SettingsPreferenceFragment implements
 
         if (preference == mDozeAlwaysOnPreference) {
             boolean value = (Boolean) newValue;
-            Settings.Secure.putIntForUser(resolver, Settings.Secure.DOZE_ALWAYS_ON, 
+            InstrumentedSettings.putIntForUser(resolver,
+                    SettingsNamespace.SECURE, Settings.Secure.DOZE_ALWAYS_ON, 
                  value ? 1 : 0, UserHandle.USER_CURRENT);
             checkService(context);
             return true;
         } else if (preference == mTiltPreference) {
             boolean value = (Boolean) newValue;
-            Settings.Secure.putIntForUser(resolver, Settings.Secure.DOZE_TILT_GESTURE, 
+            InstrumentedSettings.putIntForUser(resolver,
+                    SettingsNamespace.SECURE, Settings.Secure.DOZE_TILT_GESTURE, 
                  value ? 1 : 0, UserHandle.USER_CURRENT);
             checkService(context);
             return true;
         } else if (preference == mPickUpPreference) {
             boolean value = (Boolean) newValue;
-            Settings.Secure.putIntForUser(resolver, Settings.Secure.DOZE_PICK_UP_GESTURE, 
+            InstrumentedSettings.putIntForUser(resolver,
+                    SettingsNamespace.SECURE, Settings.Secure.DOZE_PICK_UP_GESTURE, 
                  value ? 1 : 0, UserHandle.USER_CURRENT);
             checkService(context);
             return true;
         } else if (preference == mHandwavePreference) {
             boolean value = (Boolean) newValue;
-            Settings.Secure.putIntForUser(resolver, Settings.Secure.DOZE_HANDWAVE_GESTURE, 
+            InstrumentedSettings.putIntForUser(resolver,
+                    SettingsNamespace.SECURE, Settings.Secure.DOZE_HANDWAVE_GESTURE, 
                  value ? 1 : 0, UserHandle.USER_CURRENT);
             checkService(context);
             return true;
         } else if (preference == mPocketPreference) {
             boolean value = (Boolean) newValue;
-            Settings.Secure.putIntForUser(resolver, Settings.Secure.DOZE_POCKET_GESTURE, 
+            InstrumentedSettings.putIntForUser(resolver,
+                    SettingsNamespace.SECURE, Settings.Secure.DOZE_POCKET_GESTURE, 
                  value ? 1 : 0, UserHandle.USER_CURRENT);
             checkService(context);
             return true;
         } else if (preference == mRaiseToWakePreference) {
             boolean value = (Boolean) newValue;
-            Settings.Secure.putIntForUser(resolver, Settings.Secure.RAISE_TO_WAKE_GESTURE, 
+            InstrumentedSettings.putIntForUser(resolver,
+                    SettingsNamespace.SECURE, Settings.Secure.RAISE_TO_WAKE_GESTURE, 
                  value ? 1 : 0, UserHandle.USER_CURRENT);
             checkService(context);
             return true;
@@ -247,34 +259,28 @@ public class DozeSettings extends SettingsPreferenceFragment implements
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.DOZE_ENABLED, mContext.getResources().getBoolean(
-                com.android.internal.R.bool.config_doze_enabled_by_default) ? 1 : 0,
-                UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.DOZE_ALWAYS_ON, mContext.getResources().getBoolean(
-                com.android.internal.R.bool.config_dozeAlwaysOnEnabled) ? 1 : 0,
-                UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.DOZE_ALWAYS_ON_AUTO_MODE, 0, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.DOZE_TILT_GESTURE, 0, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.DOZE_PICK_UP_GESTURE, mContext.getResources().getBoolean(
-                com.android.internal.R.bool.config_dozePickupGestureEnabled) ? 1 : 0,
-                UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.DOZE_HANDWAVE_GESTURE, 0, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.DOZE_POCKET_GESTURE, 0, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.RAISE_TO_WAKE_GESTURE, 0, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.DOZE_GESTURE_VIBRATE, 0, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                Settings.Secure.DOZE_ON_CHARGE, 0, UserHandle.USER_CURRENT);
-        EdgeLightSettings.reset(mContext);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putBoolean(SettingsNamespace.SECURE, Settings.Secure.DOZE_ENABLED,
+                mContext.getResources().getBoolean(
+                com.android.internal.R.bool.config_doze_enabled_by_default));
+        spec.putBoolean(SettingsNamespace.SECURE, Settings.Secure.DOZE_ALWAYS_ON,
+                mContext.getResources().getBoolean(
+                com.android.internal.R.bool.config_dozeAlwaysOnEnabled));
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.DOZE_ALWAYS_ON_AUTO_MODE, 0);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.DOZE_TILT_GESTURE, 0);
+        spec.putBoolean(SettingsNamespace.SECURE, Settings.Secure.DOZE_PICK_UP_GESTURE,
+                mContext.getResources().getBoolean(
+                com.android.internal.R.bool.config_dozePickupGestureEnabled));
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.DOZE_HANDWAVE_GESTURE, 0);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.DOZE_POCKET_GESTURE, 0);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.RAISE_TO_WAKE_GESTURE, 0);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.DOZE_GESTURE_VIBRATE, 0);
+        spec.putInt(SettingsNamespace.SECURE, Settings.Secure.DOZE_ON_CHARGE, 0);
+        EdgeLightSettings.addResetEntries(mContext, spec);
+        return spec;
     }
 
     @Override
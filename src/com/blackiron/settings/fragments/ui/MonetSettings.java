@@ -29,6 +29,11 @@ import androidx.preference.Preference.OnPreferenceChangeListener;
 import com.android.internal.logging.nano.MetricsProto;
 import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
+import com.blackiron.settings.preferences.InstrumentedSettings;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsTransaction;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import lineageos.providers.LineageSettings;
 
@@ -58,6 +63,7 @@ public class MonetSettings extends SettingsPreferenceFragment implements
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.monet_engine);
         addPreferencesFromResource(R.xml.monet_engine);
 
         mThemeStylePref = findPreference(PREF_THEME_STYLE);
@@ -129,8 +135,8 @@ public class MonetSettings extends SettingsPreferenceFragment implements
     }
 
     private void putSettingsJson(JSONObject object) {
-        Settings.Secure.putStringForUser(
-                getActivity().getContentResolver(),
+        InstrumentedSettings.putStringForUser(
+                getActivity().getContentResolver(), SettingsNamespace.SECURE,
                 Settings.Secure.THEME_CUSTOMIZATION_OVERLAY_PACKAGES,
                 object.toString(), UserHandle.USER_CURRENT);
     }
@@ -144,23 +150,21 @@ public class MonetSettings extends SettingsPreferenceFragment implements
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        Settings.Secure.putIntForUser(resolver,
-                PREF_CHROMA_FACTOR, 100, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                PREF_LUMINANCE_FACTOR, 100, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                PREF_TINT_BACKGROUND, 0, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                PREF_CUSTOM_COLOR, 0, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                PREF_COLOR_OVERRIDE, 0xFF1b6ef3, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                PREF_CUSTOM_BGCOLOR, 0, UserHandle.USER_CURRENT);
-        Settings.Secure.putIntForUser(resolver,
-                PREF_BGCOLOR_OVERRIDE, 0xFF1b6ef3, UserHandle.USER_CURRENT);
-        LineageSettings.Secure.putIntForUser(resolver,
-                LineageSettings.Secure.BERRY_BLACK_THEME, 0, UserHandle.USER_CURRENT);
+        SettingsTransaction.begin(mContext)
+                .putAll(addResetEntries(mContext, new ResetSpec()))
+                .commit();
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.SECURE, PREF_CHROMA_FACTOR, 100);
+        spec.putInt(SettingsNamespace.SECURE, PREF_LUMINANCE_FACTOR, 100);
+        spec.putInt(SettingsNamespace.SECURE, PREF_TINT_BACKGROUND, 0);
+        spec.putInt(SettingsNamespace.SECURE, PREF_CUSTOM_COLOR, 0);
+        spec.putInt(SettingsNamespace.SECURE, PREF_COLOR_OVERRIDE, 0xFF1b6ef3);
+        spec.putInt(SettingsNamespace.SECURE, PREF_CUSTOM_BGCOLOR, 0);
+        spec.putInt(SettingsNamespace.SECURE, PREF_BGCOLOR_OVERRIDE, 0xFF1b6ef3);
+        spec.putInt(SettingsNamespace.LINEAGE_SECURE, LineageSettings.Secure.BERRY_BLACK_THEME, 0);
+        return spec;
     }
 
     @Override
@@ -57,6 +57,9 @@ import com.bumptech.glide.Glide;
 
 import com.android.internal.util.blackiron.ThemeUtils;
 
+import com.blackiron.settings.preferences.InstrumentedSettings;
+import com.blackiron.settings.preferences.SettingsNamespace;
+
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -155,8 +158,9 @@ public class NavbarStyles extends SettingsPreferenceFragment {
                     updateActivatedStatus(navPkg, true);
                     mSelectedPkg = navPkg;
                     enableOverlays(position);
-                    Settings.System.putStringForUser(getContext().getContentResolver(),
-                            Settings.System.NAVBAR_STYLE, navPkg, UserHandle.USER_CURRENT);
+                    InstrumentedSettings.putStringForUser(getContext().getContentResolver(),
+                            SettingsNamespace.SYSTEM, Settings.System.NAVBAR_STYLE, navPkg,
+                            UserHandle.USER_CURRENT);
                 }
             });
         }
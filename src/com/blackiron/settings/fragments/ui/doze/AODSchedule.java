@@ -32,7 +32,10 @@ import com.android.internal.logging.nano.MetricsProto;
 import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
 
+import com.blackiron.settings.preferences.InstrumentedSettings;
 import com.blackiron.settings.preferences.SecureSettingListPreference;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import java.time.format.DateTimeFormatter;
 import java.time.LocalTime;
@@ -59,6 +62,7 @@ public class AODSchedule extends SettingsPreferenceFragment implements
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        SettingsPrefetcher.prefetch(getContext(), R.xml.always_on_display_schedule);
         addPreferencesFromResource(R.xml.always_on_display_schedule);
 
         ContentResolver resolver = getActivity().getContentResolver();
@@ -84,8 +88,8 @@ public class AODSchedule extends SettingsPreferenceFragment implements
         int value = Integer.parseInt((String) objValue);
         int index = mModePref.findIndexOfValue((String) objValue);
         mModePref.setSummary(mModePref.getEntries()[index]);
-        Settings.Secure.putIntForUser(getActivity().getContentResolver(),
-                MODE_KEY, value, UserHandle.USER_CURRENT);
+        InstrumentedSettings.putIntForUser(getActivity().getContentResolver(),
+                SettingsNamespace.SECURE, MODE_KEY, value, UserHandle.USER_CURRENT);
         updateTimeEnablement(value);
         updateTimeSummary(value);
         return true;
@@ -170,8 +174,8 @@ public class AODSchedule extends SettingsPreferenceFragment implements
         nHour += String.valueOf(hour);
         nMinute += String.valueOf(minute);
         times[since ? 0 : 1] = nHour + ":" + nMinute;
-        Settings.Secure.putStringForUser(getActivity().getContentResolver(),
-                Settings.Secure.DOZE_ALWAYS_ON_AUTO_TIME,
+        InstrumentedSettings.putStringForUser(getActivity().getContentResolver(),
+                SettingsNamespace.SECURE, Settings.Secure.DOZE_ALWAYS_ON_AUTO_TIME,
                 times[0] + "," + times[1], UserHandle.USER_CURRENT);
         updateTimeSummary(times, Integer.parseInt(mModePref.getValue()));
     }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2017-2023 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blackiron.settings.fragments.ui.doze;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.UserHandle;
+import android.os.VibrationEffect;
+import android.provider.Settings;
+
+/**
+ * Immutable snapshot of the current user's doze gesture settings.
+ * {@link DozeService} keeps the current one and replaces it when any of the
+ * settings changes or the user switches, so sensor callbacks only read fields
+ * instead of querying the settings provider.
+ */
+final class DozeGestureSettings {
+
+    static final Uri[] URIS = {
+        Settings.Secure.getUriFor(Settings.Secure.DOZE_TILT_GESTURE),
+        Settings.Secure.getUriFor(Settings.Secure.DOZE_PICK_UP_GESTURE),
+        Settings.Secure.getUriFor(Settings.Secure.DOZE_HANDWAVE_GESTURE),
+        Settings.Secure.getUriFor(Settings.Secure.DOZE_POCKET_GESTURE),
+        Settings.Secure.getUriFor(Settings.Secure.RAISE_TO_WAKE_GESTURE),
+        Settings.Secure.getUriFor(Settings.Secure.DOZE_GESTURE_VIBRATE),
+    };
+
+    final boolean tiltEnabled;
+    final boolean pickUpEnabled;
+    final boolean handwaveEnabled;
+    final boolean pocketEnabled;
+    final boolean raiseToWake;
+    // Haptic feedback for a pulse, null when disabled
+    final VibrationEffect vibration;
+
+    private DozeGestureSettings(boolean tiltEnabled, boolean pickUpEnabled, boolean handwaveEnabled,
+            boolean pocketEnabled, boolean raiseToWake, VibrationEffect vibration) {
+        this.tiltEnabled = tiltEnabled;
+        this.pickUpEnabled = pickUpEnabled;
+        this.handwaveEnabled = handwaveEnabled;
+        this.pocketEnabled = pocketEnabled;
+        this.raiseToWake = raiseToWake;
+        this.vibration = vibration;
+    }
+
+    static DozeGestureSettings load(Context context) {
+        final int vibrateMs = Settings.Secure.getIntForUser(context.getContentResolver(),
+                Settings.Secure.DOZE_GESTURE_VIBRATE, 0, UserHandle.USER_CURRENT);
+        return new DozeGestureSettings(Utils.tiltEnabled(context), Utils.pickUpEnabled(context),
+                Utils.handwaveGestureEnabled(context), Utils.pocketGestureEnabled(context),
+                Utils.isRaiseToWakeEnabled(context),
+                vibrateMs > 0 ? VibrationEffect.createOneShot(vibrateMs,
+                        VibrationEffect.DEFAULT_AMPLITUDE) : null);
+    }
+
+    boolean proximityGesturesEnabled() {
+        return handwaveEnabled || pocketEnabled;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2017-2023 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blackiron.settings.fragments.ui.doze;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cooldown between two doze gestures. Sensor event timestamps are in
+ * nanoseconds while the intervals are configured in milliseconds, so the
+ * cooldown is converted once here and every check is done in nanoseconds.
+ * A gesture passes when the cooldown has elapsed since the last one that
+ * passed; suppressed ones don't extend it.
+ */
+final class DozeRateLimiter {
+    private final String mName;
+    private final long mCooldownNs;
+
+    private boolean mHasPassed;
+    private long mLastPassedNs;
+    private long mPassedCount;
+    private long mSuppressedCount;
+
+    DozeRateLimiter(String name, long cooldown, TimeUnit unit) {
+        mName = name;
+        mCooldownNs = unit.toNanos(cooldown);
+    }
+
+    /**
+     * Returns whether a gesture at {@code timestampNs}, a sensor event
+     * timestamp, may fire, and if so starts a new cooldown.
+     */
+    boolean tryAcquire(long timestampNs) {
+        if (mHasPassed && timestampNs - mLastPassedNs < mCooldownNs) {
+            mSuppressedCount++;
+            return false;
+        }
+        mHasPassed = true;
+        mLastPassedNs = timestampNs;
+        mPassedCount++;
+        return true;
+    }
+
+    long getPassedCount() {
+        return mPassedCount;
+    }
+
+    long getSuppressedCount() {
+        return mSuppressedCount;
+    }
+
+    void dump(PrintWriter pw) {
+        pw.println("  " + mName + ": cooldown="
+                + TimeUnit.NANOSECONDS.toMillis(mCooldownNs) + "ms passed=" + mPassedCount
+                + " suppressed=" + mSuppressedCount);
+    }
+}
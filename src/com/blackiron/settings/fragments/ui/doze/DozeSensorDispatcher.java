@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2017-2023 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blackiron.settings.fragments.ui.doze;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.io.PrintWriter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The one thread of the doze sensors. Registering and unregistering run on
+ * it, and sensor events are delivered to it through the Handler overload of
+ * registerListener, so gestures are evaluated off the main thread and all
+ * sensor state is only touched from here.
+ *
+ * <p>Every listener is wrapped to measure how long events took from the
+ * sensor to the callback and how long the callback ran.
+ */
+final class DozeSensorDispatcher {
+    private static final String TAG = "DozeSensors";
+
+    private final SensorManager mSensorManager;
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+    // Written on mThread only, read by dump
+    private final ConcurrentHashMap<SensorEventListener, TimedListener> mListeners =
+            new ConcurrentHashMap<>();
+
+    DozeSensorDispatcher(Context context) {
+        mSensorManager = context.getSystemService(SensorManager.class);
+        // Same priority as the executors the sensors used before
+        mThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_DEFAULT);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    void register(SensorEventListener listener, Sensor sensor, int samplingPeriodUs,
+            int maxReportLatencyUs) {
+        mHandler.post(() -> {
+            TimedListener timed = mListeners.get(listener);
+            if (timed == null) {
+                timed = new TimedListener(listener);
+                mListeners.put(listener, timed);
+            }
+            mSensorManager.registerListener(timed, sensor, samplingPeriodUs,
+                    maxReportLatencyUs, mHandler);
+        });
+    }
+
+    void unregister(SensorEventListener listener, Sensor sensor) {
+        mHandler.post(() -> {
+            TimedListener timed = mListeners.get(listener);
+            if (timed != null) {
+                mSensorManager.unregisterListener(timed, sensor);
+            }
+        });
+    }
+
+    /**
+     * Runs {@code r} on the sensor thread, in order with the registrations.
+     */
+    void post(Runnable r) {
+        mHandler.post(r);
+    }
+
+    /**
+     * Stops the thread once everything posted so far, e.g. the final
+     * unregisters, has run.
+     */
+    void quit() {
+        mThread.quitSafely();
+    }
+
+    void dump(PrintWriter pw) {
+        pw.println("Doze sensor thread: " + mThread.getName() + " tid=" + mThread.getThreadId()
+                + " alive=" + mThread.isAlive());
+        for (TimedListener timed : mListeners.values()) {
+            timed.dump(pw);
+        }
+    }
+
+    private static final class TimedListener implements SensorEventListener {
+        private final SensorEventListener mListener;
+
+        // Written on the dispatcher thread only
+        private volatile long mEvents;
+        private volatile long mTotalLatencyNs;
+        private volatile long mMaxLatencyNs;
+        private volatile long mTotalHandlingNs;
+        private volatile long mMaxHandlingNs;
+
+        TimedListener(SensorEventListener listener) {
+            mListener = listener;
+        }
+
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+            // Event timestamps share the elapsedRealtimeNanos time base
+            final long start = SystemClock.elapsedRealtimeNanos();
+            mListener.onSensorChanged(event);
+            final long handling = SystemClock.elapsedRealtimeNanos() - start;
+            final long latency = start - event.timestamp;
+
+            mEvents++;
+            mTotalLatencyNs += latency;
+            mMaxLatencyNs = Math.max(mMaxLatencyNs, latency);
+            mTotalHandlingNs += handling;
+            mMaxHandlingNs = Math.max(mMaxHandlingNs, handling);
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+            mListener.onAccuracyChanged(sensor, accuracy);
+        }
+
+        void dump(PrintWriter pw) {
+            final long events = mEvents;
+            pw.println("  " + mListener.getClass().getSimpleName() + ": events=" + events
+                    + " latency avg=" + toMicros(events == 0 ? 0 : mTotalLatencyNs / events)
+                    + "us max=" + toMicros(mMaxLatencyNs)
+                    + "us handling avg=" + toMicros(events == 0 ? 0 : mTotalHandlingNs / events)
+                    + "us max=" + toMicros(mMaxHandlingNs) + "us");
+        }
+
+        private static long toMicros(long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos);
+        }
+    }
+}
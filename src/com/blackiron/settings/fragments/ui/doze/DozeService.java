@@ -21,9 +21,17 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.UserHandle;
 import android.util.Log;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+
 public class DozeService extends Service {
     private static final String TAG = "BlackironDozeService";
     private static final boolean DEBUG = false;
@@ -36,6 +44,28 @@ public class DozeService extends Service {
     private boolean mPickupSensorAvailable;
     private boolean mProximitySensorAvailable;
 
+    private DozeSensorDispatcher mSensorDispatcher;
+
+    // Read from the sensor callbacks, replaced whenever a gesture setting changes
+    private volatile DozeGestureSettings mSettings;
+
+    private final ContentObserver mSettingsObserver =
+            new ContentObserver(new Handler(Looper.getMainLooper())) {
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            mSettings = DozeGestureSettings.load(DozeService.this);
+        }
+    };
+
+    // The snapshot is of the current user, the observers only fire for keys
+    // that change, so a switch has to reload it
+    private final BroadcastReceiver mUserSwitchReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            mSettings = DozeGestureSettings.load(DozeService.this);
+        }
+    };
+
     private BroadcastReceiver mScreenStateReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
@@ -57,6 +87,13 @@ public class DozeService extends Service {
 
         if (!mTiltSensorAvailable && !mPickupSensorAvailable && !mProximitySensorAvailable) return;
 
+        for (Uri uri : DozeGestureSettings.URIS) {
+            getContentResolver().registerContentObserver(uri, false, mSettingsObserver,
+                    UserHandle.USER_ALL);
+        }
+        mSettings = DozeGestureSettings.load(this);
+        mSensorDispatcher = new DozeSensorDispatcher(this);
+
         if (mTiltSensorAvailable) mTiltSensor = new TiltSensor(this);
         if (mPickupSensorAvailable) mPickupSensor = new PickupSensor(this);
         if (mProximitySensorAvailable) mProximitySensor = new ProximitySensor(this);
@@ -64,6 +101,7 @@ public class DozeService extends Service {
         IntentFilter screenStateFilter = new IntentFilter(Intent.ACTION_SCREEN_ON);
         screenStateFilter.addAction(Intent.ACTION_SCREEN_OFF);
         registerReceiver(mScreenStateReceiver, screenStateFilter);
+        registerReceiver(mUserSwitchReceiver, new IntentFilter(Intent.ACTION_USER_SWITCHED));
     }
 
     @Override
@@ -80,6 +118,8 @@ public class DozeService extends Service {
         if (!mTiltSensorAvailable && !mPickupSensorAvailable && !mProximitySensorAvailable) return;
 
         this.unregisterReceiver(mScreenStateReceiver);
+        this.unregisterReceiver(mUserSwitchReceiver);
+        getContentResolver().unregisterContentObserver(mSettingsObserver);
         if (mTiltSensorAvailable) {
             mTiltSensor.disable();
         }
@@ -89,6 +129,7 @@ public class DozeService extends Service {
         if (mProximitySensorAvailable) {
             mProximitySensor.disable();
         }
+        mSensorDispatcher.quit();
     }
 
     @Override
@@ -96,30 +137,55 @@ public class DozeService extends Service {
         return null;
     }
 
+    DozeGestureSettings getSettings() {
+        return mSettings;
+    }
+
+    DozeSensorDispatcher getSensorDispatcher() {
+        return mSensorDispatcher;
+    }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        if (mSensorDispatcher != null) {
+            mSensorDispatcher.dump(pw);
+        }
+        pw.println("Doze gesture rate limits:");
+        if (mTiltSensor != null) {
+            mTiltSensor.dump(pw);
+        }
+        if (mPickupSensor != null) {
+            mPickupSensor.dump(pw);
+        }
+        if (mProximitySensor != null) {
+            mProximitySensor.dump(pw);
+        }
+    }
+
     private void onDisplayOn() {
         if (DEBUG) Log.d(TAG, "Display on");
-        if (mTiltSensorAvailable && Utils.tiltEnabled(this)) {
+        final DozeGestureSettings settings = mSettings;
+        if (mTiltSensorAvailable && settings.tiltEnabled) {
             mTiltSensor.disable();
         }
-        if (mPickupSensorAvailable && Utils.pickUpEnabled(this)) {
+        if (mPickupSensorAvailable && settings.pickUpEnabled) {
             mPickupSensor.disable();
         }
-        if (mProximitySensorAvailable && (Utils.handwaveGestureEnabled(this) ||
-                Utils.pocketGestureEnabled(this))) {
+        if (mProximitySensorAvailable && settings.proximityGesturesEnabled()) {
             mProximitySensor.disable();
         }
     }
 
     private void onDisplayOff() {
         if (DEBUG) Log.d(TAG, "Display off");
-        if (mTiltSensorAvailable && Utils.tiltEnabled(this)) {
+        final DozeGestureSettings settings = mSettings;
+        if (mTiltSensorAvailable && settings.tiltEnabled) {
             mTiltSensor.enable();
         }
-        if (mPickupSensorAvailable && Utils.pickUpEnabled(this)) {
+        if (mPickupSensorAvailable && settings.pickUpEnabled) {
             mPickupSensor.enable();
         }
-        if (mProximitySensorAvailable && (Utils.handwaveGestureEnabled(this) ||
-                Utils.pocketGestureEnabled(this))) {
+        if (mProximitySensorAvailable && settings.proximityGesturesEnabled()) {
             mProximitySensor.enable();
         }
     }
@@ -41,6 +41,10 @@ import androidx.preference.SwitchPreference;
 import com.android.internal.logging.nano.MetricsProto;
 import com.android.settings.R;
 import com.android.settings.SettingsPreferenceFragment;
+import com.blackiron.settings.preferences.ResetSpec;
+import com.blackiron.settings.preferences.SettingsNamespace;
+import com.blackiron.settings.preferences.SettingsResetter;
+import com.blackiron.settings.preferences.SettingsPrefetcher;
 
 import java.util.List;
 import java.util.ArrayList;
@@ -51,6 +55,7 @@ public class EdgeLightSettings extends SettingsPreferenceFragment implements
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        SettingsPrefetcher.prefetch(getContext(), R.xml.edge_light_settings);
         addPreferencesFromResource(R.xml.edge_light_settings);
     }
 
@@ -60,17 +65,17 @@ public class EdgeLightSettings extends SettingsPreferenceFragment implements
     }
 
     public static void reset(Context mContext) {
-        ContentResolver resolver = mContext.getContentResolver();
-        Settings.System.putIntForUser(resolver,
-                Settings.System.EDGE_LIGHT_ENABLED, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.EDGE_LIGHT_ALWAYS_TRIGGER_ON_PULSE, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.EDGE_LIGHT_REPEAT_ANIMATION, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.EDGE_LIGHT_COLOR_MODE, 0, UserHandle.USER_CURRENT);
-        Settings.System.putIntForUser(resolver,
-                Settings.System.EDGE_LIGHT_CUSTOM_COLOR, Color.WHITE, UserHandle.USER_CURRENT);
+        SettingsResetter.reset(mContext, addResetEntries(mContext, new ResetSpec()));
+    }
+
+    public static ResetSpec addResetEntries(Context mContext, ResetSpec spec) {
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.EDGE_LIGHT_ENABLED, 0);
+        spec.putInt(SettingsNamespace.SYSTEM,
+                Settings.System.EDGE_LIGHT_ALWAYS_TRIGGER_ON_PULSE, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.EDGE_LIGHT_REPEAT_ANIMATION, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.EDGE_LIGHT_COLOR_MODE, 0);
+        spec.putInt(SettingsNamespace.SYSTEM, Settings.System.EDGE_LIGHT_CUSTOM_COLOR, Color.WHITE);
+        return spec;
     }
 
     @Override
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2017-2023 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blackiron.settings.fragments.ui.doze;
+
+/**
+ * Detects a pickup from raw accelerometer samples, for devices without a
+ * pickup gesture sensor. Gravity is split off with a low pass filter whose
+ * coefficient follows the actual sample interval, the remaining linear
+ * acceleration is smoothed over the last few samples, and a small state
+ * machine looks for rest, then a lift, then the device settling again at a
+ * different angle than it rested at.
+ *
+ * <p>All state lives in preallocated primitives, a sample allocates nothing.
+ * Not thread safe. Takes its thresholds as plain values and doesn't touch the
+ * framework, so it also runs in the host unit tests.
+ */
+final class PickupDetector {
+    private static final int STATE_REST = 0;
+    private static final int STATE_LIFT = 1;
+    private static final int STATE_SETTLE = 2;
+
+    private static final long NS_PER_MS = 1000000L;
+
+    private final float mGravityTimeConstantNs;
+    private final float mRestThreshold;
+    private final float mLiftThreshold;
+    private final float mSettleThreshold;
+    private final float mMinTiltCos;
+    private final long mRestMinNs;
+    private final long mLiftMaxNs;
+    private final long mSettleNs;
+
+    // Ring buffer of linear acceleration magnitudes and its running sum
+    private final float[] mMagnitudes;
+    private int mMagnitudeIndex;
+    private int mMagnitudeCount;
+    private float mMagnitudeSum;
+
+    private final float[] mGravity = new float[3];
+    private final float[] mRestGravity = new float[3];
+    private boolean mHasGravity;
+    private long mLastTimestampNs;
+
+    private int mState = STATE_REST;
+    // Start of the current still period, -1 while moving
+    private long mStillSinceNs = -1;
+    private long mLiftStartNs;
+    // Whether the current lift went above the lift threshold yet
+    private boolean mLifted;
+    private long mSettleStartNs;
+
+    /**
+     * @param gravityTimeConstantMs time constant of the gravity low pass filter
+     * @param restThreshold linear acceleration below which the device is at
+     *        rest, in m/s^2
+     * @param liftThreshold linear acceleration above which a lift starts
+     * @param settleThreshold linear acceleration below which a lift settles
+     * @param minTiltDegrees how far the device must end up from its rest angle
+     * @param restMinMs how long the device must rest before a lift counts
+     * @param liftMaxMs how long a lift may take before it is dropped as carrying
+     * @param settleMs how long the device must stay settled
+     * @param smoothingSamples number of samples the motion is averaged over
+     */
+    PickupDetector(long gravityTimeConstantMs, float restThreshold, float liftThreshold,
+            float settleThreshold, float minTiltDegrees, long restMinMs, long liftMaxMs,
+            long settleMs, int smoothingSamples) {
+        mGravityTimeConstantNs = gravityTimeConstantMs * NS_PER_MS;
+        mRestThreshold = restThreshold;
+        mLiftThreshold = liftThreshold;
+        mSettleThreshold = settleThreshold;
+        mMinTiltCos = (float) Math.cos(Math.toRadians(minTiltDegrees));
+        mRestMinNs = restMinMs * NS_PER_MS;
+        mLiftMaxNs = liftMaxMs * NS_PER_MS;
+        mSettleNs = settleMs * NS_PER_MS;
+        mMagnitudes = new float[Math.max(1, smoothingSamples)];
+    }
+
+    /**
+     * Starts over, e.g. after the sensor was off for a while.
+     */
+    void reset() {
+        mHasGravity = false;
+        mMagnitudeIndex = 0;
+        mMagnitudeCount = 0;
+        mMagnitudeSum = 0;
+        mState = STATE_REST;
+        mStillSinceNs = -1;
+    }
+
+    /**
+     * Feeds one accelerometer sample.
+     *
+     * @return whether it completes a pickup
+     */
+    boolean onSample(float x, float y, float z, long timestampNs) {
+        if (!mHasGravity || timestampNs <= mLastTimestampNs) {
+            mGravity[0] = x;
+            mGravity[1] = y;
+            mGravity[2] = z;
+            mHasGravity = true;
+            mLastTimestampNs = timestampNs;
+            return false;
+        }
+        final float dt = timestampNs - mLastTimestampNs;
+        mLastTimestampNs = timestampNs;
+        final float alpha = dt / (mGravityTimeConstantNs + dt);
+        mGravity[0] += alpha * (x - mGravity[0]);
+        mGravity[1] += alpha * (y - mGravity[1]);
+        mGravity[2] += alpha * (z - mGravity[2]);
+
+        final float lx = x - mGravity[0];
+        final float ly = y - mGravity[1];
+        final float lz = z - mGravity[2];
+        final float motion = smooth((float) Math.sqrt(lx * lx + ly * ly + lz * lz));
+
+        switch (mState) {
+            case STATE_REST:
+                if (motion < mRestThreshold) {
+                    if (mStillSinceNs < 0) {
+                        mStillSinceNs = timestampNs;
+                    }
+                    if (timestampNs - mStillSinceNs >= mRestMinNs) {
+                        copyGravity(mRestGravity);
+                    }
+                } else if (mStillSinceNs >= 0 && timestampNs - mStillSinceNs >= mRestMinNs) {
+                    // Leaving an established rest. The smoothing ramps the
+                    // motion up, so it always crosses the band between the
+                    // rest and lift thresholds first; the lift is confirmed
+                    // once it goes above.
+                    mState = STATE_LIFT;
+                    mLiftStartNs = timestampNs;
+                    mLifted = motion > mLiftThreshold;
+                } else {
+                    mStillSinceNs = -1;
+                }
+                return false;
+            case STATE_LIFT:
+                mLifted |= motion > mLiftThreshold;
+                if (timestampNs - mLiftStartNs > mLiftMaxNs) {
+                    // Carried around rather than picked up
+                    toRest(-1);
+                } else if (motion < mSettleThreshold) {
+                    if (mLifted) {
+                        mState = STATE_SETTLE;
+                        mSettleStartNs = timestampNs;
+                    } else {
+                        // Only nudged, never lifted
+                        toRest(-1);
+                    }
+                }
+                return false;
+            case STATE_SETTLE:
+                if (motion >= mSettleThreshold) {
+                    mState = STATE_LIFT;
+                    return false;
+                }
+                if (timestampNs - mSettleStartNs < mSettleNs) {
+                    return false;
+                }
+                final boolean tilted = getTiltCos() <= mMinTiltCos;
+                toRest(timestampNs);
+                return tilted;
+        }
+        return false;
+    }
+
+    private float smooth(float magnitude) {
+        if (mMagnitudeCount == mMagnitudes.length) {
+            mMagnitudeSum -= mMagnitudes[mMagnitudeIndex];
+        } else {
+            mMagnitudeCount++;
+        }
+        mMagnitudes[mMagnitudeIndex] = magnitude;
+        mMagnitudeSum += magnitude;
+        mMagnitudeIndex = (mMagnitudeIndex + 1) % mMagnitudes.length;
+        return mMagnitudeSum / mMagnitudeCount;
+    }
+
+    /**
+     * Cosine of the angle between the gravity at rest and now.
+     */
+    private float getTiltCos() {
+        final float dot = mGravity[0] * mRestGravity[0] + mGravity[1] * mRestGravity[1]
+                + mGravity[2] * mRestGravity[2];
+        final float norms = (float) Math.sqrt(
+                (mGravity[0] * mGravity[0] + mGravity[1] * mGravity[1]
+                        + mGravity[2] * mGravity[2])
+                * (mRestGravity[0] * mRestGravity[0] + mRestGravity[1] * mRestGravity[1]
+                        + mRestGravity[2] * mRestGravity[2]));
+        return norms == 0 ? 1 : dot / norms;
+    }
+
+    private void toRest(long stillSinceNs) {
+        mState = STATE_REST;
+        mStillSinceNs = stillSinceNs;
+    }
+
+    private void copyGravity(float[] out) {
+        out[0] = mGravity[0];
+        out[1] = mGravity[1];
+        out[2] = mGravity[2];
+    }
+}
@@ -25,46 +25,55 @@ import android.hardware.SensorManager;
 import android.os.PowerManager;
 import android.os.PowerManager.WakeLock;
 import android.os.SystemClock;
-import android.os.UserHandle;
-import android.os.VibrationEffect;
 import android.os.Vibrator;
-import android.provider.Settings;
 import android.telephony.TelephonyManager;
 import android.util.Log;
 
 import com.android.settings.R;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
 
 public class PickupSensor implements SensorEventListener {
     private static final boolean DEBUG = false;
     private static final String TAG = "PickupSensor";
 
+    // Samples arriving closer together than this came in the same delivery
+    private static final long DELIVERY_GAP_NS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long WAKEUP_LOG_INTERVAL_NS = TimeUnit.MINUTES.toNanos(1);
+
     private SensorManager mSensorManager;
     private Sensor mSensorPickup;
     private Context mContext;
+    private DozeService mService;
     private TelephonyManager telephonyManager;
-    private ExecutorService mExecutorService;
+    private DozeSensorDispatcher mDispatcher;
     private PowerManager mPowerManager;
     private WakeLock mWakeLock;
 
-    private boolean mIsCustomPickupSensor;
     private int mMinPulseIntervalMs;
     private int mWakelockTimeoutMs;
 
-    private float[] mGravity;
-    private float mAccelLast;
-    private float mAccelCurrent;
-    private long mEntryTimestamp = 0;
+    // Only when falling back to the raw accelerometer
+    private PickupDetector mDetector;
+    private int mSamplingPeriodUs = SensorManager.SENSOR_DELAY_NORMAL;
+    private int mBatchLatencyUs;
+
+    // Accelerometer deliveries, touched on the sensor thread only
+    private long mWindowStartNs;
+    private long mLastDeliveryNs;
+    private int mWindowDeliveries;
+    private int mWindowSamples;
+    private volatile float mDeliveriesPerMinute;
+    private final DozeRateLimiter mRateLimiter;
     private float mSensorValue;
 
     private Vibrator mVibrator;
 
-    public PickupSensor(Context context) {
-        mContext = context;
-        final Resources res = context.getResources();
+    public PickupSensor(DozeService service) {
+        mContext = service;
+        mService = service;
+        final Resources res = mContext.getResources();
         mSensorManager = mContext.getSystemService(SensorManager.class);
         mSensorValue = res.getFloat(R.dimen.pickup_sensor_value);
         final String pickup_sensor = res.getString(R.string.pickup_sensor);
@@ -73,86 +82,122 @@ public class PickupSensor implements SensorEventListener {
             for (Sensor sensor : mSensorManager.getSensorList(Sensor.TYPE_ALL)) {
                 if (pickup_sensor.equals(sensor.getStringType())) {
                     mSensorPickup = sensor;
-                    mIsCustomPickupSensor = true;
                     break;
                 }
             }
         }
         if (mSensorPickup == null)
             mSensorPickup = mSensorManager.getDefaultSensor(Sensor.TYPE_PICK_UP_GESTURE);
-        if (mSensorPickup == null)
+        if (mSensorPickup == null) {
             mSensorPickup = mSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+            // Without any sensor registering fails later on, like it always did
+            if (mSensorPickup != null) {
+                mDetector = createDetector(res);
+                mSamplingPeriodUs = (int) TimeUnit.MILLISECONDS.toMicros(
+                        res.getInteger(R.integer.config_dozePulsePickup_SamplingPeriodInMs));
+                // Only the reserved part of the FIFO is guaranteed to be ours,
+                // the rest is shared with other sensors. Without one every
+                // sample is delivered as it comes.
+                final int fifoSize = mSensorPickup.getFifoReservedEventCount();
+                if (fifoSize > 0) {
+                    mBatchLatencyUs = (int) Math.min(TimeUnit.MILLISECONDS.toMicros(
+                            res.getInteger(R.integer.config_dozePulsePickup_BatchLatencyInMs)),
+                            (long) fifoSize * mSamplingPeriodUs);
+                }
+            }
+        }
         mMinPulseIntervalMs =
             res.getInteger(R.integer.config_dozePulsePickup_MinPulseIntervalMs);
         mWakelockTimeoutMs =
             res.getInteger(R.integer.config_dozePulsePickup_WakelockTimeoutMs);
+        mRateLimiter = new DozeRateLimiter(TAG, mMinPulseIntervalMs, TimeUnit.MILLISECONDS);
         if (DEBUG) {
             Log.d(TAG, "Pickup sensor: " + mSensorPickup.getStringType());
             Log.d(TAG, "MinPulseIntervalMs: " + String.valueOf(mMinPulseIntervalMs));
             Log.d(TAG, "WakelockTimeoutMs: " + String.valueOf(mWakelockTimeoutMs));
+            Log.d(TAG, "SamplingPeriodUs: " + mSamplingPeriodUs
+                    + " BatchLatencyUs: " + mBatchLatencyUs);
         }
         telephonyManager = (TelephonyManager) mContext.getSystemService(Context.TELEPHONY_SERVICE);
         mPowerManager = (PowerManager) mContext.getSystemService(Context.POWER_SERVICE);
         mWakeLock = mPowerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, TAG);
-        mExecutorService = Executors.newSingleThreadExecutor();
-        mAccelLast = SensorManager.GRAVITY_EARTH;
-        mAccelCurrent = SensorManager.GRAVITY_EARTH;
+        mDispatcher = service.getSensorDispatcher();
         mVibrator = (Vibrator) mContext.getSystemService(Context.VIBRATOR_SERVICE);
         if (mVibrator != null && !mVibrator.hasVibrator()) {
             mVibrator = null;
         }
     }
 
-    private Future<?> submit(Runnable runnable) {
-        return mExecutorService.submit(runnable);
+    private static PickupDetector createDetector(Resources res) {
+        return new PickupDetector(
+                res.getInteger(R.integer.config_dozePulsePickup_GravityTimeConstantMs),
+                res.getFloat(R.dimen.pickup_rest_threshold),
+                res.getFloat(R.dimen.pickup_lift_threshold),
+                res.getFloat(R.dimen.pickup_settle_threshold),
+                res.getFloat(R.dimen.pickup_min_tilt_degrees),
+                res.getInteger(R.integer.config_dozePulsePickup_RestMinMs),
+                res.getInteger(R.integer.config_dozePulsePickup_LiftMaxMs),
+                res.getInteger(R.integer.config_dozePulsePickup_SettleMs),
+                res.getInteger(R.integer.config_dozePulsePickup_SmoothingSamples));
     }
 
     @Override
     public void onSensorChanged(SensorEvent event) {
         if (DEBUG) Log.d(TAG, "Got sensor event: " + event.values[0]);
 
-        long delta = event.timestamp - mEntryTimestamp;
-        if (delta < mMinPulseIntervalMs) {
-            return;
-        } else {
-            mEntryTimestamp = event.timestamp;
+        if (mDetector != null) {
+            countDelivery(SystemClock.elapsedRealtimeNanos());
+            // A batch arrives as consecutive events, oldest first
+            final float[] values = event.values;
+            if (mDetector.onSample(values[0], values[1], values[2], event.timestamp)) {
+                launchWakeOrPulse(event.timestamp);
+            }
+        } else if (event.values[0] == mSensorValue) {
+            launchWakeOrPulse(event.timestamp);
         }
+    }
 
-        try {
-            if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER ||
-                    event.sensor.getType() == Sensor.TYPE_PICK_UP_GESTURE) {
-                mGravity = event.values.clone();
-
-                // Movement detection
-                float x = mGravity[0];
-                float y = mGravity[1];
-                float z = mGravity[2];
-
-                mAccelLast = mAccelCurrent;
-                mAccelCurrent = (float) Math.sqrt(x * x + y * y + z * z);
-                float accDelta = Math.abs(mAccelCurrent - mAccelLast);
-                if (accDelta >= 0.1 && accDelta <= 1.5) {
-                    launchWakeOrPulse();
-                }
-            } else {
-                if (event.values[0] == mSensorValue) {
-                    launchWakeOrPulse();
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * Counts how often the accelerometer samples were actually delivered,
+     * i.e. how often it woke this process, and logs the rate once a minute.
+     */
+    private void countDelivery(long nowNs) {
+        if (mWindowStartNs == 0) {
+            mWindowStartNs = nowNs;
+        }
+        if (nowNs - mLastDeliveryNs > DELIVERY_GAP_NS) {
+            mWindowDeliveries++;
+        }
+        mLastDeliveryNs = nowNs;
+        mWindowSamples++;
+
+        final long elapsedNs = nowNs - mWindowStartNs;
+        if (elapsedNs >= WAKEUP_LOG_INTERVAL_NS) {
+            mDeliveriesPerMinute =
+                    mWindowDeliveries * (float) WAKEUP_LOG_INTERVAL_NS / elapsedNs;
+            Log.i(TAG, "Accelerometer wakeups per minute: " + mDeliveriesPerMinute
+                    + " (" + mWindowSamples + " samples, batch latency "
+                    + mBatchLatencyUs + "us)");
+            mWindowStartNs = nowNs;
+            mWindowDeliveries = 0;
+            mWindowSamples = 0;
         }
     }
 
-    private void launchWakeOrPulse() {
-        boolean isRaiseToWake = Utils.isRaiseToWakeEnabled(mContext);
-        if (isRaiseToWake) {
+    private void launchWakeOrPulse(long timestampNs) {
+        // Only rate limit detected pickups, the accelerometer path needs
+        // every sample to follow the movement
+        if (!mRateLimiter.tryAcquire(timestampNs)) {
+            return;
+        }
+        final DozeGestureSettings settings = mService.getSettings();
+        if (settings.raiseToWake) {
             mWakeLock.acquire(mWakelockTimeoutMs);
             mPowerManager.wakeUp(SystemClock.uptimeMillis(),
                 PowerManager.WAKE_REASON_GESTURE, TAG);
         } else {
             Utils.launchDozePulse(mContext);
-            doHapticFeedback();
+            doHapticFeedback(settings);
         }
     }
 
@@ -163,29 +208,36 @@ public class PickupSensor implements SensorEventListener {
 
     protected void enable() {
         if (DEBUG) Log.d(TAG, "Enabling");
-        submit(() -> {
-            mSensorManager.registerListener(this, mSensorPickup,
-                    mIsCustomPickupSensor ? SensorManager.SENSOR_DELAY_NORMAL
-                    : SensorManager.SENSOR_STATUS_ACCURACY_HIGH);
-        });
+        if (mDetector != null) {
+            // Samples from before the sensor was off don't describe the
+            // current position
+            mDispatcher.post(() -> {
+                mDetector.reset();
+                mWindowStartNs = 0;
+                mWindowDeliveries = 0;
+                mWindowSamples = 0;
+            });
+        }
+        mDispatcher.register(this, mSensorPickup, mSamplingPeriodUs, mBatchLatencyUs);
     }
 
     protected void disable() {
         if (DEBUG) Log.d(TAG, "Disabling");
-        submit(() -> {
-            mSensorManager.unregisterListener(this, mSensorPickup);
-        });
+        mDispatcher.unregister(this, mSensorPickup);
     }
 
-    private void doHapticFeedback() {
-        if (mVibrator == null) {
-            return;
+    void dump(PrintWriter pw) {
+        mRateLimiter.dump(pw);
+        if (mDetector != null) {
+            pw.println("  Accelerometer: samplingPeriod=" + mSamplingPeriodUs
+                    + "us batchLatency=" + mBatchLatencyUs + "us wakeupsPerMinute="
+                    + mDeliveriesPerMinute);
         }
-        int val = Settings.Secure.getIntForUser(mContext.getContentResolver(),
-                Settings.Secure.DOZE_GESTURE_VIBRATE, 0, UserHandle.USER_CURRENT);
-        if (val > 0) {
-            mVibrator.vibrate(VibrationEffect.createOneShot(val,
-                    VibrationEffect.DEFAULT_AMPLITUDE));
+    }
+
+    private void doHapticFeedback(DozeGestureSettings settings) {
+        if (mVibrator != null && settings.vibration != null) {
+            mVibrator.vibrate(settings.vibration);
         }
     }
 }
@@ -25,17 +25,13 @@ import android.hardware.SensorManager;
 import android.os.PowerManager;
 import android.os.PowerManager.WakeLock;
 import android.os.SystemClock;
-import android.os.UserHandle;
-import android.os.VibrationEffect;
 import android.os.Vibrator;
-import android.provider.Settings;
 import android.util.Log;
 
 import com.android.settings.R;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
 
 public class ProximitySensor implements SensorEventListener {
 
@@ -45,7 +41,8 @@ public class ProximitySensor implements SensorEventListener {
     private SensorManager mSensorManager;
     private Sensor mSensor;
     private Context mContext;
-    private ExecutorService mExecutorService;
+    private DozeService mService;
+    private DozeSensorDispatcher mDispatcher;
     private PowerManager mPowerManager;
     private WakeLock mWakeLock;
 
@@ -54,12 +51,14 @@ public class ProximitySensor implements SensorEventListener {
     private int mWakelockTimeoutMs;
     private int mHandWaveMaxDeltaNs;
     private int mPocketMinDeltaNs;
+    private final DozeRateLimiter mRateLimiter;
 
     private Vibrator mVibrator;
 
-    public ProximitySensor(Context context) {
-        mContext = context;
-        final Resources res = context.getResources();
+    public ProximitySensor(DozeService service) {
+        mContext = service;
+        mService = service;
+        final Resources res = mContext.getResources();
         mSensorManager = mContext.getSystemService(SensorManager.class);
         final boolean wakeup =
             res.getBoolean(com.android.internal.R.bool.config_deviceHaveWakeUpProximity);
@@ -70,6 +69,9 @@ public class ProximitySensor implements SensorEventListener {
             res.getInteger(R.integer.config_dozePulseProximity_HandwaveMaxDeltaNs);
         mPocketMinDeltaNs =
             res.getInteger(R.integer.config_dozePulseProximity_PocketMinDeltaNs);
+        mRateLimiter = new DozeRateLimiter(TAG,
+                res.getInteger(R.integer.config_dozePulseProximity_MinPulseIntervalMs),
+                TimeUnit.MILLISECONDS);
         if (DEBUG) {
             Log.d(TAG, "WakelockTimeoutMs: " + String.valueOf(mWakelockTimeoutMs));
             Log.d(TAG, "HandwaveMaxDeltaNs: " + String.valueOf(mHandWaveMaxDeltaNs));
@@ -77,30 +79,26 @@ public class ProximitySensor implements SensorEventListener {
         }
         mPowerManager = (PowerManager) mContext.getSystemService(Context.POWER_SERVICE);
         mWakeLock = mPowerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, TAG);
-        mExecutorService = Executors.newSingleThreadExecutor();
+        mDispatcher = service.getSensorDispatcher();
         mVibrator = (Vibrator) mContext.getSystemService(Context.VIBRATOR_SERVICE);
         if (mVibrator != null && !mVibrator.hasVibrator()) {
             mVibrator = null;
         }
     }
 
-    private Future<?> submit(Runnable runnable) {
-        return mExecutorService.submit(runnable);
-    }
-
     @Override
     public void onSensorChanged(SensorEvent event) {
-        boolean isRaiseToWake = Utils.isRaiseToWakeEnabled(mContext);
+        final DozeGestureSettings settings = mService.getSettings();
         boolean isNear = event.values[0] < mSensor.getMaximumRange();
         if (mSawNear && !isNear) {
-            if (shouldPulse(event.timestamp)) {
-                if (isRaiseToWake) {
+            if (shouldPulse(settings, event.timestamp) && mRateLimiter.tryAcquire(event.timestamp)) {
+                if (settings.raiseToWake) {
                     mWakeLock.acquire(mWakelockTimeoutMs);
                     mPowerManager.wakeUp(SystemClock.uptimeMillis(),
                         PowerManager.WAKE_REASON_GESTURE, TAG);
                 } else {
                     Utils.launchDozePulse(mContext);
-                    doHapticFeedback();
+                    doHapticFeedback(settings);
                 }
             }
         } else {
@@ -109,15 +107,15 @@ public class ProximitySensor implements SensorEventListener {
         mSawNear = isNear;
     }
 
-    private boolean shouldPulse(long timestamp) {
+    private boolean shouldPulse(DozeGestureSettings settings, long timestamp) {
         long delta = timestamp - mInPocketTime;
         boolean shouldPulse = false;
 
         if (delta < mHandWaveMaxDeltaNs)
-            shouldPulse = Utils.handwaveGestureEnabled(mContext);
+            shouldPulse = settings.handwaveEnabled;
 
         if (!shouldPulse && delta >= mPocketMinDeltaNs)
-            shouldPulse = Utils.pocketGestureEnabled(mContext);
+            shouldPulse = settings.pocketEnabled;
 
         return shouldPulse;
     }
@@ -129,28 +127,21 @@ public class ProximitySensor implements SensorEventListener {
 
     protected void enable() {
         if (DEBUG) Log.d(TAG, "Enabling");
-        submit(() -> {
-            mSensorManager.registerListener(this, mSensor,
-                    SensorManager.SENSOR_DELAY_NORMAL);
-        });
+        mDispatcher.register(this, mSensor, SensorManager.SENSOR_DELAY_NORMAL, 0);
     }
 
     protected void disable() {
         if (DEBUG) Log.d(TAG, "Disabling");
-        submit(() -> {
-            mSensorManager.unregisterListener(this, mSensor);
-        });
+        mDispatcher.unregister(this, mSensor);
     }
 
-    private void doHapticFeedback() {
-        if (mVibrator == null) {
-            return;
-        }
-        int val = Settings.Secure.getIntForUser(mContext.getContentResolver(),
-                Settings.Secure.DOZE_GESTURE_VIBRATE, 0, UserHandle.USER_CURRENT);
-        if (val > 0) {
-            mVibrator.vibrate(VibrationEffect.createOneShot(val,
-                    VibrationEffect.DEFAULT_AMPLITUDE));
+    void dump(PrintWriter pw) {
+        mRateLimiter.dump(pw);
+    }
+
+    private void doHapticFeedback(DozeGestureSettings settings) {
+        if (mVibrator != null && settings.vibration != null) {
+            mVibrator.vibrate(settings.vibration);
         }
     }
 }
@@ -25,17 +25,13 @@ import android.hardware.SensorManager;
 import android.os.PowerManager;
 import android.os.PowerManager.WakeLock;
 import android.os.SystemClock;
-import android.os.UserHandle;
-import android.os.VibrationEffect;
 import android.os.Vibrator;
-import android.provider.Settings;
 import android.util.Log;
 
 import com.android.settings.R;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
 
 public class TiltSensor implements SensorEventListener {
 
@@ -45,20 +41,22 @@ public class TiltSensor implements SensorEventListener {
     private SensorManager mSensorManager;
     private Sensor mSensor;
     private Context mContext;
-    private ExecutorService mExecutorService;
+    private DozeService mService;
+    private DozeSensorDispatcher mDispatcher;
     private PowerManager mPowerManager;
     private WakeLock mWakeLock;
 
-    private long mEntryTimestamp = 0;
+    private final DozeRateLimiter mRateLimiter;
     private int mBatchLatencyInMs;
     private int mMinPulseIntervalMs;
     private int mWakelockTimeoutMs;
 
     private Vibrator mVibrator;
 
-    public TiltSensor(Context context) {
-        mContext = context;
-        final Resources res = context.getResources();
+    public TiltSensor(DozeService service) {
+        mContext = service;
+        mService = service;
+        final Resources res = mContext.getResources();
         mBatchLatencyInMs =
             res.getInteger(R.integer.config_dozePulseTilt_BatchLatencyInMs);
         mMinPulseIntervalMs =
@@ -70,42 +68,32 @@ public class TiltSensor implements SensorEventListener {
             Log.d(TAG, "MinPulseIntervalMs: " + String.valueOf(mMinPulseIntervalMs));
             Log.d(TAG, "WakelockTimeoutMs: " + String.valueOf(mWakelockTimeoutMs));
         }
+        mRateLimiter = new DozeRateLimiter(TAG, mMinPulseIntervalMs, TimeUnit.MILLISECONDS);
         mSensorManager = mContext.getSystemService(SensorManager.class);
         mSensor = mSensorManager.getDefaultSensor(Sensor.TYPE_TILT_DETECTOR);
         mPowerManager = (PowerManager) mContext.getSystemService(Context.POWER_SERVICE);
         mWakeLock = mPowerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, TAG);
-        mExecutorService = Executors.newSingleThreadExecutor();
+        mDispatcher = service.getSensorDispatcher();
         mVibrator = (Vibrator) mContext.getSystemService(Context.VIBRATOR_SERVICE);
         if (mVibrator != null && !mVibrator.hasVibrator()) {
             mVibrator = null;
         }
     }
 
-    private Future<?> submit(Runnable runnable) {
-        return mExecutorService.submit(runnable);
-    }
-
     @Override
     public void onSensorChanged(SensorEvent event) {
-        boolean isRaiseToWake = Utils.isRaiseToWakeEnabled(mContext);
+        final DozeGestureSettings settings = mService.getSettings();
 
         if (DEBUG) Log.d(TAG, "Got sensor event: " + event.values[0]);
 
-        long delta = event.timestamp - mEntryTimestamp;
-        if (delta < mMinPulseIntervalMs) {
-            return;
-        } else {
-            mEntryTimestamp = event.timestamp;
-        }
-
-        if (event.values[0] == 1) {
-            if (isRaiseToWake) {
+        if (event.values[0] == 1 && mRateLimiter.tryAcquire(event.timestamp)) {
+            if (settings.raiseToWake) {
                 mWakeLock.acquire(mWakelockTimeoutMs);
                 mPowerManager.wakeUp(SystemClock.uptimeMillis(),
                     PowerManager.WAKE_REASON_GESTURE, TAG);
             } else {
                 Utils.launchDozePulse(mContext);
-                doHapticFeedback();
+                doHapticFeedback(settings);
             }
         }
     }
@@ -117,29 +105,22 @@ public class TiltSensor implements SensorEventListener {
 
     protected void enable() {
         if (DEBUG) Log.d(TAG, "Enabling");
-        submit(() -> {
-            mSensorManager.registerListener(this, mSensor,
-                    SensorManager.SENSOR_DELAY_NORMAL,
-                    mBatchLatencyInMs * 1000);
-        });
+        mDispatcher.register(this, mSensor, SensorManager.SENSOR_DELAY_NORMAL,
+                mBatchLatencyInMs * 1000);
     }
 
     protected void disable() {
         if (DEBUG) Log.d(TAG, "Disabling");
-        submit(() -> {
-            mSensorManager.unregisterListener(this, mSensor);
-        });
+        mDispatcher.unregister(this, mSensor);
     }
 
-    private void doHapticFeedback() {
-        if (mVibrator == null) {
-            return;
-        }
-        int val = Settings.Secure.getIntForUser(mContext.getContentResolver(),
-                Settings.Secure.DOZE_GESTURE_VIBRATE, 0, UserHandle.USER_CURRENT);
-        if (val > 0) {
-            mVibrator.vibrate(VibrationEffect.createOneShot(val,
-                    VibrationEffect.DEFAULT_AMPLITUDE));
+    void dump(PrintWriter pw) {
+        mRateLimiter.dump(pw);
+    }
+
+    private void doHapticFeedback(DozeGestureSettings settings) {
+        if (mVibrator != null && settings.vibration != null) {
+            mVibrator.vibrate(settings.vibration);
         }
     }
 }
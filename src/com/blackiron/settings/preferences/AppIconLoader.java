@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2016-2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackiron.settings.preferences;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import androidx.preference.Preference;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+/**
+ * Loads app icons for lists off the main thread. Icons are decoded at list
+ * icon size and kept in an LRU bounded by bytes, so memory stays the same no
+ * matter how many apps are installed. Targets show a placeholder until their
+ * icon is ready.
+ *
+ * <p>All public methods must be called on the main thread.
+ */
+public final class AppIconLoader {
+    private static final String TAG = "AppIconLoader";
+
+    private static AppIconLoader sInstance;
+
+    /**
+     * Decodes an icon on the loader thread, for lists that have a cheaper
+     * source than PackageManager.
+     */
+    public interface Source {
+        Bitmap decode();
+    }
+
+    private interface Target {
+        void setIcon(String packageName, Drawable icon);
+    }
+
+    private final PackageManager mPm;
+    private final Resources mResources;
+    private final int mIconSize;
+    private final Drawable mPlaceholder;
+    private final LruCache<String, Bitmap> mCache;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Handler mLoader;
+    // Views and the package they should show, so a recycled view doesn't get
+    // the icon of the row it was bound to before
+    private final WeakHashMap<ImageView, String> mBoundViews = new WeakHashMap<>();
+    // Targets waiting for a package whose icon is being decoded
+    private final HashMap<String, ArrayList<Target>> mPending = new HashMap<>();
+
+    private AppIconLoader(Context context) {
+        mPm = context.getPackageManager();
+        mResources = context.getResources();
+        mIconSize = mResources.getDimensionPixelSize(android.R.dimen.app_icon_size);
+        mPlaceholder = mPm.getDefaultActivityIcon();
+        final int maxBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 32,
+                Integer.MAX_VALUE);
+        mCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+        HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mLoader = new Handler(thread.getLooper());
+    }
+
+    public static AppIconLoader getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new AppIconLoader(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    public void bind(ImageView view, String packageName) {
+        bind(view, packageName, null);
+    }
+
+    public void bind(ImageView view, String packageName, Source source) {
+        mBoundViews.put(view, packageName);
+        load(packageName, source, (name, icon) -> {
+            if (name.equals(mBoundViews.get(view))) {
+                view.setImageDrawable(icon);
+            }
+        });
+    }
+
+    public void bind(Preference preference, String packageName) {
+        load(packageName, null, (name, icon) -> preference.setIcon(icon));
+    }
+
+    /**
+     * Drops the cached icon of a package, for when it was updated.
+     */
+    public void invalidate(String packageName) {
+        mCache.remove(packageName);
+    }
+
+    private void load(String packageName, Source source, Target target) {
+        Bitmap cached = mCache.get(packageName);
+        if (cached != null) {
+            target.setIcon(packageName, new BitmapDrawable(mResources, cached));
+            return;
+        }
+        target.setIcon(packageName, newPlaceholder());
+        ArrayList<Target> targets = mPending.get(packageName);
+        if (targets != null) {
+            targets.add(target);
+            return;
+        }
+        targets = new ArrayList<>();
+        targets.add(target);
+        mPending.put(packageName, targets);
+        mLoader.post(() -> {
+            final Bitmap icon = decode(packageName, source);
+            mMainHandler.post(() -> deliver(packageName, icon));
+        });
+    }
+
+    /**
+     * Returns a placeholder of its own for one view, a drawable keeps its
+     * bounds, state and callback per instance.
+     */
+    private Drawable newPlaceholder() {
+        final Drawable.ConstantState state = mPlaceholder.getConstantState();
+        return state != null ? state.newDrawable(mResources) : mPm.getDefaultActivityIcon();
+    }
+
+    private void deliver(String packageName, Bitmap icon) {
+        final ArrayList<Target> targets = mPending.remove(packageName);
+        if (icon == null || targets == null) {
+            return;
+        }
+        mCache.put(packageName, icon);
+        for (Target target : targets) {
+            target.setIcon(packageName, new BitmapDrawable(mResources, icon));
+        }
+    }
+
+    private Bitmap decode(String packageName, Source source) {
+        if (source != null) {
+            Bitmap icon = source.decode();
+            if (icon != null) {
+                return icon;
+            }
+        }
+        final Drawable drawable;
+        try {
+            drawable = mPm.getApplicationIcon(packageName);
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+        Bitmap icon = Bitmap.createBitmap(mIconSize, mIconSize, Bitmap.Config.ARGB_8888);
+        drawable.setBounds(0, 0, mIconSize, mIconSize);
+        drawable.draw(new Canvas(icon));
+        return icon;
+    }
+}
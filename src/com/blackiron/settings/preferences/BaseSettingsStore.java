@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2016-2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackiron.settings.preferences;
+
+import android.content.ContentResolver;
+import android.preference.PreferenceDataStore;
+import android.os.UserHandle;
+
+/**
+ * Common implementation of the settings backed preference stores. Reads are
+ * served from {@link SettingsCache} and values are parsed the same way the
+ * Settings.*.get*ForUser helpers do.
+ */
+public abstract class BaseSettingsStore extends androidx.preference.PreferenceDataStore
+        implements PreferenceDataStore {
+
+    private final ContentResolver mContentResolver;
+    private final SettingsNamespace mNamespace;
+    private final int mUserId;
+    private boolean mWriteBehind = true;
+
+    protected BaseSettingsStore(ContentResolver contentResolver, SettingsNamespace namespace) {
+        this(contentResolver, namespace, UserHandle.USER_CURRENT);
+    }
+
+    protected BaseSettingsStore(ContentResolver contentResolver, SettingsNamespace namespace,
+            int userId) {
+        mContentResolver = contentResolver;
+        mNamespace = namespace;
+        mUserId = userId;
+    }
+
+    public SettingsNamespace getNamespace() {
+        return mNamespace;
+    }
+
+    /**
+     * When enabled (the default) puts are queued on {@link SettingsWriter} and
+     * return immediately instead of waiting for the provider.
+     */
+    public void setWriteBehind(boolean writeBehind) {
+        mWriteBehind = writeBehind;
+    }
+
+    public boolean isWriteBehind() {
+        return mWriteBehind;
+    }
+
+    /**
+     * Waits until all queued writes have reached the provider.
+     */
+    public void flush() {
+        SettingsWriter.getInstance().flush();
+    }
+
+    public boolean getBoolean(String key, boolean defValue) {
+        return getInt(key, defValue ? 1 : 0) != 0;
+    }
+
+    public float getFloat(String key, float defValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defValue;
+        }
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            return defValue;
+        }
+    }
+
+    public int getInt(String key, int defValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defValue;
+        }
+    }
+
+    public long getLong(String key, long defValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return defValue;
+        }
+    }
+
+    public String getString(String key, String defValue) {
+        String result = SettingsCache.getInstance().getString(mContentResolver, mNamespace,
+                key, mUserId);
+        return result == null ? defValue : result;
+    }
+
+    public void putBoolean(String key, boolean value) {
+        putInt(key, value ? 1 : 0);
+    }
+
+    public void putFloat(String key, float value) {
+        putString(key, Float.toString(value));
+    }
+
+    public void putInt(String key, int value) {
+        putString(key, Integer.toString(value));
+    }
+
+    public void putLong(String key, long value) {
+        putString(key, Long.toString(value));
+    }
+
+    public void putString(String key, String value) {
+        if (mWriteBehind) {
+            SettingsWriter.getInstance().enqueue(mContentResolver, mNamespace, key, value,
+                    mUserId);
+        } else {
+            SettingsCache.getInstance().putString(mContentResolver, mNamespace, key, value,
+                    mUserId);
+        }
+    }
+}
@@ -18,10 +18,12 @@ package com.blackiron.settings.preferences;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.PorterDuff;
+import android.os.SystemClock;
 import androidx.core.content.res.TypedArrayUtils;
 import androidx.preference.*;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewParent;
@@ -42,6 +44,9 @@ public class CustomSeekBarPreference extends Preference implements SeekBar.OnSee
     protected boolean mShowSign = false;
     protected String mUnits = "";
     protected boolean mContinuousUpdates = false;
+    // Minimum time between writes while dragging with continuous updates,
+    // 0 writes at most once per frame and a negative value disables throttling.
+    protected int mPersistInterval = 0;
 
     protected int mMinValue = 0;
     protected int mMaxValue = 100;
@@ -61,6 +66,18 @@ public class CustomSeekBarPreference extends Preference implements SeekBar.OnSee
     protected boolean mTrackingTouch = false;
     protected int mTrackingValue;
 
+    private boolean mPersistScheduled = false;
+    private long mLastPersistTime;
+    private int mCommittedValue;
+    private int mDroppedWrites;
+    private final Choreographer.FrameCallback mPersistCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mPersistScheduled = false;
+            commitThrottledValue();
+        }
+    };
+
     public CustomSeekBarPreference(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
         super(context, attrs, defStyleAttr, defStyleRes);
 
@@ -71,6 +88,7 @@ public class CustomSeekBarPreference extends Preference implements SeekBar.OnSee
             if (units != null)
                 mUnits = " " + units;
             mContinuousUpdates = a.getBoolean(R.styleable.CustomSeekBarPreference_continuousUpdates, mContinuousUpdates);
+            mPersistInterval = a.getInt(R.styleable.CustomSeekBarPreference_persistInterval, mPersistInterval);
             String defaultValueText = a.getString(R.styleable.CustomSeekBarPreference_defaultValueText);
             mDefaultValueTextExists = defaultValueText != null && !defaultValueText.isEmpty();
             if (mDefaultValueTextExists) {
@@ -280,6 +298,14 @@ public class CustomSeekBarPreference extends Preference implements SeekBar.OnSee
         if (mTrackingTouch && !mContinuousUpdates) {
             mTrackingValue = newValue;
             updateValueViews();
+        } else if (mTrackingTouch && isPersistThrottled()) {
+            // only the text follows every tick, the store gets the latest value
+            // once per frame (or interval) and once more when the drag ends
+            if (mValue != newValue) {
+                mValue = newValue;
+                updateValueViews();
+                schedulePersist();
+            }
         } else if (mValue != newValue) {
             // change rejected, revert to the previous value
             if (!callChangeListener(newValue)) {
@@ -298,17 +324,68 @@ public class CustomSeekBarPreference extends Preference implements SeekBar.OnSee
     @Override
     public void onStartTrackingTouch(SeekBar seekBar) {
         mTrackingValue = mValue;
+        mCommittedValue = mValue;
         mTrackingTouch = true;
     }
 
     @Override
     public void onStopTrackingTouch(SeekBar seekBar) {
         mTrackingTouch = false;
-        if (!mContinuousUpdates)
+        if (!mContinuousUpdates) {
             onProgressChanged(mSeekBar, getSeekValue(mTrackingValue), false);
+        } else if (isPersistThrottled()) {
+            if (mPersistScheduled) {
+                Choreographer.getInstance().removeFrameCallback(mPersistCallback);
+                mPersistScheduled = false;
+            }
+            commitThrottledValue();
+        }
         notifyChanged();
     }
 
+    protected boolean isPersistThrottled() {
+        return mContinuousUpdates && mPersistInterval >= 0;
+    }
+
+    private void schedulePersist() {
+        if (mPersistScheduled) {
+            // the queued write will pick up this value instead of the previous one
+            mDroppedWrites++;
+            return;
+        }
+        mPersistScheduled = true;
+        long delay = mLastPersistTime + mPersistInterval - SystemClock.uptimeMillis();
+        if (delay > 0) {
+            Choreographer.getInstance().postFrameCallbackDelayed(mPersistCallback, delay);
+        } else {
+            Choreographer.getInstance().postFrameCallback(mPersistCallback);
+        }
+    }
+
+    private void commitThrottledValue() {
+        if (mValue == mCommittedValue)
+            return;
+        mLastPersistTime = SystemClock.uptimeMillis();
+        // change rejected, revert to the last stored value
+        if (!callChangeListener(mValue)) {
+            mValue = mCommittedValue;
+            mSeekBar.setProgress(getSeekValue(mValue));
+            updateValueViews();
+            return;
+        }
+        changeValue(mValue);
+        persistInt(mValue);
+        mCommittedValue = mValue;
+    }
+
+    /**
+     * Number of intermediate values that were never written to the store
+     * because a newer one replaced them before the next throttled write.
+     */
+    public int getDroppedWriteCount() {
+        return mDroppedWrites;
+    }
+
     @Override
     protected void onSetInitialValue(boolean restoreValue, Object defaultValue) {
         if (restoreValue)
@@ -343,6 +420,10 @@ public class CustomSeekBarPreference extends Preference implements SeekBar.OnSee
         }
     }
 
+    public void setPersistInterval(int intervalMs) {
+        mPersistInterval = intervalMs;
+    }
+
     public void setValue(int newValue) {
         mValue = getLimitedValue(newValue);
         if (mSeekBar != null) mSeekBar.setProgress(getSeekValue(mValue));
@@ -27,17 +27,17 @@ public class GlobalSettingListPreference extends ListPreference {
 
     public GlobalSettingListPreference(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
-        setPreferenceDataStore(new GlobalSettingsStore(context.getContentResolver()));
+        setPreferenceDataStore(SettingsStores.get(context, SettingsNamespace.GLOBAL));
     }
 
     public GlobalSettingListPreference(Context context, AttributeSet attrs) {
         super(context, attrs);
-        setPreferenceDataStore(new GlobalSettingsStore(context.getContentResolver()));
+        setPreferenceDataStore(SettingsStores.get(context, SettingsNamespace.GLOBAL));
     }
 
     public GlobalSettingListPreference(Context context) {
         super(context);
-        setPreferenceDataStore(new GlobalSettingsStore(context.getContentResolver()));
+        setPreferenceDataStore(SettingsStores.get(context, SettingsNamespace.GLOBAL));
     }
 
     @Override
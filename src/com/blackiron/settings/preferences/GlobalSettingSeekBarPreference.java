@@ -22,16 +22,16 @@ public class GlobalSettingSeekBarPreference extends CustomSeekBarPreference {
 
     public GlobalSettingSeekBarPreference(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
-        setPreferenceDataStore(new GlobalSettingsStore(context.getContentResolver()));
+        setPreferenceDataStore(SettingsStores.get(context, SettingsNamespace.GLOBAL));
     }
 
     public GlobalSettingSeekBarPreference(Context context, AttributeSet attrs) {
         super(context, attrs);
-        setPreferenceDataStore(new GlobalSettingsStore(context.getContentResolver()));
+        setPreferenceDataStore(SettingsStores.get(context, SettingsNamespace.GLOBAL));
     }
 
     public GlobalSettingSeekBarPreference(Context context) {
         super(context, null);
-        setPreferenceDataStore(new GlobalSettingsStore(context.getContentResolver()));
+        setPreferenceDataStore(SettingsStores.get(context, SettingsNamespace.GLOBAL));
     }
 }
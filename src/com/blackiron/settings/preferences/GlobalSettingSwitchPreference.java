@@ -16,39 +16,41 @@
 package com.blackiron.settings.preferences;
 
 import android.content.Context;
-import android.provider.Settings;
-import android.os.UserHandle;
 import android.util.AttributeSet;
 
 import lineageos.preference.SelfRemovingSwitchPreference;
 
 public class GlobalSettingSwitchPreference extends SelfRemovingSwitchPreference {
 
+    private final BaseSettingsStore mStore;
+
     public GlobalSettingSwitchPreference(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
+        mStore = SettingsStores.get(context, SettingsNamespace.GLOBAL);
     }
 
     public GlobalSettingSwitchPreference(Context context, AttributeSet attrs) {
         super(context, attrs);
+        mStore = SettingsStores.get(context, SettingsNamespace.GLOBAL);
     }
 
     public GlobalSettingSwitchPreference(Context context) {
         super(context);
+        mStore = SettingsStores.get(context, SettingsNamespace.GLOBAL);
     }
 
     @Override
     protected boolean isPersisted() {
-        return Settings.Global.getString(getContext().getContentResolver(), getKey()) != null;
+        return mStore.getString(getKey(), null) != null;
     }
 
     @Override
     protected void putBoolean(String key, boolean value) {
-        Settings.Global.putInt(getContext().getContentResolver(), key, value ? 1 : 0);
+        mStore.putBoolean(key, value);
     }
 
     @Override
     protected boolean getBoolean(String key, boolean defaultValue) {
-        return Settings.Global.getInt(getContext().getContentResolver(),
-                key, defaultValue ? 1 : 0) != 0;
+        return mStore.getBoolean(key, defaultValue);
     }
 }
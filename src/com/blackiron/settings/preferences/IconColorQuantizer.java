@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2016-2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackiron.settings.preferences;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+/**
+ * Finds the dominant color of an app icon, as a suggestion for its
+ * notification light. The icon is scaled down to a small fixed size and its
+ * pixels are counted into 4 bit per channel buckets; the fullest bucket of
+ * saturated pixels wins, or of any opaque pixels for a gray icon. The result
+ * is brightened to full value since a dark LED color is barely visible.
+ *
+ * <p>All buffers are reused, so one instance must not be shared between
+ * threads.
+ */
+final class IconColorQuantizer {
+    /** Returned when the icon has no opaque pixels. */
+    static final int NO_COLOR = 0;
+
+    private static final int SAMPLE_SIZE = 16;
+    private static final int BUCKETS = 1 << 12;
+    private static final int MIN_ALPHA = 0x80;
+    // Minimum spread between the strongest and weakest channel, roughly
+    // a saturation threshold that needs no conversion
+    private static final int MIN_CHROMA = 0x30;
+    private static final int MIN_BRIGHTNESS = 0x30;
+
+    private final int[] mPixels = new int[SAMPLE_SIZE * SAMPLE_SIZE];
+    private final int[] mCounts = new int[BUCKETS];
+    private final int[] mRed = new int[BUCKETS];
+    private final int[] mGreen = new int[BUCKETS];
+    private final int[] mBlue = new int[BUCKETS];
+    private final float[] mHsv = new float[3];
+
+    int getDominantColor(Bitmap icon) {
+        final Bitmap sample = Bitmap.createScaledBitmap(icon, SAMPLE_SIZE, SAMPLE_SIZE, true);
+        sample.getPixels(mPixels, 0, SAMPLE_SIZE, 0, 0, SAMPLE_SIZE, SAMPLE_SIZE);
+        if (sample != icon) {
+            sample.recycle();
+        }
+
+        int best = findBestBucket(true);
+        if (best < 0) {
+            best = findBestBucket(false);
+        }
+        if (best < 0) {
+            return NO_COLOR;
+        }
+        final int count = mCounts[best];
+        final int color = Color.rgb(mRed[best] / count, mGreen[best] / count,
+                mBlue[best] / count);
+        clearBuckets();
+
+        Color.colorToHSV(color, mHsv);
+        mHsv[2] = 1f;
+        return Color.HSVToColor(mHsv);
+    }
+
+    /**
+     * Counts the opaque pixels, only saturated ones if {@code colorful}, and
+     * returns the fullest bucket or -1 if none was counted.
+     */
+    private int findBestBucket(boolean colorful) {
+        int best = -1;
+        for (int pixel : mPixels) {
+            if ((pixel >>> 24) < MIN_ALPHA) {
+                continue;
+            }
+            final int r = (pixel >> 16) & 0xff;
+            final int g = (pixel >> 8) & 0xff;
+            final int b = pixel & 0xff;
+            if (colorful) {
+                final int max = Math.max(r, Math.max(g, b));
+                final int min = Math.min(r, Math.min(g, b));
+                if (max - min < MIN_CHROMA || max < MIN_BRIGHTNESS) {
+                    continue;
+                }
+            }
+            final int bucket = ((r & 0xf0) << 4) | (g & 0xf0) | (b >> 4);
+            mCounts[bucket]++;
+            mRed[bucket] += r;
+            mGreen[bucket] += g;
+            mBlue[bucket] += b;
+            if (best < 0 || mCounts[bucket] > mCounts[best]) {
+                best = bucket;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Resets only the buckets the current pixels touched.
+     */
+    private void clearBuckets() {
+        for (int pixel : mPixels) {
+            final int bucket = ((pixel >> 12) & 0xf00) | ((pixel >> 8) & 0xf0)
+                    | ((pixel >> 4) & 0xf);
+            mCounts[bucket] = 0;
+            mRed[bucket] = 0;
+            mGreen[bucket] = 0;
+            mBlue[bucket] = 0;
+        }
+    }
+}
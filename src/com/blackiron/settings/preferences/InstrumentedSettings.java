@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2016-2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackiron.settings.preferences;
+
+import android.content.ContentResolver;
+import android.os.SystemClock;
+import android.os.UserHandle;
+
+/**
+ * Drop-in replacement for the typed Settings.System/Secure/Global and
+ * LineageSettings getters and setters that fragments call directly. Reads
+ * still go straight to the provider, they are only timed and recorded in
+ * {@link SettingsStats} so they show up next to the ones made through
+ * {@link SettingsCache}. Writes go through the cache, so the bucket of the
+ * written key is updated right away instead of serving the old value until
+ * the observer catches up.
+ *
+ * <p>The variants without a user id act on the calling user, like the
+ * framework ones.
+ */
+public final class InstrumentedSettings {
+
+    private InstrumentedSettings() {
+    }
+
+    public static String getString(ContentResolver resolver, SettingsNamespace namespace,
+            String key) {
+        return getStringForUser(resolver, namespace, key, UserHandle.myUserId());
+    }
+
+    public static String getStringForUser(ContentResolver resolver, SettingsNamespace namespace,
+            String key, int userId) {
+        final long start = SystemClock.elapsedRealtimeNanos();
+        try {
+            return namespace.getStringForUser(resolver, key, userId);
+        } finally {
+            SettingsStats.recordRead(namespace, key, SystemClock.elapsedRealtimeNanos() - start);
+        }
+    }
+
+    public static boolean putString(ContentResolver resolver, SettingsNamespace namespace,
+            String key, String value) {
+        return putStringForUser(resolver, namespace, key, value, UserHandle.myUserId());
+    }
+
+    public static boolean putStringForUser(ContentResolver resolver, SettingsNamespace namespace,
+            String key, String value, int userId) {
+        return SettingsCache.getInstance().putString(resolver, namespace, key, value, userId);
+    }
+
+    public static int getInt(ContentResolver resolver, SettingsNamespace namespace, String key,
+            int def) {
+        return getIntForUser(resolver, namespace, key, def, UserHandle.myUserId());
+    }
+
+    public static int getIntForUser(ContentResolver resolver, SettingsNamespace namespace,
+            String key, int def, int userId) {
+        final String value = getStringForUser(resolver, namespace, key, userId);
+        if (value == null) {
+            return def;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    public static boolean putInt(ContentResolver resolver, SettingsNamespace namespace,
+            String key, int value) {
+        return putIntForUser(resolver, namespace, key, value, UserHandle.myUserId());
+    }
+
+    public static boolean putIntForUser(ContentResolver resolver, SettingsNamespace namespace,
+            String key, int value, int userId) {
+        return putStringForUser(resolver, namespace, key, Integer.toString(value), userId);
+    }
+
+    public static float getFloat(ContentResolver resolver, SettingsNamespace namespace,
+            String key, float def) {
+        final String value = getString(resolver, namespace, key);
+        if (value == null) {
+            return def;
+        }
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    public static boolean putFloat(ContentResolver resolver, SettingsNamespace namespace,
+            String key, float value) {
+        return putString(resolver, namespace, key, Float.toString(value));
+    }
+}
@@ -22,16 +22,16 @@ public class LineageSecureSettingSeekBarPreference extends CustomSeekBarPreferen
 
     public LineageSecureSettingSeekBarPreference(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
-        setPreferenceDataStore(new LineageSecureSettingsStore(context.getContentResolver()));
+        setPreferenceDataStore(SettingsStores.get(context, SettingsNamespace.LINEAGE_SECURE));
     }
 
     public LineageSecureSettingSeekBarPreference(Context context, AttributeSet attrs) {
         super(context, attrs);
-        setPreferenceDataStore(new LineageSecureSettingsStore(context.getContentResolver()));
+        setPreferenceDataStore(SettingsStores.get(context, SettingsNamespace.LINEAGE_SECURE));
     }
 
     public LineageSecureSettingSeekBarPreference(Context context) {
         super(context, null);
-        setPreferenceDataStore(new LineageSecureSettingsStore(context.getContentResolver()));
+        setPreferenceDataStore(SettingsStores.get(context, SettingsNamespace.LINEAGE_SECURE));
     }
 }
@@ -22,16 +22,16 @@ public class LineageSystemSettingSeekBarPreference extends CustomSeekBarPreferen
 
     public LineageSystemSettingSeekBarPreference(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
-        setPreferenceDataStore(new LineageSystemSettingsStore(context.getContentResolver()));
+        setPreferenceDataStore(SettingsStores.get(context, SettingsNamespace.LINEAGE_SYSTEM));
     }
 
     public LineageSystemSettingSeekBarPreference(Context context, AttributeSet attrs) {
         super(context, attrs);
-        setPreferenceDataStore(new LineageSystemSettingsStore(context.getContentResolver()));
+        setPreferenceDataStore(SettingsStores.get(context, SettingsNamespace.LINEAGE_SYSTEM));
     }
 
     public LineageSystemSettingSeekBarPreference(Context context) {
         super(context, null);
-        setPreferenceDataStore(new LineageSystemSettingsStore(context.getContentResolver()));
+        setPreferenceDataStore(SettingsStores.get(context, SettingsNamespace.LINEAGE_SYSTEM));
     }
 }
@@ -0,0 +1,433 @@
+/*
+ * Copyright (C) 2016-2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackiron.settings.preferences;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.icu.text.CollationKey;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+import com.blackiron.settings.utils.SortKeys;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The launchable apps of the device, shared by every screen that lists apps.
+ * Screens acquire the catalog while they are visible and release it when they
+ * are not; while anyone holds it, it follows package broadcasts, and once the
+ * last holder is gone it lets go of everything but the on disk
+ * {@link PackageCatalogCache}.
+ *
+ * <p>Listeners are called on the main thread with sorted batches, starting
+ * with everything already known when they are added.
+ */
+public final class PackageCatalog {
+
+    public interface Listener {
+        /**
+         * New or changed apps, sorted. Apps already known are replaced.
+         */
+        void onAppsUpdated(List<App> apps);
+
+        void onAppsRemoved(List<String> packageNames);
+    }
+
+    public static final class App implements Comparable<App> {
+        public final String packageName;
+        public final CharSequence title;
+        // Titles of the launcher activities, empty for whitelisted packages
+        public final List<String> activityTitles;
+        // Dominant icon color, 0 if unknown
+        public final int color;
+        final int mFlags;
+        final AppIconLoader.Source mIconSource;
+        // Normalized label and package name, what search queries are matched against
+        final String mSearchKey;
+        // Collation key and index section of the title, built once on the worker
+        // thread so sorting and sectioning never compare raw strings
+        final CollationKey mSortKey;
+        public final String section;
+
+        App(String packageName, CharSequence title, List<String> activityTitles, int color,
+                int flags, AppIconLoader.Source iconSource) {
+            this.packageName = packageName;
+            this.title = title;
+            this.activityTitles = activityTitles;
+            this.color = color;
+            mFlags = flags;
+            mIconSource = iconSource;
+            mSearchKey = normalizeForSearch(title) + '\n' + packageName.toLowerCase(Locale.ROOT);
+            mSortKey = SortKeys.getCollationKey(title);
+            section = SortKeys.getSection(title);
+        }
+
+        /**
+         * Whether the label or package name contains an already normalized query.
+         */
+        public boolean matches(String normalizedQuery) {
+            return mSearchKey.contains(normalizedQuery);
+        }
+
+        public boolean isLauncherApp() {
+            return !activityTitles.isEmpty();
+        }
+
+        public boolean isSystemApp() {
+            return (mFlags & ApplicationInfo.FLAG_SYSTEM) != 0;
+        }
+
+        public AppIconLoader.Source getIconSource() {
+            return mIconSource;
+        }
+
+        @Override
+        public int compareTo(App another) {
+            int result = mSortKey.compareTo(another.mSortKey);
+            return result != 0 ? result : packageName.compareTo(another.packageName);
+        }
+    }
+
+    // Size of the first batch published on load, about a screenful, so lists
+    // can show something before the rest has been merged
+    private static final int FIRST_BATCH_SIZE = 32;
+
+    // Delay before the cache is written back after a package change, so a
+    // burst of updates costs one write
+    private static final long SAVE_DELAY_MS = 1000;
+
+    // Packages which don't have launcher icons, but which we want to show nevertheless
+    private static final String[] PACKAGE_WHITELIST = new String[] {
+        "android",                          /* system server */
+        "com.android.systemui",             /* system UI */
+        "com.android.providers.downloads"   /* download provider */
+    };
+
+    /**
+     * Folds case and strips accents, so "e" finds "É".
+     */
+    public static String normalizeForSearch(CharSequence text) {
+        final String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        final StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                sb.append(c);
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static PackageCatalog sInstance;
+    // Loads and package changes run here, one at a time
+    private static Handler sWorker;
+
+    private final Context mContext;
+    private final PackageManager mPm;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private int mRefCount;
+    // Set once released, tasks still queued for this instance are dropped
+    private volatile boolean mReleased;
+
+    // Main thread only
+    private final HashMap<String, App> mApps = new HashMap<>();
+    private final ArrayList<Listener> mListeners = new ArrayList<>();
+
+    // Worker thread only
+    private PackageCatalogCache mCache;
+    private final Runnable mSaveCache = () -> mCache.save();
+
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            final Uri data = intent.getData();
+            final String packageName = data != null ? data.getSchemeSpecificPart() : null;
+            if (packageName == null) {
+                return;
+            }
+            if (Intent.ACTION_PACKAGE_REMOVED.equals(intent.getAction())
+                    && intent.getBooleanExtra(Intent.EXTRA_REPLACING, false)) {
+                // An update, PACKAGE_ADDED follows
+                return;
+            }
+            sWorker.post(() -> loadPackage(packageName));
+        }
+    };
+
+    private PackageCatalog(Context context) {
+        mContext = context;
+        mPm = context.getPackageManager();
+    }
+
+    /**
+     * Returns the catalog, loading it if nobody holds it yet. Every call must
+     * be balanced by {@link #release}.
+     */
+    public static PackageCatalog acquire(Context context) {
+        if (sInstance == null) {
+            sInstance = new PackageCatalog(context.getApplicationContext());
+            sInstance.start();
+        }
+        sInstance.mRefCount++;
+        return sInstance;
+    }
+
+    public void release() {
+        if (--mRefCount > 0) {
+            return;
+        }
+        mReleased = true;
+        mContext.unregisterReceiver(mPackageReceiver);
+        mApps.clear();
+        mListeners.clear();
+        if (sInstance == this) {
+            sInstance = null;
+        }
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+        if (!mApps.isEmpty()) {
+            ArrayList<App> apps = new ArrayList<>(mApps.values());
+            Collections.sort(apps);
+            listener.onAppsUpdated(apps);
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    public App getApp(String packageName) {
+        return mApps.get(packageName);
+    }
+
+    private void start() {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addDataScheme("package");
+        mContext.registerReceiver(mPackageReceiver, filter);
+        getWorker().post(this::loadPackages);
+    }
+
+    private static synchronized Handler getWorker() {
+        if (sWorker == null) {
+            HandlerThread thread = new HandlerThread("PackageCatalog",
+                    Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            sWorker = new Handler(thread.getLooper());
+        }
+        return sWorker;
+    }
+
+    private void dispatchUpdated(List<App> apps) {
+        if (mReleased) {
+            return;
+        }
+        final AppIconLoader iconLoader = AppIconLoader.getInstance(mContext);
+        for (App app : apps) {
+            if (mApps.put(app.packageName, app) != null) {
+                iconLoader.invalidate(app.packageName);
+            }
+        }
+        for (int i = mListeners.size() - 1; i >= 0; i--) {
+            mListeners.get(i).onAppsUpdated(apps);
+        }
+    }
+
+    private void dispatchRemoved(List<String> packageNames) {
+        if (mReleased) {
+            return;
+        }
+        for (String packageName : packageNames) {
+            mApps.remove(packageName);
+        }
+        for (int i = mListeners.size() - 1; i >= 0; i--) {
+            mListeners.get(i).onAppsRemoved(packageNames);
+        }
+    }
+
+    private void loadPackages() {
+        if (mReleased) {
+            return;
+        }
+        final PackageCatalogCache cache = PackageCatalogCache.load(mContext);
+        mCache = cache;
+        // Show what we knew last time right away, then bring it up to date
+        final ArrayList<App> cached = new ArrayList<>(cache.size());
+        for (PackageCatalogCache.Entry entry : cache.getEntries()) {
+            cached.add(createApp(cache, entry));
+        }
+        publishSorted(cached);
+
+        final HashMap<String, PackageInfo> packageInfos = new HashMap<>();
+        for (PackageInfo info : mPm.getInstalledPackages(0)) {
+            packageInfos.put(info.packageName, info);
+        }
+
+        final LinkedHashMap<String, List<ResolveInfo>> launchables = new LinkedHashMap<>();
+        for (ResolveInfo info : mPm.queryIntentActivities(getLauncherIntent(), 0)) {
+            String packageName = info.activityInfo.applicationInfo.packageName;
+            List<ResolveInfo> activities = launchables.get(packageName);
+            if (activities == null) {
+                activities = new ArrayList<>();
+                launchables.put(packageName, activities);
+            }
+            activities.add(info);
+        }
+        for (String packageName : PACKAGE_WHITELIST) {
+            if (!launchables.containsKey(packageName)) {
+                launchables.put(packageName, Collections.emptyList());
+            }
+        }
+
+        final HashSet<String> present = new HashSet<>();
+        final ArrayList<App> updated = new ArrayList<>();
+        for (Map.Entry<String, List<ResolveInfo>> launchable : launchables.entrySet()) {
+            final String packageName = launchable.getKey();
+            PackageInfo packageInfo = packageInfos.get(packageName);
+            if (packageInfo == null) {
+                // package not present, so nothing to add -> ignore it
+                continue;
+            }
+            present.add(packageName);
+            PackageCatalogCache.Entry entry = cache.get(packageName);
+            if (entry == null || !entry.isCurrent(packageInfo)) {
+                entry = putEntry(cache, packageInfo, launchable.getValue());
+                updated.add(createApp(cache, entry));
+            }
+        }
+
+        publishSorted(updated);
+        final List<String> removed = cache.retainAll(present);
+        if (!removed.isEmpty()) {
+            mMainHandler.post(() -> dispatchRemoved(removed));
+        }
+        cache.save();
+    }
+
+    /**
+     * Brings a single package up to date after a package broadcast.
+     */
+    private void loadPackage(String packageName) {
+        if (mReleased) {
+            return;
+        }
+        final PackageCatalogCache cache = mCache;
+        PackageInfo packageInfo;
+        try {
+            packageInfo = mPm.getPackageInfo(packageName, 0);
+        } catch (PackageManager.NameNotFoundException e) {
+            packageInfo = null;
+        }
+        List<ResolveInfo> activities = Collections.emptyList();
+        if (packageInfo != null) {
+            activities = mPm.queryIntentActivities(
+                    getLauncherIntent().setPackage(packageName), 0);
+        }
+        if (packageInfo == null
+                || (activities.isEmpty() && !isWhitelisted(packageName))) {
+            if (cache.remove(packageName)) {
+                final List<String> removed = Collections.singletonList(packageName);
+                mMainHandler.post(() -> dispatchRemoved(removed));
+                scheduleSave();
+            }
+            return;
+        }
+        // Always reload, a component change doesn't touch the version
+        PackageCatalogCache.Entry entry = putEntry(cache, packageInfo, activities);
+        final List<App> updated = Collections.singletonList(createApp(cache, entry));
+        mMainHandler.post(() -> dispatchUpdated(updated));
+        scheduleSave();
+    }
+
+    private PackageCatalogCache.Entry putEntry(PackageCatalogCache cache,
+            PackageInfo packageInfo, List<ResolveInfo> activities) {
+        final ApplicationInfo appInfo = packageInfo.applicationInfo;
+        final ArrayList<CharSequence> titles = new ArrayList<>(activities.size());
+        for (ResolveInfo info : activities) {
+            titles.add(info.loadLabel(mPm));
+        }
+        titles.sort(Comparator.comparing(CharSequence::toString));
+        return cache.put(packageInfo.packageName, packageInfo.getLongVersionCode(),
+                packageInfo.lastUpdateTime, appInfo.flags, appInfo.loadLabel(mPm), titles,
+                appInfo.loadIcon(mPm));
+    }
+
+    private static App createApp(PackageCatalogCache cache, PackageCatalogCache.Entry entry) {
+        return new App(entry.packageName, entry.label, entry.activityTitles, entry.color,
+                entry.flags, () -> cache.decodeIcon(entry));
+    }
+
+    private void scheduleSave() {
+        sWorker.removeCallbacks(mSaveCache);
+        sWorker.postDelayed(mSaveCache, SAVE_DELAY_MS);
+    }
+
+    /**
+     * Sorts {@code apps} here on the worker and hands them to the main thread
+     * in two batches: a first screenful, then everything else.
+     */
+    private void publishSorted(ArrayList<App> apps) {
+        if (apps.isEmpty()) {
+            return;
+        }
+        Collections.sort(apps);
+        if (apps.size() <= FIRST_BATCH_SIZE) {
+            mMainHandler.post(() -> dispatchUpdated(apps));
+            return;
+        }
+        final List<App> first = new ArrayList<>(apps.subList(0, FIRST_BATCH_SIZE));
+        final List<App> rest = new ArrayList<>(apps.subList(FIRST_BATCH_SIZE, apps.size()));
+        mMainHandler.post(() -> dispatchUpdated(first));
+        mMainHandler.post(() -> dispatchUpdated(rest));
+    }
+
+    private static Intent getLauncherIntent() {
+        final Intent mainIntent = new Intent(Intent.ACTION_MAIN, null);
+        mainIntent.addCategory(Intent.CATEGORY_LAUNCHER);
+        return mainIntent;
+    }
+
+    private static boolean isWhitelisted(String packageName) {
+        for (String whitelisted : PACKAGE_WHITELIST) {
+            if (whitelisted.equals(packageName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2016-2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackiron.settings.preferences;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * On disk cache of the labels and icons of installed apps, so app choosers
+ * can show their list before asking PackageManager for anything. Entries are
+ * keyed by package name and only trusted while versionCode and lastUpdateTime
+ * still match. Icons are stored downscaled as PNG next to the index and the
+ * file is memory mapped, so an icon is only decoded when it is asked for.
+ * The dominant icon color is worked out while the icon is drawn anyway and
+ * stored with it, so it is there for free until the package is updated.
+ *
+ * <p>Icons encoded in this session are only held in memory until the next
+ * {@link #save}, which maps the new file and points their entries at it.
+ *
+ * <p>Not thread safe, each loader works on its own instance. Only
+ * {@link #decodeIcon} may be called from other threads.
+ */
+public final class PackageCatalogCache {
+    private static final String TAG = "PackageCatalogCache";
+
+    private static final String FILE_NAME = "package_catalog";
+    private static final int MAGIC = 0x424b5043;
+    private static final int VERSION = 3;
+
+    private static final Object sFileLock = new Object();
+
+    private final File mFile;
+    private final int mIconSize;
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>();
+    private final IconColorQuantizer mQuantizer = new IconColorQuantizer();
+    private ByteBuffer mBuffer;
+    private boolean mDirty;
+
+    public static final class Entry {
+        public final String packageName;
+        public final long versionCode;
+        public final long lastUpdateTime;
+        // ApplicationInfo flags
+        public final int flags;
+        public final String label;
+        public final List<String> activityTitles;
+        // Dominant icon color, IconColorQuantizer.NO_COLOR if there is none
+        public final int color;
+
+        // Either a slice of the mapped file or an icon encoded in this session,
+        // guarded by the cache once the entry is published
+        private int mIconOffset;
+        private final int mIconLength;
+        private byte[] mIcon;
+
+        Entry(String packageName, long versionCode, long lastUpdateTime, int flags,
+                String label, List<String> activityTitles, int color, int iconOffset,
+                int iconLength, byte[] icon) {
+            this.packageName = packageName;
+            this.versionCode = versionCode;
+            this.lastUpdateTime = lastUpdateTime;
+            this.flags = flags;
+            this.label = label;
+            this.activityTitles = activityTitles;
+            this.color = color;
+            mIconOffset = iconOffset;
+            mIconLength = iconLength;
+            mIcon = icon;
+        }
+
+        public boolean isCurrent(PackageInfo info) {
+            return info.getLongVersionCode() == versionCode
+                    && info.lastUpdateTime == lastUpdateTime;
+        }
+    }
+
+    private PackageCatalogCache(Context context) {
+        mFile = new File(context.getCacheDir(), FILE_NAME);
+        mIconSize = context.getResources().getDimensionPixelSize(android.R.dimen.app_icon_size);
+    }
+
+    /**
+     * Maps the catalog written by the last {@link #save}. Returns an empty
+     * catalog if there is none, it is unreadable or was written for another
+     * locale.
+     */
+    public static PackageCatalogCache load(Context context) {
+        PackageCatalogCache catalog = new PackageCatalogCache(context);
+        synchronized (sFileLock) {
+            if (!catalog.mFile.exists()) {
+                return catalog;
+            }
+            try (FileInputStream in = new FileInputStream(catalog.mFile);
+                    FileChannel channel = in.getChannel()) {
+                catalog.mBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                catalog.readIndex();
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Discarding unreadable package catalog", e);
+                catalog.mEntries.clear();
+                catalog.mBuffer = null;
+            }
+        }
+        return catalog;
+    }
+
+    public Entry get(String packageName) {
+        return mEntries.get(packageName);
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    public Collection<Entry> getEntries() {
+        return mEntries.values();
+    }
+
+    public Entry put(String packageName, long versionCode, long lastUpdateTime, int flags,
+            CharSequence label, List<CharSequence> activityTitles, Drawable icon) {
+        ArrayList<String> titles = new ArrayList<>(activityTitles.size());
+        for (CharSequence title : activityTitles) {
+            titles.add(title.toString());
+        }
+        byte[] iconData = new byte[0];
+        int color = IconColorQuantizer.NO_COLOR;
+        if (icon != null) {
+            Bitmap bitmap = drawIcon(icon);
+            iconData = encodeIcon(bitmap);
+            color = mQuantizer.getDominantColor(bitmap);
+            bitmap.recycle();
+        }
+        Entry entry = new Entry(packageName, versionCode, lastUpdateTime, flags,
+                label.toString(), titles, color, 0, iconData.length, iconData);
+        mEntries.put(packageName, entry);
+        mDirty = true;
+        return entry;
+    }
+
+    public boolean remove(String packageName) {
+        if (mEntries.remove(packageName) == null) {
+            return false;
+        }
+        mDirty = true;
+        return true;
+    }
+
+    /**
+     * Drops every entry whose package is not in {@code packages}.
+     *
+     * @return the names of the dropped packages
+     */
+    public List<String> retainAll(Set<String> packages) {
+        ArrayList<String> removed = new ArrayList<>();
+        Iterator<Entry> it = mEntries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (!packages.contains(entry.packageName)) {
+                removed.add(entry.packageName);
+                it.remove();
+            }
+        }
+        if (!removed.isEmpty()) {
+            mDirty = true;
+        }
+        return removed;
+    }
+
+    /**
+     * Decodes the icon of an entry, at most at list icon size.
+     */
+    public Bitmap decodeIcon(Entry entry) {
+        final byte[] icon;
+        synchronized (this) {
+            if (entry.mIcon != null) {
+                icon = entry.mIcon;
+            } else if (mBuffer == null || entry.mIconLength == 0) {
+                return null;
+            } else {
+                icon = readIcon(entry);
+            }
+        }
+        return BitmapFactory.decodeByteArray(icon, 0, icon.length);
+    }
+
+    /**
+     * Writes the catalog back to disk if anything changed since it was loaded.
+     */
+    public void save() {
+        if (!mDirty) {
+            return;
+        }
+        synchronized (sFileLock) {
+            AtomicFile file = new AtomicFile(mFile);
+            FileOutputStream out = null;
+            try {
+                out = file.startWrite();
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+                data.writeInt(MAGIC);
+                data.writeInt(VERSION);
+                writeString(data, Locale.getDefault().toLanguageTag());
+                data.writeInt(mEntries.size());
+                final int[] iconOffsets = new int[mEntries.size()];
+                int i = 0;
+                for (Entry entry : mEntries.values()) {
+                    writeString(data, entry.packageName);
+                    data.writeLong(entry.versionCode);
+                    data.writeLong(entry.lastUpdateTime);
+                    data.writeInt(entry.flags);
+                    data.writeInt(entry.color);
+                    writeString(data, entry.label);
+                    data.writeInt(entry.activityTitles.size());
+                    for (String title : entry.activityTitles) {
+                        writeString(data, title);
+                    }
+                    byte[] icon = entry.mIcon != null ? entry.mIcon : readIcon(entry);
+                    data.writeInt(icon.length);
+                    iconOffsets[i++] = data.size();
+                    data.write(icon);
+                }
+                data.flush();
+                file.finishWrite(out);
+                mDirty = false;
+                remap(iconOffsets);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to write package catalog", e);
+                file.failWrite(out);
+            }
+        }
+    }
+
+    /**
+     * Maps the file just written and moves every entry's icon over to it, so
+     * the icons encoded in this session no longer stay on the heap.
+     */
+    private void remap(int[] iconOffsets) {
+        final ByteBuffer buffer;
+        try (FileInputStream in = new FileInputStream(mFile);
+                FileChannel channel = in.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to map the written package catalog", e);
+            return;
+        }
+        synchronized (this) {
+            mBuffer = buffer;
+            int i = 0;
+            for (Entry entry : mEntries.values()) {
+                entry.mIconOffset = iconOffsets[i++];
+                entry.mIcon = null;
+            }
+        }
+    }
+
+    private void readIndex() {
+        final ByteBuffer buffer = mBuffer;
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return;
+        }
+        if (!Locale.getDefault().toLanguageTag().equals(readString(buffer))) {
+            // Labels are localized, they are of no use in another locale
+            return;
+        }
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            String packageName = readString(buffer);
+            long versionCode = buffer.getLong();
+            long lastUpdateTime = buffer.getLong();
+            int flags = buffer.getInt();
+            int color = buffer.getInt();
+            String label = readString(buffer);
+            int titleCount = buffer.getInt();
+            ArrayList<String> titles = new ArrayList<>(titleCount);
+            for (int j = 0; j < titleCount; j++) {
+                titles.add(readString(buffer));
+            }
+            int iconLength = buffer.getInt();
+            int iconOffset = buffer.position();
+            if (iconLength < 0 || iconLength > buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            buffer.position(iconOffset + iconLength);
+            mEntries.put(packageName, new Entry(packageName, versionCode, lastUpdateTime,
+                    flags, label, titles, color, iconOffset, iconLength, null));
+        }
+    }
+
+    private byte[] readIcon(Entry entry) {
+        byte[] icon = new byte[entry.mIconLength];
+        ByteBuffer slice = mBuffer.duplicate();
+        slice.position(entry.mIconOffset);
+        slice.get(icon);
+        return icon;
+    }
+
+    private Bitmap drawIcon(Drawable icon) {
+        Bitmap bitmap = Bitmap.createBitmap(mIconSize, mIconSize, Bitmap.Config.ARGB_8888);
+        Rect bounds = new Rect(icon.getBounds());
+        icon.setBounds(0, 0, mIconSize, mIconSize);
+        icon.draw(new Canvas(bitmap));
+        icon.setBounds(bounds);
+        return bitmap;
+    }
+
+    private static byte[] encodeIcon(Bitmap bitmap) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        return out.toByteArray();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
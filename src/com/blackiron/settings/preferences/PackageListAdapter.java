@@ -18,103 +18,293 @@
 package com.blackiron.settings.preferences;
 
 import android.content.Context;
-import android.content.Intent;
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
-import android.content.pm.ResolveInfo;
-import android.graphics.drawable.Drawable;
-import android.os.Handler;
-import android.os.Looper;
-import android.os.Message;
+import android.graphics.drawable.ShapeDrawable;
+import android.graphics.drawable.shapes.OvalShape;
+import android.text.Editable;
 import android.text.TextUtils;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
+import android.widget.EditText;
 import android.widget.ImageView;
+import android.widget.ListView;
 import android.widget.TextView;
 
 import com.android.settings.R;
+import com.blackiron.settings.preferences.PackageCatalog.App;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
 
-public class PackageListAdapter extends BaseAdapter implements Runnable {
-    private final PackageManager mPm;
+/**
+ * App chooser list over the shared {@link PackageCatalog}. The owner has to
+ * call {@link #setListening} from its resume/pause callbacks.
+ */
+public class PackageListAdapter extends BaseAdapter implements PackageCatalog.Listener {
+    private final Context mContext;
     private final LayoutInflater mInflater;
-    private final List<PackageItem> mInstalledPackages = new LinkedList<>();
+    private final AppIconLoader mIconLoader;
+    private PackageCatalog mCatalog;
+    // Every package we know about
+    private final HashMap<String, App> mAllPackages = new HashMap<>();
+    // The packages that aren't excluded, in display order
+    private ArrayList<App> mInstalledPackages = new ArrayList<>();
     private Set<String> mExcludedPackages = new HashSet<>();
 
-    // Packages which don't have launcher icons, but which we want to show nevertheless
-    private static final String[] PACKAGE_WHITELIST = new String[] {
-        "android",                          /* system server */
-        "com.android.systemui",             /* system UI */
-        "com.android.providers.downloads"   /* download provider */
-    };
-
-    private final Handler mHandler = new Handler(Looper.getMainLooper()) {
-        @Override
-        public void handleMessage(Message msg) {
-            PackageItem item = (PackageItem) msg.obj;
-            int index = Collections.binarySearch(mInstalledPackages, item);
-            if (index < 0) {
-                mInstalledPackages.add(-index - 1, item);
-            } else {
-                mInstalledPackages.get(index).activityTitles.addAll(item.activityTitles);
-            }
+    // Normalized search query, empty when not filtering
+    private String mQuery = "";
+    // Indexes into mInstalledPackages of the items matching mQuery. Reused
+    // between keystrokes, only grown when the list outgrows it.
+    private int[] mFiltered = new int[0];
+    private int mFilteredCount;
+    private boolean mShowColors;
+
+    public PackageListAdapter(Context context) {
+        mContext = context.getApplicationContext();
+        mInflater = LayoutInflater.from(context);
+        mIconLoader = AppIconLoader.getInstance(context);
+    }
+
+    /**
+     * Follows the package catalog while listening. The list keeps its
+     * content while not listening and catches up when listening again.
+     */
+    public void setListening(boolean listening) {
+        if (listening == (mCatalog != null)) {
+            return;
+        }
+        if (listening) {
+            mCatalog = PackageCatalog.acquire(mContext);
+            mCatalog.addListener(this);
+        } else {
+            mCatalog.removeListener(this);
+            mCatalog.release();
+            mCatalog = null;
+        }
+    }
+
+    /**
+     * Shows each app's suggested light color, its dominant icon color, next
+     * to its name.
+     */
+    public void setShowColors(boolean showColors) {
+        if (mShowColors != showColors) {
+            mShowColors = showColors;
             notifyDataSetChanged();
         }
-    };
+    }
+
+    /**
+     * Inflates the chooser dialog content: a search field above the list, which
+     * can be found with {@code R.id.app_chooser_list}.
+     */
+    public View inflateChooser(Context context) {
+        final View view = LayoutInflater.from(context).inflate(R.layout.app_chooser, null);
+        final ListView list = view.findViewById(R.id.app_chooser_list);
+        final EditText search = view.findViewById(R.id.app_chooser_search);
+        setFilter(null);
+        list.setAdapter(this);
+        search.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
 
-    public static class PackageItem implements Comparable<PackageItem> {
-        public final String packageName;
-        public final CharSequence title;
-        private final TreeSet<CharSequence> activityTitles = new TreeSet<>();
-        public final Drawable icon;
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
 
-        PackageItem(String packageName, CharSequence title, Drawable icon) {
-            this.packageName = packageName;
-            this.title = title;
-            this.icon = icon;
+            @Override
+            public void afterTextChanged(Editable s) {
+                setFilter(s);
+            }
+        });
+        return view;
+    }
+
+    /**
+     * Only shows the apps whose label or package name contains {@code query},
+     * ignoring case and accents. When the new query extends the last one only
+     * the previous matches are scanned again.
+     */
+    public void setFilter(CharSequence query) {
+        final String normalized = TextUtils.isEmpty(query)
+                ? "" : PackageCatalog.normalizeForSearch(query);
+        if (normalized.equals(mQuery)) {
+            return;
+        }
+        final boolean narrowing = !mQuery.isEmpty() && normalized.contains(mQuery);
+        mQuery = normalized;
+        if (narrowing) {
+            int count = 0;
+            for (int i = 0; i < mFilteredCount; i++) {
+                int index = mFiltered[i];
+                if (mInstalledPackages.get(index).matches(normalized)) {
+                    mFiltered[count++] = index;
+                }
+            }
+            mFilteredCount = count;
+        } else {
+            applyFilter();
         }
+        notifyDataSetChanged();
+    }
 
-        @Override
-        public int compareTo(PackageItem another) {
-            int result = title.toString().compareToIgnoreCase(another.title.toString());
-            return result != 0 ? result : packageName.compareTo(another.packageName);
+    private void applyFilter() {
+        if (mQuery.isEmpty()) {
+            mFilteredCount = 0;
+            return;
+        }
+        final int size = mInstalledPackages.size();
+        if (mFiltered.length < size) {
+            mFiltered = new int[size];
+        }
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (mInstalledPackages.get(i).matches(mQuery)) {
+                mFiltered[count++] = i;
+            }
         }
+        mFilteredCount = count;
     }
 
-    public PackageListAdapter(Context context) {
-        mPm = context.getPackageManager();
-        mInflater = LayoutInflater.from(context);
-        reloadList();
+    private void notifyListChanged() {
+        applyFilter();
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Hides the given packages from the list. Only the packages whose state
+     * changes are touched, nothing is loaded again.
+     */
+    public void setExcludedPackages(HashSet<String> packages) {
+        final Set<String> previous = mExcludedPackages;
+        mExcludedPackages = packages;
+        boolean changed = false;
+        for (String packageName : previous) {
+            App item = mAllPackages.get(packageName);
+            if (item != null && !packages.contains(packageName)) {
+                insertItem(item);
+                changed = true;
+            }
+        }
+        for (String packageName : packages) {
+            App item = mAllPackages.get(packageName);
+            if (item != null && !previous.contains(packageName)) {
+                changed |= mInstalledPackages.remove(item);
+            }
+        }
+        if (changed) {
+            notifyListChanged();
+        }
     }
 
     @Override
-    public int getCount() {
-        synchronized (mInstalledPackages) {
-            return mInstalledPackages.size();
+    public void onAppsUpdated(List<App> apps) {
+        if (updateItems(apps)) {
+            notifyListChanged();
         }
     }
 
     @Override
-    public PackageItem getItem(int position) {
-        synchronized (mInstalledPackages) {
-            return mInstalledPackages.get(position);
+    public void onAppsRemoved(List<String> packageNames) {
+        if (removeItems(packageNames)) {
+            notifyListChanged();
+        }
+    }
+
+    /**
+     * Adds or replaces a batch of items, which must be sorted. The batch is
+     * merged into the list in a single pass.
+     */
+    private boolean updateItems(List<App> items) {
+        if (items.size() == 1) {
+            return updateItem(items.get(0));
+        }
+        final Set<App> replaced = Collections.newSetFromMap(new IdentityHashMap<>());
+        final ArrayList<App> added = new ArrayList<>(items.size());
+        for (App item : items) {
+            App previous = mAllPackages.put(item.packageName, item);
+            if (previous != null) {
+                replaced.add(previous);
+            }
+            if (!mExcludedPackages.contains(item.packageName)) {
+                added.add(item);
+            }
+        }
+        final ArrayList<App> current = mInstalledPackages;
+        final ArrayList<App> merged = new ArrayList<>(current.size() + added.size());
+        int i = 0;
+        int j = 0;
+        while (i < current.size() || j < added.size()) {
+            App existing = i < current.size() ? current.get(i) : null;
+            if (existing != null && replaced.contains(existing)) {
+                i++;
+                continue;
+            }
+            App item = j < added.size() ? added.get(j) : null;
+            if (item == null || (existing != null && existing.compareTo(item) <= 0)) {
+                merged.add(existing);
+                i++;
+            } else {
+                merged.add(item);
+                j++;
+            }
+        }
+        mInstalledPackages = merged;
+        return !added.isEmpty() || !replaced.isEmpty();
+    }
+
+    private boolean updateItem(App item) {
+        App previous = mAllPackages.put(item.packageName, item);
+        boolean changed = previous != null && mInstalledPackages.remove(previous);
+        if (!mExcludedPackages.contains(item.packageName)) {
+            insertItem(item);
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean removeItems(List<String> packageNames) {
+        final Set<App> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (String packageName : packageNames) {
+            App previous = mAllPackages.remove(packageName);
+            if (previous != null) {
+                removed.add(previous);
+            }
+        }
+        return !removed.isEmpty() && mInstalledPackages.removeAll(removed);
+    }
+
+    private void insertItem(App item) {
+        int index = Collections.binarySearch(mInstalledPackages, item);
+        if (index < 0) {
+            mInstalledPackages.add(-index - 1, item);
+        } else {
+            mInstalledPackages.set(index, item);
         }
     }
 
+    @Override
+    public int getCount() {
+        return mQuery.isEmpty() ? mInstalledPackages.size() : mFilteredCount;
+    }
+
+    @Override
+    public App getItem(int position) {
+        return mInstalledPackages.get(mQuery.isEmpty() ? position : mFiltered[position]);
+    }
+
     @Override
     public long getItemId(int position) {
-        synchronized (mInstalledPackages) {
-            // packageName is guaranteed to be unique in mInstalledPackages
-            return mInstalledPackages.get(position).packageName.hashCode();
-        }
+        // packageName is guaranteed to be unique in mInstalledPackages
+        return getItem(position).packageName.hashCode();
     }
 
     @Override
@@ -129,15 +319,33 @@ public class PackageListAdapter extends BaseAdapter implements Runnable {
             holder.title = convertView.findViewById(com.android.internal.R.id.title);
             holder.summary = convertView.findViewById(com.android.internal.R.id.summary);
             holder.icon = convertView.findViewById(com.android.internal.R.id.icon);
+            holder.color = convertView.findViewById(R.id.app_color);
         }
 
-        PackageItem applicationInfo = getItem(position);
+        App applicationInfo = getItem(position);
         holder.title.setText(applicationInfo.title);
-        holder.icon.setImageDrawable(applicationInfo.icon);
+        mIconLoader.bind(holder.icon, applicationInfo.packageName,
+                applicationInfo.getIconSource());
+
+        if (mShowColors && applicationInfo.color != 0) {
+            if (holder.swatch == null) {
+                final int size = mContext.getResources().getDimensionPixelSize(
+                        R.dimen.oval_notification_size);
+                holder.swatch = new ShapeDrawable(new OvalShape());
+                holder.swatch.setIntrinsicWidth(size);
+                holder.swatch.setIntrinsicHeight(size);
+                holder.color.setImageDrawable(holder.swatch);
+            }
+            holder.swatch.getPaint().setColor(applicationInfo.color);
+            holder.swatch.invalidateSelf();
+            holder.color.setVisibility(View.VISIBLE);
+        } else {
+            holder.color.setVisibility(View.GONE);
+        }
 
         boolean needSummary = applicationInfo.activityTitles.size() > 0;
         if (applicationInfo.activityTitles.size() == 1) {
-            if (TextUtils.equals(applicationInfo.title, applicationInfo.activityTitles.first())) {
+            if (TextUtils.equals(applicationInfo.title, applicationInfo.activityTitles.get(0))) {
                 needSummary = false;
             }
         }
@@ -152,52 +360,11 @@ public class PackageListAdapter extends BaseAdapter implements Runnable {
         return convertView;
     }
 
-    private void reloadList() {
-        mInstalledPackages.clear();
-        new Thread(this).start();
-    }
-
-    @Override
-    public void run() {
-        final Intent mainIntent = new Intent(Intent.ACTION_MAIN, null);
-        mainIntent.addCategory(Intent.CATEGORY_LAUNCHER);
-        List<ResolveInfo> installedAppsInfo = mPm.queryIntentActivities(mainIntent, 0);
-
-        for (ResolveInfo info : installedAppsInfo) {
-            ApplicationInfo appInfo = info.activityInfo.applicationInfo;
-            if (mExcludedPackages.contains(appInfo.packageName)) {
-                continue;
-            }
-
-            final PackageItem item = new PackageItem(appInfo.packageName,
-                    appInfo.loadLabel(mPm), appInfo.loadIcon(mPm));
-            item.activityTitles.add(info.loadLabel(mPm));
-            mHandler.obtainMessage(0, item).sendToTarget();
-        }
-
-        for (String packageName : PACKAGE_WHITELIST) {
-            if (mExcludedPackages.contains(packageName)) {
-                continue;
-            }
-            try {
-                ApplicationInfo appInfo = mPm.getApplicationInfo(packageName, 0);
-                final PackageItem item = new PackageItem(appInfo.packageName,
-                        appInfo.loadLabel(mPm), appInfo.loadIcon(mPm));
-                mHandler.obtainMessage(0, item).sendToTarget();
-            } catch (PackageManager.NameNotFoundException ignored) {
-                // package not present, so nothing to add -> ignore it
-            }
-        }
-    }
-
-    public void setExcludedPackages(HashSet<String> packages) {
-        mExcludedPackages = packages;
-        reloadList();
-    }
-
     private static class ViewHolder {
         TextView title;
         TextView summary;
         ImageView icon;
+        ImageView color;
+        ShapeDrawable swatch;
     }
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016-2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackiron.settings.preferences;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Declarative list of (namespace, key, default) tuples a screen restores on
+ * reset, plus any work that has to run once the values are written (overlays,
+ * system properties). Parent screens add their children's entries to the same
+ * spec so a reset is applied as one batch by {@link SettingsResetter}.
+ */
+public final class ResetSpec {
+
+    private static final int TYPE_INT = 0;
+    private static final int TYPE_FLOAT = 1;
+    private static final int TYPE_STRING = 2;
+
+    private final ArrayList<Entry> mEntries = new ArrayList<>();
+    private final ArrayList<Runnable> mPostResetActions = new ArrayList<>();
+
+    public ResetSpec putInt(SettingsNamespace namespace, String key, int defValue) {
+        mEntries.add(new Entry(namespace, key, Integer.toString(defValue), TYPE_INT));
+        return this;
+    }
+
+    public ResetSpec putBoolean(SettingsNamespace namespace, String key, boolean defValue) {
+        return putInt(namespace, key, defValue ? 1 : 0);
+    }
+
+    public ResetSpec putFloat(SettingsNamespace namespace, String key, float defValue) {
+        mEntries.add(new Entry(namespace, key, Float.toString(defValue), TYPE_FLOAT));
+        return this;
+    }
+
+    public ResetSpec putString(SettingsNamespace namespace, String key, String defValue) {
+        mEntries.add(new Entry(namespace, key, defValue, TYPE_STRING));
+        return this;
+    }
+
+    /**
+     * Runs {@code action} on the reset thread after all entries were written.
+     */
+    public ResetSpec runAfter(Runnable action) {
+        mPostResetActions.add(action);
+        return this;
+    }
+
+    public List<Entry> getEntries() {
+        return mEntries;
+    }
+
+    List<Runnable> getPostResetActions() {
+        return mPostResetActions;
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    public static final class Entry {
+        public final SettingsNamespace namespace;
+        public final String key;
+        public final String defValue;
+        private final int mType;
+
+        private Entry(SettingsNamespace namespace, String key, String defValue, int type) {
+            this.namespace = namespace;
+            this.key = key;
+            this.defValue = defValue;
+            mType = type;
+        }
+
+        /**
+         * Whether {@code current} already holds the default. An unset key never
+         * matches, since its consumer may fall back to a different value.
+         */
+        boolean isDefault(String current) {
+            if (current == null || defValue == null) {
+                return current == null && defValue == null;
+            }
+            try {
+                switch (mType) {
+                    case TYPE_INT:
+                        return Integer.parseInt(current) == Integer.parseInt(defValue);
+                    case TYPE_FLOAT:
+                        return Float.parseFloat(current) == Float.parseFloat(defValue);
+                    default:
+                        return Objects.equals(current, defValue);
+                }
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+    }
+}
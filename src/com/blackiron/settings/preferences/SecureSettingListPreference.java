@@ -27,17 +27,17 @@ public class SecureSettingListPreference extends ListPreference {
 
     public SecureSettingListPreference(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
-        setPreferenceDataStore(new SecureSettingsStore(context.getContentResolver()));
+        setPreferenceDataStore(SettingsStores.get(context, SettingsNamespace.SECURE));
     }
 
     public SecureSettingListPreference(Context context, AttributeSet attrs) {
         super(context, attrs);
-        setPreferenceDataStore(new SecureSettingsStore(context.getContentResolver()));
+        setPreferenceDataStore(SettingsStores.get(context, SettingsNamespace.SECURE));
     }
 
     public SecureSettingListPreference(Context context) {
         super(context);
-        setPreferenceDataStore(new SecureSettingsStore(context.getContentResolver()));
+        setPreferenceDataStore(SettingsStores.get(context, SettingsNamespace.SECURE));
     }
 
     @Override
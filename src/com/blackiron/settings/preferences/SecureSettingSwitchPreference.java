@@ -16,39 +16,41 @@
 package com.blackiron.settings.preferences;
 
 import android.content.Context;
-import android.provider.Settings;
-import android.os.UserHandle;
 import android.util.AttributeSet;
 
 import lineageos.preference.SelfRemovingSwitchPreference;
 
 public class SecureSettingSwitchPreference extends SelfRemovingSwitchPreference {
 
+    private final BaseSettingsStore mStore;
+
     public SecureSettingSwitchPreference(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
+        mStore = SettingsStores.get(context, SettingsNamespace.SECURE);
     }
 
     public SecureSettingSwitchPreference(Context context, AttributeSet attrs) {
         super(context, attrs);
+        mStore = SettingsStores.get(context, SettingsNamespace.SECURE);
     }
 
     public SecureSettingSwitchPreference(Context context) {
         super(context);
+        mStore = SettingsStores.get(context, SettingsNamespace.SECURE);
     }
 
     @Override
     protected boolean isPersisted() {
-        return Settings.Secure.getString(getContext().getContentResolver(), getKey()) != null;
+        return mStore.getString(getKey(), null) != null;
     }
 
     @Override
     protected void putBoolean(String key, boolean value) {
-        Settings.Secure.putIntForUser(getContext().getContentResolver(), key, value ? 1 : 0, UserHandle.USER_CURRENT);
+        mStore.putBoolean(key, value);
     }
 
     @Override
     protected boolean getBoolean(String key, boolean defaultValue) {
-        return Settings.Secure.getIntForUser(getContext().getContentResolver(),
-                key, defaultValue ? 1 : 0, UserHandle.USER_CURRENT) != 0;
+        return mStore.getBoolean(key, defaultValue);
     }
 }
@@ -0,0 +1,349 @@
+/*
+ * Copyright (C) 2016-2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackiron.settings.preferences;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.os.UserHandle;
+import android.provider.Settings;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process wide read-through cache for the settings tables, one bucket per
+ * namespace and user. Each bucket registers a ContentObserver on its table
+ * before the first read, so any write (ours, SystemUI's or a fragment calling
+ * Settings directly) drops the cached value again.
+ */
+public final class SettingsCache {
+    private static final String TAG = "SettingsCache";
+
+    // Name the bulk queries are recorded under in SettingsStats
+    private static final String PREFETCH_KEY = "*";
+
+    private static final String[] PREFETCH_PROJECTION = {
+            Settings.NameValueTable.NAME, Settings.NameValueTable.VALUE
+    };
+
+    // ConcurrentHashMap can't hold nulls, so unset keys are cached as this
+    // instance and compared by identity.
+    private static final String ABSENT = new String();
+
+    // How long a miss waits for a running screen load before reading on its own
+    private static final long PENDING_LOAD_TIMEOUT_MS = 500;
+
+    // Bulk queries tried before a load gives up on a table that keeps changing
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    private static final SettingsCache sInstance = new SettingsCache();
+
+    @SuppressWarnings("unchecked")
+    private final ConcurrentHashMap<Integer, Bucket>[] mBuckets =
+            new ConcurrentHashMap[SettingsNamespace.values().length];
+
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+
+    private SettingsCache() {
+        for (int i = 0; i < mBuckets.length; i++) {
+            mBuckets[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    public static SettingsCache getInstance() {
+        return sInstance;
+    }
+
+    public String getString(ContentResolver resolver, SettingsNamespace namespace,
+            String key, int userId) {
+        userId = namespace.resolveUserId(userId);
+        SettingsWriter.PendingWrite pending = SettingsWriter.peekPending(namespace, key, userId);
+        if (pending != null) {
+            mHits.incrementAndGet();
+            SettingsStats.recordHit(namespace, key);
+            return pending.mValue;
+        }
+        Bucket bucket = getBucket(resolver, namespace, userId);
+        String value = bucket.mValues.get(key);
+        if (value == null) {
+            // Only wait if a load running right now covers this very key
+            CountDownLatch loading = bucket.mLoading.get(key);
+            if (loading != null && awaitLoad(loading)) {
+                value = bucket.mValues.get(key);
+            }
+        }
+        if (value != null) {
+            mHits.incrementAndGet();
+            SettingsStats.recordHit(namespace, key);
+            return value == ABSENT ? null : value;
+        }
+        mMisses.incrementAndGet();
+        int generation = bucket.mGeneration.get();
+        long start = SystemClock.elapsedRealtimeNanos();
+        value = namespace.getStringForUser(resolver, key, userId);
+        SettingsStats.recordRead(namespace, key, SystemClock.elapsedRealtimeNanos() - start);
+        // Only publish if nothing was invalidated while we were in the provider,
+        // otherwise we might cache a value that is already stale.
+        if (generation == bucket.mGeneration.get()) {
+            bucket.mValues.putIfAbsent(key, value == null ? ABSENT : value);
+        }
+        return value;
+    }
+
+    public boolean putString(ContentResolver resolver, SettingsNamespace namespace,
+            String key, String value, int userId) {
+        userId = namespace.resolveUserId(userId);
+        Bucket bucket = getBucket(resolver, namespace, userId);
+        long start = SystemClock.elapsedRealtimeNanos();
+        boolean written = namespace.putStringForUser(resolver, key, value, userId);
+        SettingsStats.recordWrite(namespace, key, SystemClock.elapsedRealtimeNanos() - start);
+        bucket.mGeneration.incrementAndGet();
+        if (written) {
+            bucket.mValues.put(key, value == null ? ABSENT : value);
+        } else {
+            bucket.mValues.remove(key);
+        }
+        return written;
+    }
+
+    /**
+     * Loads every key in {@code keys} that is not cached yet with a single query
+     * of the namespace's table, instead of one provider call per key. Tables of
+     * other users can't be queried in bulk from here, those keys are left to
+     * the regular per key path.
+     *
+     * @return the number of keys that were loaded
+     */
+    public int prefetch(ContentResolver resolver, SettingsNamespace namespace,
+            Collection<String> keys, int userId) {
+        PendingLoad load = beginLoad(resolver, namespace, keys, userId);
+        if (load == null) {
+            return 0;
+        }
+        try {
+            return load(resolver, load);
+        } finally {
+            endLoad(load);
+        }
+    }
+
+    /**
+     * Announces a bulk load of the keys of {@code keys} that are not cached yet.
+     * Until {@link #endLoad} is called, a miss on one of those keys waits for
+     * the load and looks again before going to the provider itself, so a screen
+     * bound while its values are still loading doesn't query them a second
+     * time, one key at a time. Misses on any other key don't wait.
+     *
+     * @return the load to run with {@link #load}, or null if there is nothing
+     *         to load in bulk
+     */
+    public PendingLoad beginLoad(ContentResolver resolver, SettingsNamespace namespace,
+            Collection<String> keys, int userId) {
+        userId = namespace.resolveUserId(userId);
+        if (namespace.isPerUser() && userId != UserHandle.myUserId()) {
+            return null;
+        }
+        Bucket bucket = getBucket(resolver, namespace, userId);
+        PendingLoad load = new PendingLoad(namespace, bucket, keys.size());
+        for (String key : keys) {
+            // A key another load is already fetching is left to that one
+            if (!bucket.mValues.containsKey(key)
+                    && bucket.mLoading.putIfAbsent(key, load.mDone) == null) {
+                load.mKeys.add(key);
+            }
+        }
+        if (load.mKeys.isEmpty()) {
+            return null;
+        }
+        return load;
+    }
+
+    /**
+     * Runs a load announced by {@link #beginLoad}. If the table changes while
+     * it is being read the values can't be trusted, so the query is repeated
+     * rather than leaving every key to a provider call of its own.
+     *
+     * @return the number of keys that were loaded
+     */
+    public int load(ContentResolver resolver, PendingLoad load) {
+        final SettingsNamespace namespace = load.mNamespace;
+        final Bucket bucket = load.mBucket;
+        for (int attempt = 0; attempt < MAX_LOAD_ATTEMPTS; attempt++) {
+            int generation = bucket.mGeneration.get();
+            HashMap<String, String> values = new HashMap<>(load.mKeys.size());
+            // The settings providers only accept a null selection for table
+            // queries, so read the whole table and keep what we asked for.
+            long start = SystemClock.elapsedRealtimeNanos();
+            try (Cursor cursor = resolver.query(namespace.getContentUri(), PREFETCH_PROJECTION,
+                    null, null, null)) {
+                if (cursor == null) {
+                    return 0;
+                }
+                while (cursor.moveToNext()) {
+                    values.put(cursor.getString(0), cursor.getString(1));
+                }
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Bulk query of " + namespace + " failed", e);
+                return 0;
+            }
+            SettingsStats.recordRead(namespace, PREFETCH_KEY,
+                    SystemClock.elapsedRealtimeNanos() - start);
+            if (generation != bucket.mGeneration.get()) {
+                // Something changed while we were reading
+                continue;
+            }
+            for (String key : load.mKeys) {
+                String value = values.get(key);
+                bucket.mValues.putIfAbsent(key, value == null ? ABSENT : value);
+            }
+            return load.mKeys.size();
+        }
+        Log.w(TAG, namespace + " kept changing, leaving " + load.mKeys.size()
+                + " keys to per key reads");
+        return 0;
+    }
+
+    /**
+     * Marks a load as done, whether it succeeded or not, and wakes up the
+     * reads waiting for it.
+     */
+    public void endLoad(PendingLoad load) {
+        for (String key : load.mKeys) {
+            load.mBucket.mLoading.remove(key, load.mDone);
+        }
+        load.mDone.countDown();
+    }
+
+    private static boolean awaitLoad(CountDownLatch latch) {
+        try {
+            if (latch.await(PENDING_LOAD_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+            Log.w(TAG, "Timed out waiting for a settings load");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Drops the cached value of {@code key}, or the whole bucket if key is null.
+     */
+    public void invalidate(SettingsNamespace namespace, String key, int userId) {
+        Bucket bucket = mBuckets[namespace.ordinal()].get(namespace.resolveUserId(userId));
+        if (bucket != null) {
+            bucket.invalidate(key);
+        }
+    }
+
+    public void invalidateAll() {
+        for (ConcurrentHashMap<Integer, Bucket> buckets : mBuckets) {
+            for (Bucket bucket : buckets.values()) {
+                bucket.invalidate(null);
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return mHits.get();
+    }
+
+    public long getMissCount() {
+        return mMisses.get();
+    }
+
+    public void resetCounters() {
+        mHits.set(0);
+        mMisses.set(0);
+    }
+
+    private Bucket getBucket(ContentResolver resolver, SettingsNamespace namespace, int userId) {
+        ConcurrentHashMap<Integer, Bucket> buckets = mBuckets[namespace.ordinal()];
+        Bucket bucket = buckets.get(userId);
+        if (bucket == null) {
+            synchronized (buckets) {
+                bucket = buckets.get(userId);
+                if (bucket == null) {
+                    bucket = new Bucket();
+                    // Register before the bucket becomes visible so no change
+                    // can slip in between the first read and the observer.
+                    resolver.registerContentObserver(namespace.getContentUri(), true,
+                            bucket, userId);
+                    buckets.put(userId, bucket);
+                }
+            }
+        }
+        return bucket;
+    }
+
+    /**
+     * A bulk load of some keys of one bucket, see {@link #beginLoad}.
+     */
+    public static final class PendingLoad {
+        final SettingsNamespace mNamespace;
+        final Bucket mBucket;
+        final ArrayList<String> mKeys;
+        final CountDownLatch mDone = new CountDownLatch(1);
+
+        PendingLoad(SettingsNamespace namespace, Bucket bucket, int capacity) {
+            mNamespace = namespace;
+            mBucket = bucket;
+            mKeys = new ArrayList<>(capacity);
+        }
+    }
+
+    private static final class Bucket extends ContentObserver {
+        final ConcurrentHashMap<String, String> mValues = new ConcurrentHashMap<>();
+        final AtomicInteger mGeneration = new AtomicInteger();
+        // Keys a bulk load is fetching right now, mapped to its latch
+        final ConcurrentHashMap<String, CountDownLatch> mLoading = new ConcurrentHashMap<>();
+
+        Bucket() {
+            // Called on a binder thread, the maps are safe to touch from there.
+            super(null);
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            invalidate(uri == null ? null : uri.getLastPathSegment());
+        }
+
+        void invalidate(String key) {
+            mGeneration.incrementAndGet();
+            if (key == null) {
+                mValues.clear();
+            } else {
+                mValues.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SettingsCache{hits=" + mHits.get() + ", misses=" + mMisses.get() + "}";
+    }
+}
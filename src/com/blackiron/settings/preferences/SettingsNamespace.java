@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2016-2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackiron.settings.preferences;
+
+import android.app.ActivityManager;
+import android.content.BroadcastReceiver;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+import android.os.UserHandle;
+import android.provider.Settings;
+
+import lineageos.providers.LineageSettings;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The settings tables backing our preference stores. Every value is kept as a
+ * string by the providers, so this is the only place that talks to them.
+ */
+public enum SettingsNamespace {
+
+    SYSTEM(Settings.System.CONTENT_URI, true) {
+        @Override
+        String getStringForUser(ContentResolver resolver, String key, int userId) {
+            return Settings.System.getStringForUser(resolver, key, userId);
+        }
+
+        @Override
+        boolean putStringForUser(ContentResolver resolver, String key, String value, int userId) {
+            return Settings.System.putStringForUser(resolver, key, value, userId);
+        }
+    },
+
+    SECURE(Settings.Secure.CONTENT_URI, true) {
+        @Override
+        String getStringForUser(ContentResolver resolver, String key, int userId) {
+            return Settings.Secure.getStringForUser(resolver, key, userId);
+        }
+
+        @Override
+        boolean putStringForUser(ContentResolver resolver, String key, String value, int userId) {
+            return Settings.Secure.putStringForUser(resolver, key, value, userId);
+        }
+    },
+
+    GLOBAL(Settings.Global.CONTENT_URI, false) {
+        @Override
+        String getStringForUser(ContentResolver resolver, String key, int userId) {
+            return Settings.Global.getString(resolver, key);
+        }
+
+        @Override
+        boolean putStringForUser(ContentResolver resolver, String key, String value, int userId) {
+            return Settings.Global.putString(resolver, key, value);
+        }
+    },
+
+    LINEAGE_SYSTEM(LineageSettings.System.CONTENT_URI, true) {
+        @Override
+        String getStringForUser(ContentResolver resolver, String key, int userId) {
+            return LineageSettings.System.getStringForUser(resolver, key, userId);
+        }
+
+        @Override
+        boolean putStringForUser(ContentResolver resolver, String key, String value, int userId) {
+            return LineageSettings.System.putStringForUser(resolver, key, value, userId);
+        }
+    },
+
+    LINEAGE_SECURE(LineageSettings.Secure.CONTENT_URI, true) {
+        @Override
+        String getStringForUser(ContentResolver resolver, String key, int userId) {
+            return LineageSettings.Secure.getStringForUser(resolver, key, userId);
+        }
+
+        @Override
+        boolean putStringForUser(ContentResolver resolver, String key, String value, int userId) {
+            return LineageSettings.Secure.putStringForUser(resolver, key, value, userId);
+        }
+    };
+
+    // The current user, USER_NULL until trackCurrentUser() is watching for
+    // switches. Resolving USER_CURRENT is done on every read, cache hits
+    // included, and asking ActivityManager may be a binder call.
+    private static final AtomicInteger sCurrentUserId = new AtomicInteger(UserHandle.USER_NULL);
+    private static final AtomicBoolean sTrackingUser = new AtomicBoolean();
+
+    private final Uri mContentUri;
+    private final boolean mPerUser;
+
+    SettingsNamespace(Uri contentUri, boolean perUser) {
+        mContentUri = contentUri;
+        mPerUser = perUser;
+    }
+
+    public Uri getContentUri() {
+        return mContentUri;
+    }
+
+    public boolean isPerUser() {
+        return mPerUser;
+    }
+
+    /**
+     * Resolves {@link UserHandle#USER_CURRENT} to a real user id. Global settings
+     * are shared by all users and always map to the system user.
+     */
+    public int resolveUserId(int userId) {
+        if (!mPerUser) {
+            return UserHandle.USER_SYSTEM;
+        }
+        if (userId != UserHandle.USER_CURRENT) {
+            return userId;
+        }
+        final int current = sCurrentUserId.get();
+        return current != UserHandle.USER_NULL ? current : ActivityManager.getCurrentUser();
+    }
+
+    /**
+     * Starts keeping the current user id in memory, updated on every user
+     * switch. Called by the entry points that have a Context, only the first
+     * call does anything.
+     */
+    public static void trackCurrentUser(Context context) {
+        if (!sTrackingUser.compareAndSet(false, true)) {
+            return;
+        }
+        // Register first so a switch right after the initial read isn't missed
+        context.getApplicationContext().registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                sCurrentUserId.set(intent.getIntExtra(Intent.EXTRA_USER_HANDLE,
+                        ActivityManager.getCurrentUser()));
+            }
+        }, new IntentFilter(Intent.ACTION_USER_SWITCHED));
+        sCurrentUserId.compareAndSet(UserHandle.USER_NULL, ActivityManager.getCurrentUser());
+    }
+
+    abstract String getStringForUser(ContentResolver resolver, String key, int userId);
+
+    abstract boolean putStringForUser(ContentResolver resolver, String key, String value,
+            int userId);
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2016-2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackiron.settings.preferences;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.res.XmlResourceParser;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.Trace;
+import android.os.UserHandle;
+import android.util.Log;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Loads the persisted values of a preference screen into {@link SettingsCache}
+ * before it is inflated. Preferences read their value while the screen is being
+ * inflated, so the keys are taken from the screen's XML, grouped by the table
+ * backing their preference class and loaded with one query per table. Queries
+ * run on a thread of their own; the main thread only looks up the cache and,
+ * if the load of that key is still running, waits for it instead of querying
+ * itself.
+ */
+public final class SettingsPrefetcher {
+    private static final String TAG = "SettingsPrefetcher";
+
+    private static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+    private static final String PREFERENCES_PACKAGE = "com.blackiron.settings.preferences.";
+
+    // Keys per namespace, keyed by screen resource id. Parsing is cheap but
+    // there is no reason to do it again every time a screen is opened.
+    private static final HashMap<Integer, Map<SettingsNamespace, ArrayList<String>>> sScreenKeys =
+            new HashMap<>();
+
+    private static Handler sHandler;
+
+    private SettingsPrefetcher() {
+    }
+
+    private static synchronized Handler getHandler() {
+        if (sHandler == null) {
+            // Default priority, a screen being bound may be waiting for it
+            HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_DEFAULT);
+            thread.start();
+            sHandler = new Handler(thread.getLooper());
+        }
+        return sHandler;
+    }
+
+    /**
+     * Starts loading the values of the given screen in the background and
+     * returns right away. Reads of the screen's keys that miss the cache until
+     * the load is done wait for it, see {@link SettingsCache#beginLoad}. The
+     * keys are announced before returning, so the screen's keys are parsed
+     * here the first time; {@link #prefetchAsync} usually did that already.
+     * Keys that are already cached are skipped, so this is close to free after
+     * {@link #prefetchAsync} has run.
+     */
+    public static void prefetch(Context context, int xmlResId) {
+        SettingsNamespace.trackCurrentUser(context);
+        final ContentResolver resolver = context.getApplicationContext().getContentResolver();
+        final SettingsCache cache = SettingsCache.getInstance();
+        final ArrayList<SettingsCache.PendingLoad> loads = new ArrayList<>();
+        for (Map.Entry<SettingsNamespace, ArrayList<String>> entry :
+                getScreenKeys(context, xmlResId).entrySet()) {
+            SettingsCache.PendingLoad load = cache.beginLoad(resolver, entry.getKey(),
+                    entry.getValue(), UserHandle.USER_CURRENT);
+            if (load != null) {
+                loads.add(load);
+            }
+        }
+        if (loads.isEmpty()) {
+            return;
+        }
+        getHandler().post(() -> {
+            Trace.beginSection(TAG + "#load");
+            try {
+                for (SettingsCache.PendingLoad load : loads) {
+                    try {
+                        cache.load(resolver, load);
+                    } finally {
+                        cache.endLoad(load);
+                    }
+                }
+            } finally {
+                Trace.endSection();
+            }
+        });
+    }
+
+    /**
+     * Loads the values of the given screens in the background, so they are
+     * ready by the time the user opens one of them. Nothing waits for these.
+     */
+    public static void prefetchAsync(Context context, int... xmlResIds) {
+        SettingsNamespace.trackCurrentUser(context);
+        final Context appContext = context.getApplicationContext();
+        getHandler().post(() -> {
+            for (int xmlResId : xmlResIds) {
+                load(appContext, xmlResId);
+            }
+        });
+    }
+
+    private static void load(Context context, int xmlResId) {
+        Trace.beginSection(TAG + "#load");
+        try {
+            final ContentResolver resolver =
+                    context.getApplicationContext().getContentResolver();
+            final SettingsCache cache = SettingsCache.getInstance();
+            for (Map.Entry<SettingsNamespace, ArrayList<String>> entry :
+                    getScreenKeys(context, xmlResId).entrySet()) {
+                cache.prefetch(resolver, entry.getKey(), entry.getValue(),
+                        UserHandle.USER_CURRENT);
+            }
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    private static Map<SettingsNamespace, ArrayList<String>> getScreenKeys(Context context,
+            int xmlResId) {
+        synchronized (sScreenKeys) {
+            Map<SettingsNamespace, ArrayList<String>> keys = sScreenKeys.get(xmlResId);
+            if (keys == null) {
+                keys = parseScreenKeys(context, xmlResId);
+                sScreenKeys.put(xmlResId, keys);
+            }
+            return keys;
+        }
+    }
+
+    private static Map<SettingsNamespace, ArrayList<String>> parseScreenKeys(Context context,
+            int xmlResId) {
+        final HashMap<SettingsNamespace, ArrayList<String>> keys = new HashMap<>();
+        try (XmlResourceParser parser = context.getResources().getXml(xmlResId)) {
+            int type;
+            while ((type = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (type != XmlPullParser.START_TAG) {
+                    continue;
+                }
+                SettingsNamespace namespace = getNamespace(parser.getName());
+                String key = parser.getAttributeValue(ANDROID_NS, "key");
+                if (namespace == null || key == null) {
+                    continue;
+                }
+                ArrayList<String> list = keys.get(namespace);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    keys.put(namespace, list);
+                }
+                list.add(key);
+            }
+        } catch (XmlPullParserException | IOException e) {
+            Log.w(TAG, "Unable to parse screen " + xmlResId, e);
+        }
+        return keys;
+    }
+
+    /**
+     * Maps one of our settings backed preference classes to its table, or
+     * returns null for anything that doesn't read through {@link SettingsCache}.
+     */
+    private static SettingsNamespace getNamespace(String tag) {
+        if (!tag.startsWith(PREFERENCES_PACKAGE)) {
+            return null;
+        }
+        String name = tag.substring(tag.lastIndexOf('.') + 1);
+        if (name.startsWith("LineageSystemSetting")) {
+            return SettingsNamespace.LINEAGE_SYSTEM;
+        } else if (name.startsWith("LineageSecureSetting")) {
+            return SettingsNamespace.LINEAGE_SECURE;
+        } else if (name.startsWith("SystemSetting")) {
+            return SettingsNamespace.SYSTEM;
+        } else if (name.startsWith("SecureSetting")) {
+            return SettingsNamespace.SECURE;
+        } else if (name.startsWith("GlobalSetting")) {
+            return SettingsNamespace.GLOBAL;
+        }
+        return null;
+    }
+}
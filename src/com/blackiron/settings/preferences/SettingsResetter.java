@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2016-2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackiron.settings.preferences;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.os.UserHandle;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies a {@link ResetSpec} off the main thread. Keys that already hold their
+ * default are skipped, so a reset only costs as many provider writes as there
+ * are values that actually changed, and the changed keys are announced with a
+ * single {@link SettingsTransaction#COMMIT_MARKER} update.
+ */
+public final class SettingsResetter {
+    private static final String TAG = "SettingsResetter";
+
+    // Report progress every this many entries to avoid flooding the main thread
+    private static final int PROGRESS_STEP = 16;
+
+    public interface Callback {
+        void onResetProgress(int done, int total);
+
+        void onResetComplete(Result result);
+    }
+
+    public static final class Result {
+        public final int total;
+        public final int written;
+        public final int skipped;
+        public final int failed;
+        public final long elapsedMs;
+
+        Result(int total, int written, int skipped, int failed, long elapsedMs) {
+            this.total = total;
+            this.written = written;
+            this.skipped = skipped;
+            this.failed = failed;
+            this.elapsedMs = elapsedMs;
+        }
+
+        @Override
+        public String toString() {
+            return "Reset " + total + " keys in " + elapsedMs + "ms: " + written + " written, "
+                    + skipped + " already default, " + failed + " failed";
+        }
+    }
+
+    private SettingsResetter() {
+    }
+
+    public static void reset(Context context, ResetSpec spec) {
+        reset(context, spec, null);
+    }
+
+    /**
+     * Queues {@code spec} behind any pending store writes and applies it on the
+     * settings writer thread. The callback, if any, is invoked on the main thread.
+     */
+    public static void reset(Context context, final ResetSpec spec, final Callback callback) {
+        SettingsNamespace.trackCurrentUser(context);
+        final ContentResolver resolver = context.getApplicationContext().getContentResolver();
+        final Handler mainHandler = callback != null ? new Handler(Looper.getMainLooper()) : null;
+        SettingsWriter.getInstance().post(() -> {
+            final Result result = apply(resolver, spec, callback, mainHandler);
+            Log.i(TAG, result.toString());
+            if (callback != null) {
+                mainHandler.post(() -> callback.onResetComplete(result));
+            }
+        });
+    }
+
+    /**
+     * Writes every entry of {@code spec} that differs from its current value and
+     * publishes them as one group through {@link SettingsTransaction}. Must run
+     * on the settings writer thread.
+     */
+    static Result apply(ContentResolver resolver, ResetSpec spec,
+            final Callback callback, Handler mainHandler) {
+        final long start = SystemClock.elapsedRealtime();
+        final SettingsCache cache = SettingsCache.getInstance();
+        final List<ResetSpec.Entry> entries = spec.getEntries();
+        final int total = entries.size();
+        final ArrayList<String> changedKeys = new ArrayList<>();
+        int written = 0;
+        int skipped = 0;
+        int failed = 0;
+        for (int i = 0; i < total; i++) {
+            ResetSpec.Entry entry = entries.get(i);
+            try {
+                String current = cache.getString(resolver, entry.namespace, entry.key,
+                        UserHandle.USER_CURRENT);
+                if (entry.isDefault(current)) {
+                    skipped++;
+                } else if (cache.putString(resolver, entry.namespace, entry.key,
+                        entry.defValue, UserHandle.USER_CURRENT)) {
+                    changedKeys.add(entry.key);
+                    written++;
+                } else {
+                    failed++;
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to reset " + entry.key, e);
+                failed++;
+            }
+            final int done = i + 1;
+            if (callback != null && (done % PROGRESS_STEP == 0 || done == total)) {
+                mainHandler.post(() -> callback.onResetProgress(done, total));
+            }
+        }
+        try {
+            SettingsTransaction.publishCommitMarker(resolver, changedKeys, total);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to publish commit marker", e);
+        }
+        for (Runnable action : spec.getPostResetActions()) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Post reset action failed", e);
+            }
+        }
+        return new Result(total, written, skipped, failed, SystemClock.elapsedRealtime() - start);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2016-2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackiron.settings.preferences;
+
+import android.os.Looper;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per key counters for the settings reads and writes done through
+ * {@link SettingsCache} and {@link InstrumentedSettings}. Provider calls are
+ * timed into a small latency histogram and split by whether they ran on the
+ * main thread, which is what we want to hunt down. Everything is lock free,
+ * recording costs a map lookup and a few atomic increments.
+ */
+public final class SettingsStats {
+
+    // Upper bounds of the histogram buckets in microseconds, the last bucket
+    // takes everything above.
+    private static final long[] BUCKET_LIMITS_US = { 100, 250, 500, 1000, 2500, 5000, 10000 };
+    private static final int BUCKET_COUNT = BUCKET_LIMITS_US.length + 1;
+
+    // One map per namespace, indexed by ordinal, so recording never has to
+    // build a combined key
+    @SuppressWarnings("unchecked")
+    private static final ConcurrentHashMap<String, KeyStats>[] sStats =
+            new ConcurrentHashMap[SettingsNamespace.values().length];
+
+    static {
+        for (int i = 0; i < sStats.length; i++) {
+            sStats[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    private SettingsStats() {
+    }
+
+    /**
+     * Records a read that was served from memory.
+     */
+    static void recordHit(SettingsNamespace namespace, String key) {
+        getStats(namespace, key).mCounters.incrementAndGet(KeyStats.HITS);
+    }
+
+    /**
+     * Records a read that went to the provider and took {@code nanos}.
+     */
+    static void recordRead(SettingsNamespace namespace, String key, long nanos) {
+        getStats(namespace, key).record(KeyStats.READS, nanos);
+    }
+
+    /**
+     * Records a write that went to the provider and took {@code nanos}.
+     */
+    static void recordWrite(SettingsNamespace namespace, String key, long nanos) {
+        getStats(namespace, key).record(KeyStats.WRITES, nanos);
+    }
+
+    public static void reset() {
+        for (ConcurrentHashMap<String, KeyStats> stats : sStats) {
+            stats.clear();
+        }
+    }
+
+    /**
+     * Writes the counters in a dumpsys like format, keys with the most main
+     * thread provider time first.
+     */
+    public static void dump(String prefix, PrintWriter pw) {
+        ArrayList<KeyStats> stats = new ArrayList<>();
+        for (ConcurrentHashMap<String, KeyStats> namespaceStats : sStats) {
+            stats.addAll(namespaceStats.values());
+        }
+        Collections.sort(stats, (a, b) -> Long.compare(b.getMainThreadNanos(),
+                a.getMainThreadNanos()));
+        pw.print(prefix);
+        pw.println("Settings I/O (" + stats.size() + " keys):");
+        pw.print(prefix);
+        pw.print("  histogram buckets (us): ");
+        for (long limit : BUCKET_LIMITS_US) {
+            pw.print("<=" + limit + " ");
+        }
+        pw.println(">" + BUCKET_LIMITS_US[BUCKET_LIMITS_US.length - 1]);
+        for (KeyStats keyStats : stats) {
+            keyStats.dump(prefix + "  ", pw);
+        }
+        pw.print(prefix);
+        pw.println("Transactions: commits=" + SettingsTransaction.getCommitCount()
+                + " skippedWrites=" + SettingsTransaction.getSkippedWriteCount()
+                + " coalescedCallbacks=" + SettingsTransaction.getCoalescedCallbackCount());
+        pw.flush();
+    }
+
+    private static KeyStats getStats(SettingsNamespace namespace, String key) {
+        ConcurrentHashMap<String, KeyStats> namespaceStats = sStats[namespace.ordinal()];
+        KeyStats stats = namespaceStats.get(key);
+        if (stats == null) {
+            KeyStats created = new KeyStats(namespace, key);
+            stats = namespaceStats.putIfAbsent(key, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    private static int getBucket(long nanos) {
+        long micros = nanos / 1000;
+        for (int i = 0; i < BUCKET_LIMITS_US.length; i++) {
+            if (micros <= BUCKET_LIMITS_US[i]) {
+                return i;
+            }
+        }
+        return BUCKET_LIMITS_US.length;
+    }
+
+    private static final class KeyStats {
+        // Indexes into mCounters
+        static final int HITS = 0;
+        static final int READS = 1;
+        static final int WRITES = 2;
+        static final int MAIN_READS = 3;
+        static final int MAIN_WRITES = 4;
+        static final int READ_NANOS = 5;
+        static final int WRITE_NANOS = 6;
+        static final int MAIN_NANOS = 7;
+        static final int COUNTER_COUNT = 8;
+
+        final SettingsNamespace mNamespace;
+        final String mKey;
+        final AtomicLongArray mCounters = new AtomicLongArray(COUNTER_COUNT);
+        final AtomicLongArray mReadHistogram = new AtomicLongArray(BUCKET_COUNT);
+        final AtomicLongArray mWriteHistogram = new AtomicLongArray(BUCKET_COUNT);
+
+        KeyStats(SettingsNamespace namespace, String key) {
+            mNamespace = namespace;
+            mKey = key;
+        }
+
+        void record(int type, long nanos) {
+            final boolean write = type == WRITES;
+            mCounters.incrementAndGet(type);
+            mCounters.addAndGet(write ? WRITE_NANOS : READ_NANOS, nanos);
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                mCounters.incrementAndGet(write ? MAIN_WRITES : MAIN_READS);
+                mCounters.addAndGet(MAIN_NANOS, nanos);
+            }
+            (write ? mWriteHistogram : mReadHistogram).incrementAndGet(getBucket(nanos));
+        }
+
+        long getMainThreadNanos() {
+            return mCounters.get(MAIN_NANOS);
+        }
+
+        void dump(String prefix, PrintWriter pw) {
+            pw.print(prefix);
+            pw.println(mNamespace + "/" + mKey + ": hits=" + mCounters.get(HITS)
+                    + " reads=" + mCounters.get(READS)
+                    + " (main " + mCounters.get(MAIN_READS) + ")"
+                    + " writes=" + mCounters.get(WRITES)
+                    + " (main " + mCounters.get(MAIN_WRITES) + ")"
+                    + " mainMs=" + mCounters.get(MAIN_NANOS) / 1000000f);
+            dumpHistogram(prefix + "  read ", mReadHistogram, mCounters.get(READ_NANOS), pw);
+            dumpHistogram(prefix + "  write ", mWriteHistogram, mCounters.get(WRITE_NANOS), pw);
+        }
+
+        private static void dumpHistogram(String prefix, AtomicLongArray histogram,
+                long totalNanos, PrintWriter pw) {
+            long count = 0;
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < histogram.length(); i++) {
+                long value = histogram.get(i);
+                count += value;
+                sb.append(value).append(i == histogram.length() - 1 ? "" : " ");
+            }
+            if (count == 0) {
+                return;
+            }
+            pw.print(prefix);
+            pw.println("[" + sb + "] avgUs=" + totalNanos / count / 1000);
+        }
+    }
+}
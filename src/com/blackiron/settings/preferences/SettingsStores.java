@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016-2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackiron.settings.preferences;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.os.UserHandle;
+import android.util.SparseArray;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process wide registry of settings stores, one per namespace and user. The
+ * settings backed preferences draw their store from here instead of building
+ * their own, so every preference on a screen shares the same cache, write
+ * queue and counters.
+ */
+public final class SettingsStores {
+
+    @SuppressWarnings("unchecked")
+    private static final SparseArray<BaseSettingsStore>[] sStores =
+            new SparseArray[SettingsNamespace.values().length];
+
+    private static final AtomicLong sLookups = new AtomicLong();
+    private static final AtomicLong sCreated = new AtomicLong();
+
+    private SettingsStores() {
+    }
+
+    public static BaseSettingsStore get(Context context, SettingsNamespace namespace) {
+        SettingsNamespace.trackCurrentUser(context);
+        final int userId = namespace.resolveUserId(UserHandle.USER_CURRENT);
+        sLookups.incrementAndGet();
+        synchronized (sStores) {
+            SparseArray<BaseSettingsStore> stores = sStores[namespace.ordinal()];
+            if (stores == null) {
+                stores = new SparseArray<>();
+                sStores[namespace.ordinal()] = stores;
+            }
+            BaseSettingsStore store = stores.get(userId);
+            if (store == null) {
+                // The store outlives any screen, don't let it hold on to an activity
+                store = create(context.getApplicationContext().getContentResolver(),
+                        namespace, userId);
+                stores.put(userId, store);
+                sCreated.incrementAndGet();
+            }
+            return store;
+        }
+    }
+
+    private static BaseSettingsStore create(ContentResolver resolver, SettingsNamespace namespace,
+            int userId) {
+        switch (namespace) {
+            case SECURE:
+                return new SecureSettingsStore(resolver, userId);
+            case GLOBAL:
+                return new GlobalSettingsStore(resolver, userId);
+            case LINEAGE_SYSTEM:
+                return new LineageSystemSettingsStore(resolver, userId);
+            case LINEAGE_SECURE:
+                return new LineageSecureSettingsStore(resolver, userId);
+            case SYSTEM:
+            default:
+                return new SystemSettingsStore(resolver, userId);
+        }
+    }
+
+    /**
+     * Number of store lookups made by preferences since process start.
+     */
+    public static long getLookupCount() {
+        return sLookups.get();
+    }
+
+    /**
+     * Number of store instances actually allocated since process start.
+     */
+    public static long getCreatedCount() {
+        return sCreated.get();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2016-2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackiron.settings.preferences;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.UserHandle;
+import android.provider.Settings;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Groups writes to several settings keys. On commit the keys whose value
+ * actually changes are written in one pass on the settings writer thread, then
+ * {@link #COMMIT_MARKER} is updated once with the list of changed keys. The
+ * provider has no bulk write, so observers of the individual keys still see
+ * them change one by one; consumers that observe the marker instead get one
+ * callback per group, only after every key of it has landed.
+ */
+public final class SettingsTransaction {
+    private static final String TAG = "SettingsTransaction";
+
+    /**
+     * Settings.System key rewritten after every committed group, with a value
+     * of the form {@code <sequence>:<key>,<key>,...}.
+     */
+    public static final String COMMIT_MARKER = "blackiron_settings_commit";
+
+    private static final AtomicLong sSequence = new AtomicLong(System.currentTimeMillis());
+    private static final AtomicLong sCommits = new AtomicLong();
+    private static final AtomicLong sSkippedWrites = new AtomicLong();
+    private static final AtomicLong sCoalescedCallbacks = new AtomicLong();
+
+    private final ContentResolver mResolver;
+    // Target values, diffed against the current ones on commit just like a reset.
+    private final ResetSpec mWrites = new ResetSpec();
+    private boolean mCommitted;
+
+    private SettingsTransaction(ContentResolver resolver) {
+        mResolver = resolver;
+    }
+
+    public static SettingsTransaction begin(Context context) {
+        SettingsNamespace.trackCurrentUser(context);
+        return new SettingsTransaction(context.getApplicationContext().getContentResolver());
+    }
+
+    public SettingsTransaction putInt(SettingsNamespace namespace, String key, int value) {
+        checkNotCommitted();
+        mWrites.putInt(namespace, key, value);
+        return this;
+    }
+
+    public SettingsTransaction putFloat(SettingsNamespace namespace, String key, float value) {
+        checkNotCommitted();
+        mWrites.putFloat(namespace, key, value);
+        return this;
+    }
+
+    public SettingsTransaction putString(SettingsNamespace namespace, String key, String value) {
+        checkNotCommitted();
+        mWrites.putString(namespace, key, value);
+        return this;
+    }
+
+    /**
+     * Adds every entry of {@code spec}, and its post reset actions, to the group.
+     */
+    public SettingsTransaction putAll(ResetSpec spec) {
+        checkNotCommitted();
+        for (ResetSpec.Entry entry : spec.getEntries()) {
+            mWrites.putString(entry.namespace, entry.key, entry.defValue);
+        }
+        for (Runnable action : spec.getPostResetActions()) {
+            mWrites.runAfter(action);
+        }
+        return this;
+    }
+
+    public void commit() {
+        commit(null);
+    }
+
+    /**
+     * Applies the group behind any pending store writes. {@code onCommitted}, if
+     * set, runs on the main thread once every value has reached the provider.
+     */
+    public void commit(final Runnable onCommitted) {
+        checkNotCommitted();
+        mCommitted = true;
+        final Handler mainHandler = onCommitted != null ? new Handler(Looper.getMainLooper()) : null;
+        SettingsWriter.getInstance().post(() -> {
+            SettingsResetter.Result result = SettingsResetter.apply(mResolver, mWrites, null, null);
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Committed " + result.written + "/" + result.total + " keys in "
+                        + result.elapsedMs + "ms");
+            }
+            if (onCommitted != null) {
+                mainHandler.post(onCommitted);
+            }
+        });
+    }
+
+    private void checkNotCommitted() {
+        if (mCommitted) {
+            throw new IllegalStateException("Transaction already committed");
+        }
+    }
+
+    /**
+     * Publishes the commit marker for a group that changed {@code changedKeys}
+     * out of {@code requested} keys. Called on the writer thread.
+     */
+    static void publishCommitMarker(ContentResolver resolver, List<String> changedKeys,
+            int requested) {
+        sCommits.incrementAndGet();
+        sSkippedWrites.addAndGet(requested - changedKeys.size());
+        if (changedKeys.isEmpty()) {
+            return;
+        }
+        sCoalescedCallbacks.addAndGet(changedKeys.size() - 1);
+        String value = sSequence.incrementAndGet() + ":" + String.join(",", changedKeys);
+        SettingsCache.getInstance().putString(resolver, SettingsNamespace.SYSTEM, COMMIT_MARKER,
+                value, UserHandle.USER_CURRENT);
+    }
+
+    public static long getCommitCount() {
+        return sCommits.get();
+    }
+
+    /**
+     * Writes dropped because the key already held the target value; every
+     * observer of such a key is spared one callback.
+     */
+    public static long getSkippedWriteCount() {
+        return sSkippedWrites.get();
+    }
+
+    /**
+     * Callbacks saved for observers of {@link #COMMIT_MARKER}, which see one
+     * change per group instead of one per written key.
+     */
+    public static long getCoalescedCallbackCount() {
+        return sCoalescedCallbacks.get();
+    }
+}
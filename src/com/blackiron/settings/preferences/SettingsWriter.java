@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2016-2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackiron.settings.preferences;
+
+import android.content.ContentResolver;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind queue for the settings stores. Writes are handed to a single
+ * background thread; a newer value for a key that is still queued replaces the
+ * older one, so a burst of writes to the same key costs one provider call.
+ * Until a write lands, {@link SettingsCache} serves the queued value.
+ */
+public final class SettingsWriter {
+    private static final String TAG = "SettingsWriter";
+
+    private static final long DEFAULT_FLUSH_TIMEOUT_MS = 2000;
+
+    private static volatile SettingsWriter sInstance;
+
+    private final Object mLock = new Object();
+    private final Handler mHandler;
+    // Guarded by mLock, in first-queued order.
+    private final LinkedHashMap<PendingKey, PendingWrite> mPending = new LinkedHashMap<>();
+    private boolean mDrainScheduled;
+
+    private final AtomicLong mQueued = new AtomicLong();
+    private final AtomicLong mCoalesced = new AtomicLong();
+    private final AtomicLong mWritten = new AtomicLong();
+
+    private final Runnable mDrain = this::drain;
+
+    private SettingsWriter() {
+        HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+    }
+
+    public static synchronized SettingsWriter getInstance() {
+        if (sInstance == null) {
+            sInstance = new SettingsWriter();
+        }
+        return sInstance;
+    }
+
+    public void enqueue(ContentResolver resolver, SettingsNamespace namespace, String key,
+            String value, int userId) {
+        PendingKey pendingKey = new PendingKey(namespace, namespace.resolveUserId(userId), key);
+        synchronized (mLock) {
+            mQueued.incrementAndGet();
+            if (mPending.put(pendingKey, new PendingWrite(resolver, value)) != null) {
+                mCoalesced.incrementAndGet();
+            }
+            if (!mDrainScheduled) {
+                mDrainScheduled = true;
+                mHandler.post(mDrain);
+            }
+        }
+    }
+
+    /**
+     * Returns the queued write for a key, or null if nothing is queued. The
+     * value of the returned write may itself be null.
+     */
+    static PendingWrite peekPending(SettingsNamespace namespace, String key, int userId) {
+        SettingsWriter writer = sInstance;
+        return writer == null ? null : writer.getPending(namespace, key, userId);
+    }
+
+    private PendingWrite getPending(SettingsNamespace namespace, String key, int userId) {
+        synchronized (mLock) {
+            if (mPending.isEmpty()) {
+                return null;
+            }
+            return mPending.get(new PendingKey(namespace, userId, key));
+        }
+    }
+
+    /**
+     * Runs {@code task} on the writer thread after everything queued so far.
+     */
+    void post(Runnable task) {
+        mHandler.post(task);
+    }
+
+    public boolean hasPendingWrites() {
+        synchronized (mLock) {
+            return !mPending.isEmpty();
+        }
+    }
+
+    /**
+     * Blocks until every write queued so far has reached the provider.
+     */
+    public boolean flush() {
+        return flush(DEFAULT_FLUSH_TIMEOUT_MS);
+    }
+
+    public boolean flush(long timeoutMs) {
+        if (Looper.myLooper() == mHandler.getLooper()) {
+            drain();
+            return true;
+        }
+        if (!hasPendingWrites()) {
+            return true;
+        }
+        final CountDownLatch latch = new CountDownLatch(1);
+        // The writer thread is serial, so this runs after the pending drain.
+        mHandler.post(latch::countDown);
+        try {
+            if (latch.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Log.w(TAG, "Timed out waiting for pending settings writes");
+        return false;
+    }
+
+    public long getQueuedCount() {
+        return mQueued.get();
+    }
+
+    public long getCoalescedCount() {
+        return mCoalesced.get();
+    }
+
+    public long getWrittenCount() {
+        return mWritten.get();
+    }
+
+    private void drain() {
+        final ArrayList<PendingKey> keys = new ArrayList<>();
+        final ArrayList<PendingWrite> writes = new ArrayList<>();
+        while (true) {
+            synchronized (mLock) {
+                if (mPending.isEmpty()) {
+                    mDrainScheduled = false;
+                    return;
+                }
+                keys.addAll(mPending.keySet());
+                writes.addAll(mPending.values());
+            }
+            final SettingsCache cache = SettingsCache.getInstance();
+            for (int i = 0; i < keys.size(); i++) {
+                PendingKey key = keys.get(i);
+                PendingWrite write = writes.get(i);
+                try {
+                    cache.putString(write.mResolver, key.mNamespace, key.mKey, write.mValue,
+                            key.mUserId);
+                    mWritten.incrementAndGet();
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Failed to write " + key.mKey, e);
+                }
+            }
+            synchronized (mLock) {
+                // Entries stay queued while in flight so reads keep seeing them;
+                // only drop the ones that were not replaced in the meantime.
+                for (int i = 0; i < keys.size(); i++) {
+                    mPending.remove(keys.get(i), writes.get(i));
+                }
+            }
+            keys.clear();
+            writes.clear();
+        }
+    }
+
+    static final class PendingWrite {
+        final ContentResolver mResolver;
+        final String mValue;
+
+        PendingWrite(ContentResolver resolver, String value) {
+            mResolver = resolver;
+            mValue = value;
+        }
+    }
+
+    private static final class PendingKey {
+        final SettingsNamespace mNamespace;
+        final int mUserId;
+        final String mKey;
+
+        PendingKey(SettingsNamespace namespace, int userId, String key) {
+            mNamespace = namespace;
+            mUserId = userId;
+            mKey = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PendingKey)) {
+                return false;
+            }
+            PendingKey other = (PendingKey) o;
+            return mNamespace == other.mNamespace && mUserId == other.mUserId
+                    && mKey.equals(other.mKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mNamespace, mUserId, mKey);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2016-2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.blackiron.settings.utils;
+
+import android.icu.text.AlphabeticIndex;
+import android.icu.text.CollationKey;
+import android.icu.text.Collator;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Locale aware sort keys and section letters for lists of labels. Compute a
+ * key once per label and compare the keys, instead of running a string
+ * comparison on every compare. Safe to use from any thread.
+ */
+public final class SortKeys {
+
+    private static Locale sLocale;
+    private static Collator sCollator;
+    private static AlphabeticIndex.ImmutableIndex<?> sIndex;
+
+    private SortKeys() {
+    }
+
+    public static CollationKey getCollationKey(CharSequence label) {
+        return getCollator().getCollationKey(label == null ? "" : label.toString());
+    }
+
+    /**
+     * Returns the index section a label falls into, e.g. "E" for "Éclair" in
+     * English or the matching kana row in Japanese.
+     */
+    public static String getSection(CharSequence label) {
+        if (TextUtils.isEmpty(label)) {
+            return "";
+        }
+        AlphabeticIndex.ImmutableIndex<?> index;
+        synchronized (SortKeys.class) {
+            update();
+            index = sIndex;
+        }
+        return index.getBucket(index.getBucketIndex(label)).getLabel();
+    }
+
+    /**
+     * Sorts labels in place, computing each key only once.
+     */
+    public static void sort(List<String> labels) {
+        final ArrayList<CollationKey> keys = new ArrayList<>(labels.size());
+        final Collator collator = getCollator();
+        for (String label : labels) {
+            keys.add(collator.getCollationKey(label));
+        }
+        Collections.sort(keys);
+        for (int i = 0; i < keys.size(); i++) {
+            labels.set(i, keys.get(i).getSourceString());
+        }
+    }
+
+    private static Collator getCollator() {
+        synchronized (SortKeys.class) {
+            update();
+            // Frozen, so it can be used outside the lock
+            return sCollator;
+        }
+    }
+
+    private static void update() {
+        final Locale locale = Locale.getDefault();
+        if (locale.equals(sLocale)) {
+            return;
+        }
+        sLocale = locale;
+        sCollator = Collator.getInstance(locale).freeze();
+        sIndex = new AlphabeticIndex<Object>(locale).buildImmutableIndex();
+    }
+}
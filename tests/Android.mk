@@ -0,0 +1,19 @@
+LOCAL_PATH := $(call my-dir)
+
+# Host side unit tests for the classes that don't touch the framework. The
+# classes under test are compiled in from ../src, so they must stay free of
+# android.* imports.
+include $(CLEAR_VARS)
+
+LOCAL_MODULE := BlackironSettingsHostTests
+LOCAL_MODULE_TAGS := tests
+
+LOCAL_SRC_FILES := \
+    $(call all-java-files-under, src) \
+    ../src/com/blackiron/settings/fragments/notifications/notificationlight/PackageLightList.java \
+    ../src/com/blackiron/settings/fragments/ui/doze/DozeRateLimiter.java \
+    ../src/com/blackiron/settings/fragments/ui/doze/PickupDetector.java
+
+LOCAL_STATIC_JAVA_LIBRARIES := junit-host
+
+include $(BUILD_HOST_JAVA_LIBRARY)
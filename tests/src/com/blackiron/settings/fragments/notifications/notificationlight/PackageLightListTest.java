@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blackiron.settings.fragments.notifications.notificationlight;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class PackageLightListTest {
+    private static final String[] EDGE_VALUES = {
+            "0", "1", "-1", "+7", "2147483647", "-2147483648", "2147483648", "-2147483649",
+            "99999999999999999999", "007", "-0", "", "-", "+", "1a", " 1", "--1", "+-1",
+    };
+
+    @Test
+    public void unchangedListEncodesToTheStoredValue() {
+        final String value = "com.a=-16711936;500;1000|com.b=255;1;2";
+        final PackageLightList list = PackageLightList.parse(value);
+        assertEquals(2, list.size());
+        assertEntry(list.get("com.a"), -16711936, 500, 1000);
+        assertEntry(list.get("com.b"), 255, 1, 2);
+        assertEquals(value, list.encode());
+    }
+
+    @Test
+    public void editedListParsesBackToTheSameEntries() {
+        final PackageLightList list = PackageLightList.parse("com.a=1;2;3|com.b=4;5;6");
+        assertTrue(list.put("com.a", 7, 8, 9));
+        assertTrue(list.put("com.c", 10, 11, 12));
+        assertTrue(list.remove("com.b"));
+        assertFalse(list.put("com.c", 10, 11, 12));
+        assertFalse(list.remove("com.b"));
+
+        final String encoded = list.encode();
+        assertEquals("com.a=7;8;9|com.c=10;11;12", encoded);
+        assertSameEntries(list, PackageLightList.parse(encoded));
+    }
+
+    @Test
+    public void nullAndEmptyValuesHaveNoEntries() {
+        assertEquals(0, PackageLightList.parse(null).size());
+        assertEquals("", PackageLightList.parse(null).encode());
+        assertEquals(0, PackageLightList.parse("").size());
+        assertEquals("", PackageLightList.parse("").encode());
+    }
+
+    @Test
+    public void negativeColorsRoundTrip() {
+        final PackageLightList list = PackageLightList.parse(
+                "com.a=-1;0;0|com.b=-2147483648;-5;-6");
+        assertEntry(list.get("com.a"), -1, 0, 0);
+        assertEntry(list.get("com.b"), Integer.MIN_VALUE, -5, -6);
+
+        list.put("com.c", 0xFF00FF00, 100, 200);
+        final PackageLightList parsed = PackageLightList.parse(list.encode());
+        assertEntry(parsed.get("com.c"), 0xFF00FF00, 100, 200);
+        assertSameEntries(list, parsed);
+    }
+
+    @Test
+    public void signsAreAcceptedLikeIntegerParseInt() {
+        final PackageLightList list = PackageLightList.parse("com.a=+5;-0;+0");
+        assertEntry(list.get("com.a"), 5, 0, 0);
+    }
+
+    @Test
+    public void overflowingNumbersAreKeptAsUnknownSegments() {
+        final String value = "com.a=2147483647;1;1|com.b=2147483648;1;1"
+                + "|com.c=-2147483649;1;1|com.d=1;99999999999999999999;1";
+        final PackageLightList list = PackageLightList.parse(value);
+        assertEquals(1, list.size());
+        assertEntry(list.get("com.a"), Integer.MAX_VALUE, 1, 1);
+        assertFalse(list.contains("com.b"));
+        assertFalse(list.contains("com.c"));
+        assertFalse(list.contains("com.d"));
+
+        list.put("com.e", 1, 2, 3);
+        assertEquals("com.a=2147483647;1;1|com.e=1;2;3|com.b=2147483648;1;1"
+                + "|com.c=-2147483649;1;1|com.d=1;99999999999999999999;1", list.encode());
+    }
+
+    @Test
+    public void duplicateNamesKeepTheFirstPositionAndTheLastValue() {
+        final String value = "com.a=1;1;1|com.b=2;2;2|com.a=3;3;3";
+        final PackageLightList list = PackageLightList.parse(value);
+        assertEquals(2, list.size());
+        assertEntry(list.get("com.a"), 3, 3, 3);
+        // Nothing was edited, so the stored value is written back as it was
+        assertEquals(value, list.encode());
+
+        list.put("com.b", 4, 4, 4);
+        assertEquals("com.a=3;3;3|com.b=4;4;4", list.encode());
+    }
+
+    @Test
+    public void emptySegmentsAreSkipped() {
+        final String value = "||com.a=1;2;3|||com.b=4;5;6|";
+        final PackageLightList list = PackageLightList.parse(value);
+        assertEquals(2, list.size());
+        assertEquals(value, list.encode());
+
+        list.remove("com.b");
+        assertEquals("com.a=1;2;3", list.encode());
+    }
+
+    @Test
+    public void unknownSegmentsArePreservedAfterEdits() {
+        final PackageLightList list = PackageLightList.parse(
+                "com.a=1;2;3|com.new=1;2;3;4|garbage|=1;2;3|com.b=1=2;3;4|com.c=x;1;1");
+        assertEquals(1, list.size());
+        assertNull(list.get("com.new"));
+        assertNull(list.get(""));
+
+        list.put("com.d", 5, 6, 7);
+        list.remove("com.a");
+        assertEquals("com.d=5;6;7|com.new=1;2;3;4|garbage|=1;2;3|com.b=1=2;3;4|com.c=x;1;1",
+                list.encode());
+    }
+
+    @Test
+    public void cachedParseIsNotAffectedByEdits() {
+        final String value = "com.a=1;2;3";
+        final PackageLightList first = PackageLightList.parse(value);
+        first.put("com.b", 4, 5, 6);
+        first.remove("com.a");
+
+        final PackageLightList second = PackageLightList.parse(value);
+        assertEquals(1, second.size());
+        assertEntry(second.get("com.a"), 1, 2, 3);
+        assertEquals(value, second.encode());
+    }
+
+    @Test
+    public void fuzzedValuesParseLikeTheSplitBasedParser() {
+        final Random random = new Random(0x5eed);
+        for (int i = 0; i < 5000; i++) {
+            final String value = randomValue(random);
+            final ArrayList<String> expectedUnknown = new ArrayList<>();
+            final LinkedHashMap<String, int[]> expected = referenceParse(value, expectedUnknown);
+
+            final PackageLightList list = PackageLightList.parse(value);
+            assertEquals(value, expected.size(), list.size());
+            for (Map.Entry<String, int[]> entry : expected.entrySet()) {
+                final int[] values = entry.getValue();
+                assertEntry(value, list.get(entry.getKey()), values[0], values[1], values[2]);
+            }
+            assertEquals(value, value, list.encode());
+
+            // After an edit the entries come first, then the unknown segments
+            list.put("fuzz", i, i, i);
+            expected.put("fuzz", new int[] { i, i, i });
+            final ArrayList<String> reencodedUnknown = new ArrayList<>();
+            assertEquals(value, new ArrayList<>(expected.keySet()),
+                    new ArrayList<>(referenceParse(list.encode(), reencodedUnknown).keySet()));
+            assertEquals(value, expectedUnknown, reencodedUnknown);
+        }
+    }
+
+    /**
+     * Rough cost of parsing a large list, printed rather than asserted so it
+     * can't make the run flaky.
+     */
+    @Test
+    public void parseFiveHundredEntries() {
+        final String[] values = { largeValue(500, 0), largeValue(500, 1) };
+        for (int i = 0; i < 200; i++) {
+            // Alternate between two values so the single value cache never hits
+            assertEquals(500, PackageLightList.parse(values[i & 1]).size());
+        }
+        final int iterations = 2000;
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            PackageLightList.parse(values[i & 1]);
+        }
+        final long perParse = (System.nanoTime() - start) / iterations;
+        System.out.println("PackageLightList.parse, 500 entries: " + perParse / 1000 + "us");
+    }
+
+    private static String largeValue(int count, int salt) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                builder.append('|');
+            }
+            builder.append("com.example.app").append(i).append('=')
+                    .append(0xFF000000 | (i * 2654435 + salt)).append(';')
+                    .append(i + salt).append(';').append(i * 2);
+        }
+        return builder.toString();
+    }
+
+    private static String randomValue(Random random) {
+        final StringBuilder builder = new StringBuilder();
+        final int segments = random.nextInt(6);
+        for (int i = 0; i < segments; i++) {
+            if (i > 0 || random.nextInt(8) == 0) {
+                builder.append('|');
+            }
+            if (random.nextBoolean()) {
+                builder.append("p").append(random.nextInt(4)).append('=')
+                        .append(randomNumber(random)).append(';')
+                        .append(randomNumber(random)).append(';')
+                        .append(randomNumber(random));
+            } else {
+                final String alphabet = "ab.=;|-+0123456789";
+                final int length = random.nextInt(12);
+                for (int j = 0; j < length; j++) {
+                    builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String randomNumber(Random random) {
+        switch (random.nextInt(3)) {
+            case 0:
+                return EDGE_VALUES[random.nextInt(EDGE_VALUES.length)];
+            case 1:
+                return Long.toString(random.nextLong() >> random.nextInt(64));
+            default:
+                return Integer.toString(random.nextInt());
+        }
+    }
+
+    /**
+     * The parser this class replaced, split based on Integer.parseInt, except
+     * that segments it couldn't parse are collected instead of dropped.
+     */
+    private static LinkedHashMap<String, int[]> referenceParse(String value,
+            List<String> unknown) {
+        final LinkedHashMap<String, int[]> entries = new LinkedHashMap<>();
+        for (String segment : value.split("\\|", -1)) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            final String[] app = segment.split("=", -1);
+            final String[] values = app.length == 2 ? app[1].split(";", -1) : null;
+            if (app[0].isEmpty() || values == null || values.length != 3) {
+                unknown.add(segment);
+                continue;
+            }
+            try {
+                entries.put(app[0], new int[] { Integer.parseInt(values[0]),
+                        Integer.parseInt(values[1]), Integer.parseInt(values[2]) });
+            } catch (NumberFormatException e) {
+                unknown.add(segment);
+            }
+        }
+        return entries;
+    }
+
+    private static void assertSameEntries(PackageLightList expected, PackageLightList actual) {
+        assertEquals(expected.size(), actual.size());
+        for (PackageLightList.Entry entry : expected.getEntries()) {
+            assertEntry(actual.get(entry.name), entry.color, entry.timeOn, entry.timeOff);
+        }
+    }
+
+    private static void assertEntry(PackageLightList.Entry entry, int color, int timeOn,
+            int timeOff) {
+        assertEntry(null, entry, color, timeOn, timeOff);
+    }
+
+    private static void assertEntry(String message, PackageLightList.Entry entry, int color,
+            int timeOn, int timeOff) {
+        assertTrue(message, entry != null);
+        assertEquals(message, color, entry.color);
+        assertEquals(message, timeOn, entry.timeOn);
+        assertEquals(message, timeOff, entry.timeOff);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blackiron.settings.fragments.ui.doze;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+public class DozeRateLimiterTest {
+    private static final long MS = 1000000L;
+
+    @Test
+    public void millisecondCooldownIsComparedInNanoseconds() {
+        final DozeRateLimiter limiter = new DozeRateLimiter("test", 1, TimeUnit.MILLISECONDS);
+        assertReplay(limiter, new long[] { 0, MS - 1, MS, 2 * MS - 1, 2 * MS },
+                new boolean[] { true, false, true, false, true });
+    }
+
+    @Test
+    public void nanosecondCooldown() {
+        final DozeRateLimiter limiter = new DozeRateLimiter("test", 500, TimeUnit.NANOSECONDS);
+        assertReplay(limiter, new long[] { 1000, 1001, 1499, 1500, 1999, 2000 },
+                new boolean[] { true, false, false, true, false, true });
+    }
+
+    @Test
+    public void zeroCooldownPassesEverything() {
+        final DozeRateLimiter limiter = new DozeRateLimiter("test", 0, TimeUnit.MILLISECONDS);
+        assertReplay(limiter, new long[] { 5, 5, 6, 6, 100 },
+                new boolean[] { true, true, true, true, true });
+        assertEquals(0, limiter.getSuppressedCount());
+    }
+
+    @Test
+    public void suppressedEventsDontExtendTheWindow() {
+        final DozeRateLimiter limiter = new DozeRateLimiter("test", 100, TimeUnit.MILLISECONDS);
+        // Were the window restarted by every suppressed event, nothing after
+        // the first one would ever pass at this rate
+        assertReplay(limiter, new long[] { 0, 30 * MS, 60 * MS, 90 * MS, 120 * MS, 150 * MS,
+                        180 * MS, 210 * MS, 240 * MS },
+                new boolean[] { true, false, false, false, true, false, false, false, true });
+    }
+
+    @Test
+    public void firstEventPassesRightAfterBoot() {
+        // Event timestamps count from boot, so the first one may well be
+        // smaller than the cooldown
+        final DozeRateLimiter limiter = new DozeRateLimiter("test", 1, TimeUnit.SECONDS);
+        assertReplay(limiter, new long[] { 5 * MS, 500 * MS, 1005 * MS },
+                new boolean[] { true, false, true });
+    }
+
+    @Test
+    public void largeTimestamps() {
+        final long base = Long.MAX_VALUE - 10 * MS;
+        final DozeRateLimiter limiter = new DozeRateLimiter("test", 2, TimeUnit.MILLISECONDS);
+        assertReplay(limiter, new long[] { base, base + MS, base + 2 * MS, base + 5 * MS },
+                new boolean[] { true, false, true, true });
+    }
+
+    @Test
+    public void dumpReportsTheCounters() {
+        final DozeRateLimiter limiter = new DozeRateLimiter("pickup", 1500, TimeUnit.MILLISECONDS);
+        limiter.tryAcquire(0);
+        limiter.tryAcquire(MS);
+        limiter.tryAcquire(2 * MS);
+
+        final StringWriter out = new StringWriter();
+        final PrintWriter pw = new PrintWriter(out);
+        limiter.dump(pw);
+        pw.flush();
+        assertEquals("  pickup: cooldown=1500ms passed=1 suppressed=2"
+                + System.lineSeparator(), out.toString());
+    }
+
+    private static void assertReplay(DozeRateLimiter limiter, long[] timestampsNs,
+            boolean[] expected) {
+        final boolean[] actual = new boolean[timestampsNs.length];
+        int passed = 0;
+        for (int i = 0; i < timestampsNs.length; i++) {
+            actual[i] = limiter.tryAcquire(timestampsNs[i]);
+            if (expected[i]) {
+                passed++;
+            }
+        }
+        assertEquals(Arrays.toString(expected), Arrays.toString(actual));
+        assertEquals(passed, limiter.getPassedCount());
+        assertEquals(timestampsNs.length - passed, limiter.getSuppressedCount());
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2024 BlackIron Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.blackiron.settings.fragments.ui.doze;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Replays accelerometer traces through the detector with the thresholds from
+ * blackiron_config.xml. The traces are built from rest, lift, settle and
+ * carrying segments with sensor noise, sampled at the configured rate.
+ */
+public class PickupDetectorTest {
+    private static final float GRAVITY = 9.81f;
+    private static final long NS_PER_MS = 1000000L;
+
+    // Defaults from res/values/blackiron_config.xml
+    private static final long SAMPLING_PERIOD_MS = 100;
+
+    private static PickupDetector newDetector() {
+        return new PickupDetector(300, 0.6f, 1.5f, 0.8f, 20f, 1000, 2000, 300, 3);
+    }
+
+    @Test
+    public void pickupFromTheTable() {
+        final Trace trace = new Trace(1)
+                .rest(2000, 0)
+                .tilt(600, 0, 60, 2f)
+                .rest(2000, 60);
+        assertEquals(1, trace.countPickups(newDetector()));
+    }
+
+    @Test
+    public void pickupFromThePocketOrBag() {
+        // Lying upside down, then taken out and held up to look at
+        final Trace trace = new Trace(2)
+                .rest(3000, 170)
+                .tilt(800, 170, 45, 3f)
+                .rest(2000, 45);
+        assertEquals(1, trace.countPickups(newDetector()));
+    }
+
+    @Test
+    public void lyingStillNeverPulses() {
+        assertEquals(0, new Trace(3).rest(60000, 0).countPickups(newDetector()));
+        assertEquals(0, new Trace(4).rest(60000, 35).countPickups(newDetector()));
+    }
+
+    @Test
+    public void liftWithoutRestBeforeIsIgnored() {
+        final Trace trace = new Trace(5)
+                .rest(500, 0)
+                .tilt(600, 0, 60, 2f)
+                .rest(2000, 60);
+        assertEquals(0, trace.countPickups(newDetector()));
+    }
+
+    @Test
+    public void liftedAndPutBackFlatIsNotAPickup() {
+        final Trace trace = new Trace(6)
+                .rest(2000, 0)
+                .tilt(400, 0, 30, 2f)
+                .tilt(400, 30, 0, 2f)
+                .rest(2000, 0);
+        assertEquals(0, trace.countPickups(newDetector()));
+    }
+
+    @Test
+    public void bumpingTheTableIsNotAPickup() {
+        final Trace trace = new Trace(7)
+                .rest(2000, 0)
+                .shake(200, 0, 6f)
+                .rest(3000, 0);
+        assertEquals(0, trace.countPickups(newDetector()));
+    }
+
+    @Test
+    public void walkingWithThePhoneIsNotAPickup() {
+        final Trace trace = new Trace(8)
+                .rest(2000, 80)
+                .shake(20000, 80, 3f)
+                .rest(2000, 80);
+        assertEquals(0, trace.countPickups(newDetector()));
+    }
+
+    @Test
+    public void everyPickupAfterARestCounts() {
+        final Trace trace = new Trace(9)
+                .rest(2000, 0)
+                .tilt(600, 0, 60, 2f)
+                .rest(3000, 60)
+                .tilt(600, 60, 0, 2f)
+                .rest(3000, 0)
+                .tilt(600, 0, 60, 2f)
+                .rest(2000, 60);
+        assertEquals(3, trace.countPickups(newDetector()));
+    }
+
+    @Test
+    public void resetForgetsTheRest() {
+        final PickupDetector detector = newDetector();
+        assertEquals(0, new Trace(10).rest(2000, 0).countPickups(detector));
+        detector.reset();
+        // The sensor was off, the earlier rest must not count for this lift
+        assertEquals(0, new Trace(11, 5000).rest(300, 0).tilt(600, 0, 60, 2f).rest(2000, 60)
+                .countPickups(detector));
+    }
+
+    /**
+     * The slowest, gentlest of these lifts stay below the lift threshold, so a
+     * few misses are expected; anything that isn't a pickup must never pulse.
+     */
+    @Test
+    public void accuracyOverRandomizedTraces() {
+        final Random random = new Random(0x91c0);
+        int missed = 0;
+        int falsePositives = 0;
+        final int runs = 200;
+        for (int i = 0; i < runs; i++) {
+            final float from = random.nextFloat() * 20;
+            final float to = 40 + random.nextFloat() * 50;
+            final Trace pickup = new Trace(random.nextLong())
+                    .rest(1500 + random.nextInt(3000), from)
+                    .tilt(400 + random.nextInt(600), from, to, 1f + random.nextFloat() * 3)
+                    .rest(1500, to);
+            if (pickup.countPickups(newDetector()) != 1) {
+                missed++;
+            }
+
+            final float angle = random.nextFloat() * 90;
+            final Trace noise = new Trace(random.nextLong())
+                    .rest(1500 + random.nextInt(3000), angle)
+                    .shake(100 + random.nextInt(10000), angle, 2f + random.nextFloat() * 4)
+                    .rest(1500, angle);
+            if (noise.countPickups(newDetector()) != 0) {
+                falsePositives++;
+            }
+        }
+        System.out.println("PickupDetector: missed " + missed + "/" + runs
+                + ", false positives " + falsePositives + "/" + runs);
+        assertTrue("missed " + missed, missed <= runs / 50);
+        assertEquals(0, falsePositives);
+    }
+
+    /**
+     * A device rotating about its x axis, angle 0 being flat on its back.
+     */
+    private static final class Trace {
+        private static final float NOISE = 0.05f;
+
+        private final Random mRandom;
+        private final ArrayList<float[]> mSamples = new ArrayList<>();
+        private final ArrayList<Long> mTimestamps = new ArrayList<>();
+        private long mTimeMs;
+
+        Trace(long seed) {
+            this(seed, 0);
+        }
+
+        Trace(long seed, long startMs) {
+            mRandom = new Random(seed);
+            mTimeMs = startMs;
+        }
+
+        Trace rest(long durationMs, float degrees) {
+            for (long t = 0; t < durationMs; t += SAMPLING_PERIOD_MS) {
+                add(degrees, 0, 0, 0);
+            }
+            return this;
+        }
+
+        /**
+         * Turns from one angle to the other, pushing the device along with
+         * up to {@code accel} m/s^2 of hand movement.
+         */
+        Trace tilt(long durationMs, float fromDegrees, float toDegrees, float accel) {
+            final long steps = Math.max(1, durationMs / SAMPLING_PERIOD_MS);
+            for (long i = 1; i <= steps; i++) {
+                final float progress = (float) i / steps;
+                // The hand speeds up, then slows down again
+                final float push = accel * (float) Math.sin(2 * Math.PI * progress);
+                add(fromDegrees + (toDegrees - fromDegrees) * progress, 0, push, push / 2);
+            }
+            return this;
+        }
+
+        /**
+         * Shakes the device around a fixed angle, as when bumped or carried.
+         */
+        Trace shake(long durationMs, float degrees, float accel) {
+            for (long t = 0; t < durationMs; t += SAMPLING_PERIOD_MS) {
+                // Steps at about two per second
+                final double phase = 2 * Math.PI * 2 * t / 1000.0;
+                add(degrees, accel * 0.3f * (float) Math.sin(phase * 0.5),
+                        accel * (float) Math.sin(phase), accel * (float) Math.cos(phase));
+            }
+            return this;
+        }
+
+        int countPickups(PickupDetector detector) {
+            int pickups = 0;
+            for (int i = 0; i < mSamples.size(); i++) {
+                final float[] sample = mSamples.get(i);
+                if (detector.onSample(sample[0], sample[1], sample[2], mTimestamps.get(i))) {
+                    pickups++;
+                }
+            }
+            return pickups;
+        }
+
+        private void add(float degrees, float ax, float ay, float az) {
+            final double radians = Math.toRadians(degrees);
+            mSamples.add(new float[] {
+                    ax + noise(),
+                    GRAVITY * (float) Math.sin(radians) + ay + noise(),
+                    GRAVITY * (float) Math.cos(radians) + az + noise(),
+            });
+            // Sensors don't deliver on an exact grid
+            mTimestamps.add(mTimeMs * NS_PER_MS + mRandom.nextInt(2000000));
+            mTimeMs += SAMPLING_PERIOD_MS;
+        }
+
+        private float noise() {
+            return (float) mRandom.nextGaussian() * NOISE;
+        }
+    }
+}